@@ -33,8 +33,11 @@ public final class Constants {
     public static final String FINAL_COMMUNITY_OUT = "COMMUNITY_RESULT.csv";
     public static final String FINAL_SIM_JOIN_OUT = "SIM_JOIN_RESULT.csv";
     public static final String FINAL_SIM_SEARCH_OUT = "SIM_SEARCH_RESULT.csv";
+    public static final String SIM_JOIN_STATS = "SIM_JOIN_STATS.json";
 
     public static final String CONFIG_FILE = "config.json";
+    public static final String LOG_OUT = "log.out";
+    public static final String LOG_ERR = "log.err";
 
     public static final String DATA_DIR = "/data/SciNeM/SciNeM-data/";
     public static final String HDFS_DATA_DIR = "hdfs://172.16.1.156:9000/SciNeM-data/";
@@ -42,6 +45,44 @@ public final class Constants {
 
     public static final int MAX_THREADS = 10;
 
+    // jobs on datasets whose relation files exceed this size are delegated to the Spark workflow
+    public static final long LOCAL_ENGINE_MAX_DATASET_SIZE = 512L * 1024 * 1024;
+    public static final long LOCAL_ENGINE_MAX_VIEW_NNZ = 200_000_000L;
+    public static final int PAGERANK_MAX_ITERATIONS = 100;
+    // damping factors of a single ranking job, each with its own result file
+    public static final int PAGERANK_MAX_ALPHAS = 10;
+    // approximate similarity joins hash every entity to this many LSH bands of a few MinHash values each
+    public static final int SIM_LSH_MAX_BANDS = 64;
+    public static final int SIM_LSH_MAX_ROWS = 16;
+    public static final int SIM_LSH_DEFAULT_ROWS = 4;
+    public static final int LOCAL_ENGINE_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    // admission control of analysis jobs; the cost of a job is the size of the relation files times
+    // the number of relations its metapaths traverse, summed over its analyses
+    public static final int MAX_CONCURRENT_JOBS = 4;
+    public static final int MAX_CONCURRENT_JOBS_PER_DATASET = 2;
+    public static final int JOB_QUEUE_CAPACITY = 100;
+    public static final double JOB_INITIAL_THROUGHPUT = 64.0 * 1024 * 1024;
+
+    // total size of the job directories beyond which the least recently used cached results are evicted
+    public static final long RESULT_CACHE_MAX_SIZE = 50L * 1024 * 1024 * 1024;
+    // disk budget of the HIN views kept for later jobs
+    public static final long HIN_VIEW_CACHE_MAX_SIZE = 20L * 1024 * 1024 * 1024;
+
+    // finished jobs are answered from memory for a while, and status streams are closed after a day
+    public static final long JOB_STATUS_RETENTION_MS = 10 * 60 * 1000L;
+    public static final long STATUS_STREAM_TIMEOUT_MS = 24 * 60 * 60 * 1000L;
+    public static final int MAX_TRACKED_JOB_LOGS = 1000;
+
+    // sorted and filtered results are answered from in-memory indexes of the most recently queried result files
+    public static final int MAX_CACHED_RESULT_INDEXES = 16;
+    // columnar copies, page indexes and community indexes stay mapped for the most recently read result files
+    public static final int MAX_CACHED_RESULT_TABLES = 64;
+    // members with the highest scores kept in the summary of every community
+    public static final int COMMUNITY_TOP_MEMBERS = 5;
+    // members shown for every community of a level of hierarchical results
+    public static final int HIERARCHY_SAMPLE_MEMBERS = 5;
+
     public static final int PAGE_SIZE = 50;
 
     private Constants() {
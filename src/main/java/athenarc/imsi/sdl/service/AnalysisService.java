@@ -1,34 +1,59 @@
 package athenarc.imsi.sdl.service;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 
+import org.apache.commons.io.FileUtils;
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import athenarc.imsi.sdl.config.Constants;
 import athenarc.imsi.sdl.domain.PredefinedMetapath;
 import athenarc.imsi.sdl.repository.PredefinedMetapathRepository;
+import athenarc.imsi.sdl.service.cache.ResultCache;
+import athenarc.imsi.sdl.service.dto.ResultQueryDTO;
+import athenarc.imsi.sdl.service.engine.AnalysisEngine;
+import athenarc.imsi.sdl.service.engine.LocalAnalysisEngine;
+import athenarc.imsi.sdl.service.engine.WorkflowAnalysisEngine;
+import athenarc.imsi.sdl.service.hin.HinDataset;
+import athenarc.imsi.sdl.service.hin.Metapath;
+import athenarc.imsi.sdl.service.index.CommunityIndex;
+import athenarc.imsi.sdl.service.index.CommunityTree;
+import athenarc.imsi.sdl.service.index.PageIndex;
+import athenarc.imsi.sdl.service.index.ResultIndex;
+import athenarc.imsi.sdl.service.index.ResultTable;
+import athenarc.imsi.sdl.service.scheduler.JobPriority;
+import athenarc.imsi.sdl.service.scheduler.JobScheduler;
+import athenarc.imsi.sdl.service.status.JobLogTracker;
+import athenarc.imsi.sdl.service.status.JobState;
+import athenarc.imsi.sdl.service.status.JobStatusRegistry;
 import athenarc.imsi.sdl.service.util.FileUtil;
+import athenarc.imsi.sdl.service.util.RandomUtil;
+import athenarc.imsi.sdl.service.util.TsvCursor;
 
 @Service
 public class AnalysisService {
@@ -36,18 +61,44 @@ public class AnalysisService {
     @Autowired
     private PredefinedMetapathRepository predefinedMetapathRepository;
 
+    @Autowired
+    private LocalAnalysisEngine localAnalysisEngine;
+
+    @Autowired
+    private WorkflowAnalysisEngine workflowAnalysisEngine;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Autowired
+    private ResultCache resultCache;
+
+    @Autowired
+    private JobStatusRegistry jobStatusRegistry;
+
+    @Autowired
+    private JobLogTracker jobLogTracker;
+
     private final Logger log = LoggerFactory.getLogger(AnalysisService.class);
 
+    private final Map<String, ResultIndex> resultIndexes = Collections.synchronizedMap(
+        new LinkedHashMap<String, ResultIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResultIndex> eldest) {
+                return size() > Constants.MAX_CACHED_RESULT_INDEXES;
+            }
+        });
+
     public String prepareJobFiles(String id, ArrayList<String> analyses, List<Document> queries, String primaryEntity, int searchK, int t, int targetId, String dataset,
-                       String selectField, int edgesThreshold, double prAlpha, double prTol, int simMinValues,
-                       String commAlgorithm, double commThreshold, int commStopCriterion, int commMaxSteps, int commNumOfCommunities, double commRatio) throws java.io.IOException, InterruptedException {
+                       String selectField, int edgesThreshold, double prAlpha, List<Double> prAlphas, double prTol, int simMinValues,
+                       Integer simLshBands, Integer simLshRows, String commAlgorithm, double commThreshold, int commStopCriterion, int commMaxSteps, int commNumOfCommunities, double commRatio) throws java.io.IOException, InterruptedException {
 
         // create folder to store results
         String outputDir = FileUtil.createDir(id);
         String hdfsOutputDir = Constants.HDFS_BASE_PATH + "/" + id;
 
         String config = FileUtil.writeConfig(analyses, outputDir, hdfsOutputDir, queries, primaryEntity, searchK, t,
-                targetId, dataset, selectField, edgesThreshold, prAlpha, prTol, simMinValues, commAlgorithm, commThreshold, commStopCriterion, commMaxSteps, commNumOfCommunities, commRatio);
+                targetId, dataset, selectField, edgesThreshold, prAlpha, prAlphas, prTol, simMinValues, simLshBands, simLshRows, commAlgorithm, commThreshold, commStopCriterion, commMaxSteps, commNumOfCommunities, commRatio);
 
         // create log files
         File out = new File(FileUtil.getLogfile(id));
@@ -59,31 +110,140 @@ public class AnalysisService {
         return config;
     }
 
-    @Async
-    public void submitJob(String id, String config)
-                        throws java.io.IOException, InterruptedException {
+    /**
+     * Completes a prepared job from the result cache or queues it in the scheduler, removing its files
+     * if it is rejected.
+     *
+     * @throws JobQueueFullException if too many jobs are already waiting
+     * @throws IllegalArgumentException if the job asks for options that the engine it runs on does not support
+     */
+    public void submitJob(String id, String config, String priority) throws java.io.IOException {
+        Document configuration = Document.parse(FileUtil.readJsonFile(config));
+        String dataset = configuration.getString("dataset");
+
+        String unsupported = getLocalOnlyOption(configuration);
+        if (unsupported != null && !localAnalysisEngine.supports(configuration)) {
+            FileUtils.deleteDirectory(new File(Constants.BASE_PATH + "/" + id));
+            throw new IllegalArgumentException(unsupported + " can only be used for a single Ranking or Similarity query "
+                + "on a dataset of at most " + Constants.LOCAL_ENGINE_MAX_DATASET_SIZE / (1024 * 1024) + "MB of relations");
+        }
 
-        ProcessBuilder pb = new ProcessBuilder();
-        pb.command("/bin/bash", Constants.WORKFLOW_DIR + "analysis/analysis.sh", config);
+        String cacheKey = ResultCache.key(configuration);
+        if (resultCache.link(cacheKey, id) != null) {
+            return;
+        }
 
-        // redirect ouput to logfiles
-        File out = new File(FileUtil.getLogfile(id));
-        File err = new File(FileUtil.getErrorLog(id));
+        jobStatusRegistry.register(id, (List<String>) configuration.get("analyses"),
+            RandomUtil.getAnalysisDescription(configuration, false));
+        try {
+            jobScheduler.submit(id, dataset, JobPriority.parse(priority), estimateCost(configuration), () -> {
+                try {
+                    runJob(id, config, configuration, cacheKey);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        } catch (JobQueueFullException e) {
+            jobStatusRegistry.remove(id);
+            FileUtils.deleteDirectory(new File(Constants.BASE_PATH + "/" + id));
+            throw e;
+        }
+    }
 
-        pb.redirectOutput(out);
-        pb.redirectError(err);
+    /**
+     * The option of a job that only the local engine runs, as the Spark workflow would ignore it, or null if none.
+     */
+    private static String getLocalOnlyOption(Document configuration) {
+        List<Double> alphas = FileUtil.getRankingAlphas(configuration);
+        if (alphas != null && alphas.size() > 1) {
+            return "Ranking several damping factors";
+        }
+        if (configuration.get("sim_lsh_bands") != null) {
+            return "An approximate Similarity Join";
+        }
+        return null;
+    }
 
-        // execute analysis script
-        Process process = pb.start();
-        int exitCode = process.waitFor();
+    /**
+     * Estimated cost of a job: the size of the relation files of its dataset times the number of
+     * relations traversed by its metapaths, for every analysis.
+     */
+    private static double estimateCost(Document configuration) {
+        HinDataset dataset = new HinDataset(configuration.getString("dataset"));
+        List<Document> queries = (List<Document>) configuration.get("queries");
+        List<String> analyses = (List<String>) configuration.get("analyses");
+
+        int hops = 0;
+        if (queries != null) {
+            for (Document query : queries) {
+                String metapath = query.getString("metapath");
+                if (metapath != null) {
+                    hops += Math.max(1, Metapath.length(metapath) - 1);
+                }
+            }
+        }
+        int analysesCount = analyses == null ? 1 : Math.max(1, analyses.size());
+        return (double) dataset.relationsSize() * Math.max(1, hops) * analysesCount;
+    }
+
+    private void runJob(String id, String config, Document configuration, String cacheKey) throws IOException, InterruptedException {
 
-        // write to file that the job has finished
-        FileWriter fileWriter = new FileWriter(out, true);
-        PrintWriter printWriter = new PrintWriter(fileWriter);
-        printWriter.print("Exit Code\t" + exitCode);
-        printWriter.close();
+        int exitCode = AnalysisEngine.EXIT_FAILURE;
+        try {
+            // small and medium datasets are analysed in-process, the rest by the Spark workflow
+            AnalysisEngine engine = localAnalysisEngine.supports(configuration) ? localAnalysisEngine : workflowAnalysisEngine;
+            log.debug("Analysis task for id: " + id + " runs on " + engine.getClass().getSimpleName());
+
+            exitCode = engine.run(id, config, configuration, line -> jobStatusRegistry.append(id, line));
+        } finally {
+            // the job is marked as finished even if its engine failed, so that its status does not wait forever
+            writeExitCode(id, exitCode);
+        }
 
         log.debug("Analysis task for id: " + id + " exited with code: " + exitCode);
+
+        if (exitCode == AnalysisEngine.EXIT_SUCCESS) {
+            writeResultTables(id, "HPIC".equals(configuration.get("community_algorithm")));
+            // the status of evicted jobs is read from their logs again, which mark them as expired
+            resultCache.put(cacheKey, id).forEach(jobStatusRegistry::remove);
+        }
+    }
+
+    private void writeExitCode(String id, int exitCode) {
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(FileUtil.getLogfile(id), true))) {
+            printWriter.print("Exit Code\t" + exitCode);
+        } catch (IOException e) {
+            log.warn("Could not write the exit code of analysis task for id: " + id, e);
+        }
+        jobStatusRegistry.append(id, "Exit Code\t" + exitCode);
+    }
+
+    /**
+     * Writes the columnar copies of the result files of a job, from which their pages are served, and the
+     * summaries or hierarchies of their communities.
+     */
+    private void writeResultTables(String id, boolean hierarchical) {
+        String[] resultFiles = { Constants.FINAL_RANKING_OUT, Constants.FINAL_COMMUNITY_OUT, Constants.FINAL_SIM_JOIN_OUT,
+            Constants.FINAL_SIM_SEARCH_OUT, Constants.RANKING_COMMUNITY_OUT, Constants.COMMUNITY_RANKING_OUT };
+        for (String resultFile : resultFiles) {
+            File file = new File(Constants.BASE_PATH + "/" + id + "/" + resultFile);
+            try {
+                if (file.exists()) {
+                    ResultTable.load(file.getPath());
+                    if (resultFile.contains("COMMUNITY")) {
+                        CommunityIndex.load(file.getPath(), Constants.COMMUNITY_TOP_MEMBERS);
+                    }
+                    if (hierarchical && resultFile.equals(Constants.FINAL_COMMUNITY_OUT)) {
+                        CommunityTree.load(file.getPath(), Constants.HIERARCHY_SAMPLE_MEMBERS);
+                    }
+                }
+            } catch (IOException e) {
+                // the indexes are built again when the results are first requested
+                log.warn("Could not write the result indexes of {}", file, e);
+            }
+        }
     }
 
     private static void getMeta(Document meta, int totalRecords, int totalPages, int page, String[] headers, String results_type) {
@@ -101,178 +261,436 @@ public class AnalysisService {
     }
 
     public List<Document> getHierarchicalCommunityResults(String[] headers, String analysisFile, Integer page, String communityId, Document meta) throws IOException {
+        CommunityTree tree = CommunityTree.load(analysisFile, Constants.HIERARCHY_SAMPLE_MEMBERS);
+        ResultTable table = ResultTable.load(analysisFile);
+        List<Document> docs = new ArrayList<>();
+        int from = (page - 1) * Constants.PAGE_SIZE;
+
+        // communityId is given, therefore its contents one level below are returned,
+        // otherwise the communities of the highest level
+        int node = communityId == null ? -1 : tree.find(communityId);
+        int totalRecords;
+        int communitiesCount;
+        try (MemberReader members = new MemberReader(analysisFile, headers, table, tree)) {
+            if (communityId != null && node < 0) {
+                totalRecords = 0;
+                communitiesCount = 0;
+
+            // we are in a leaf, return a page of the members of community
+            } else if (node >= 0 && tree.getChildCount(node) == 0) {
+                int count = tree.getDirectSize(node);
+                List<Document> leafMembers = new ArrayList<>();
+                for (int member = Math.max(0, from); member < Math.min(count, from + Constants.PAGE_SIZE); member++) {
+                    leafMembers.add(members.read(tree.getDirectMember(node, member)));
+                }
+                docs.add(new Document("community", "leaf").append("count", count).append("members", leafMembers));
+                totalRecords = count;
+                communitiesCount = 1;
 
-        // community and selected field index are defined in that order
-        int communityIndex = 0;
-        for (communityIndex = 0; communityIndex < headers.length; communityIndex++) {
-            if (headers[communityIndex].equals("Community")) break;
+            // return a page of the communities with their first members
+            } else {
+                int count = node < 0 ? tree.getRootCount() : tree.getChildCount(node);
+                for (int i = Math.max(0, from); i < Math.min(count, from + Constants.PAGE_SIZE); i++) {
+                    int community = node < 0 ? tree.getRoot(i) : tree.getChild(node, i);
+                    List<Document> sample = new ArrayList<>();
+                    for (int member : tree.getSample(community)) {
+                        sample.add(members.read(member));
+                    }
+                    docs.add(new Document("community", tree.getId(community))
+                        .append("count", tree.getSubtreeSize(community))
+                        .append("members", sample));
+                }
+                totalRecords = count;
+                communitiesCount = count;
+            }
         }
-        // int nameIndex = 1;
 
-        Reader reader = Files.newBufferedReader(Paths.get(analysisFile));
-        CSVReader csvReader = new CSVReaderBuilder(reader)
-            .withCSVParser(new CSVParserBuilder().withSeparator('\t').build())
-            .build();
+        int totalPages = (int) Math.ceil(((double) totalRecords) / ((double) Constants.PAGE_SIZE));
+        AnalysisService.getMeta(meta, totalRecords, totalPages, page, headers, "hierarchical");
+        meta.append("community_id", communityId);
+        meta.append("community_counts", communitiesCount);
 
-        int lineNum = 0;
-        Map<String, Document> communities  = new HashMap<>();
-        String[] attributes;
+        return docs;
+    }
+
+    /**
+     * Reads members of hierarchical communities from the result table, or from the result file itself if
+     * it has none.
+     */
+    private static final class MemberReader implements AutoCloseable {
+        private final String analysisFile;
+        private final String[] headers;
+        private final ResultTable table;
+        private final CommunityTree tree;
+        private TsvCursor cursor;
+
+        MemberReader(String analysisFile, String[] headers, ResultTable table, CommunityTree tree) {
+            this.analysisFile = analysisFile;
+            this.headers = headers;
+            this.table = table;
+            this.tree = tree;
+        }
+
+        Document read(int member) throws IOException {
+            if (table != null) {
+                return getDocument(table, tree.getRow(member));
+            }
+
+            if (cursor == null) {
+                cursor = TsvCursor.open(new File(analysisFile));
+            }
+            // members of a community are adjacent, so their lines are mostly read from the same buffer
+            cursor.seek(tree.getOffset(member));
+            return cursor.next() ? getDocument(cursor, headers) : new Document();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
 
-        while ((attributes = csvReader.readNext()) != null) {
-            lineNum++;
+    /**
+     * The current line of a result file, with its values in the order of the headers.
+     */
+    private static Document getDocument(TsvCursor cursor, String[] headers) {
+        Document doc = new Document();
+        for (int i = 0; i < Math.min(cursor.getFieldCount(), headers.length); i++) {
+            doc.append(headers[i], cursor.getString(i));
+        }
+        return doc;
+    }
 
-            // skip header 
-            if (lineNum == 1)
-                continue;
+    /**
+     * A row of a result table, with its values in the order of the headers.
+     */
+    private static Document getDocument(ResultTable table, int row) {
+        Document doc = new Document();
+        String[] headers = table.getHeaders();
+        for (int i = 0; i < headers.length; i++) {
+            String value = table.getString(row, i);
+            if (value != null) {
+                doc.append(headers[i], value);
+            }
+        }
+        return doc;
+    }
 
-            String[] rowCommunities = attributes[communityIndex].split("-");
-            String community = null;
+    public List<Document> getFlatCommunityResults(String[] headers, String analysisFile, Integer page, Document meta) throws IOException {
+        CommunityIndex communities = CommunityIndex.load(analysisFile, Constants.COMMUNITY_TOP_MEMBERS);
+        List<Document> docs = new ArrayList<>();
+        int totalRecords = communities.size();
+        int totalPages = (int) Math.ceil(((double) totalRecords) / ((double) Constants.PAGE_SIZE));
+        int firstCommunityIndex = (page - 1) * Constants.PAGE_SIZE;
 
-            // communityId is given, therefore we are filtering based on this community in that level
-            // and returning its contents one level below
-            if (communityId != null) {
-                for (int i = 0; i<rowCommunities.length; i++) {
-                    
-                    // this does not belong to the given community
-                    if (!communityId.equals(rowCommunities[i]))
-                        continue;
+        if (firstCommunityIndex >= 0 && firstCommunityIndex < totalRecords) {
 
-                    // community matches, therefore return communities of one level below
-                    else if (i > 0)
-                        community = rowCommunities[i - 1]; 
+            // the members of a community are contiguous, so a page spans from the first row of one community
+            // to the first row of the community PAGE_SIZE positions later
+            int lastCommunityIndex = firstCommunityIndex + Constants.PAGE_SIZE;
+            int fromRow = communities.getFirstRow(firstCommunityIndex);
+            int toRow = lastCommunityIndex < totalRecords ? communities.getFirstRow(lastCommunityIndex) : Integer.MAX_VALUE;
 
-                    // we are in a leaf, return all members of community
-                    else {
-                        community = "leaf";
-                    }
+            ResultTable table = ResultTable.load(analysisFile);
+            if (table != null) {
+                for (int row = fromRow; row < Math.min(toRow, table.getRowCount()); row++) {
+                    docs.add(getDocument(table, row));
                 }
-
-            // if community is not defined return community of the hoghest level
             } else {
-                community = rowCommunities[rowCommunities.length-1];
+                try (TsvCursor cursor = TsvCursor.open(new File(analysisFile), communities.getOffset(firstCommunityIndex))) {
+                    for (int row = fromRow; row < toRow && cursor.next(); row++) {
+                        docs.add(getDocument(cursor, headers));
+                    }
+                }
             }
+        }
 
-            // row does not match given communityId
-            if (community == null) {
-                continue;
-            }
+        AnalysisService.getMeta(meta, totalRecords, totalPages, page, headers, "flat");
+        meta.append("community_counts", totalRecords);
+        return docs;
+    }
 
-            Document doc = null;
+    public List<Document> getResults(String analysisFile, Integer page, Document meta) throws IOException {
+        ResultTable table = ResultTable.load(analysisFile);
+        if (table == null) {
+            return scanResults(analysisFile, page, meta);
+        }
 
-            // create new community
-            if ((doc = communities.get(community)) == null) {
+        List<Document> docs = new ArrayList<>();
+        int totalRecords = table.getRowCount();
+        int totalPages = (int) Math.ceil(((double) totalRecords) / ((double) Constants.PAGE_SIZE));
+        if (page >= 1 && page <= totalPages) {
+            int to = Math.min(totalRecords, page * Constants.PAGE_SIZE);
+            for (int row = (page - 1) * Constants.PAGE_SIZE; row < to; row++) {
+                docs.add(getDocument(table, row));
+            }
+        }
 
-                doc = new Document();
-                doc.put("community", community);
-                doc.put("count", 0);
-                doc.put("members", new ArrayList<Document>());
+        AnalysisService.getMeta(meta, totalRecords, totalPages, page, table.getHeaders(), "flat");
 
-                communities.put(community, doc);
-            }
+        return docs;
+    }
 
-            // update community count
-            doc.put("count", (Integer)doc.get("count")+1);
+    /**
+     * Returns a page of the results that match the given query, sorted as requested. Text filters apply to
+     * the selected field of ranked entities, or to both entities of similar pairs.
+     *
+     * @throws IllegalArgumentException if the results cannot be sorted by the requested column
+     */
+    public List<Document> queryResults(String analysisFile, String selectField, ResultQueryDTO query, Integer page, Document meta) throws IOException {
+        ResultIndex index = getResultIndex(analysisFile);
+        if (index == null) {
+            throw new IllegalArgumentException("Results of " + analysisFile + " cannot be sorted or filtered");
+        }
+        ResultTable table = index.getTable();
 
-            // update community members if less that a threshold
-            int showMaxMembers = 5;
-            List<Document> members = (List<Document>)doc.get("members");
+        int sortColumn = -1;
+        if (query.getSort() != null) {
+            sortColumn = table.getColumn(query.getSort());
+            if (sortColumn < 0) {
+                throw new IllegalArgumentException("Unknown column: " + query.getSort());
+            }
+        }
 
-            // return only first max members in internal nodes
-            // when we are reach leaf-levle return all members
-            if (members.size() < showMaxMembers || community.equals("leaf")) {
-                Document newMember = new Document();
-                for (int i = 0; i < attributes.length; i++) {
-                    newMember.append(headers[i], attributes[i]);
+        BitSet rows = null;
+        if (query.getFilter() != null && !query.getFilter().isEmpty()) {
+            BitSet matches = new BitSet();
+            for (String header : new String[] { selectField, "Entity 1", "Entity 2" }) {
+                int column = header == null ? -1 : table.getColumn(header);
+                if (column >= 0) {
+                    matches.or(index.matching(column, query.getFilter(), query.isPrefix()));
                 }
-                members.add(newMember);
-                doc.put("members", members);         
             }
+            rows = matches;
+        }
+        if (query.getMinScore() != null || query.getMaxScore() != null) {
+            int scoreColumn = -1;
+            for (int column = 0; column < table.getColumnCount() && scoreColumn < 0; column++) {
+                if (table.getHeaders()[column].endsWith("Score")) {
+                    scoreColumn = column;
+                }
+            }
+            rows = intersect(rows, scoreColumn < 0 ? new BitSet() : index.range(scoreColumn, query.getMinScore(), query.getMaxScore()));
+        }
+        if (query.getCommunity() != null) {
+            int communityColumn = table.getColumn("Community");
+            rows = intersect(rows, communityColumn < 0 ? new BitSet() : index.equalTo(communityColumn, query.getCommunity()));
         }
-        List<Document> docs = new ArrayList<Document>(communities.values());
 
-        int communitiesCount = communities.size();
-        int totalPages = (int) Math.ceil(((double) communitiesCount) / ((double) Constants.PAGE_SIZE));
-        AnalysisService.getMeta(meta, communitiesCount, totalPages, page, headers, "hierarchical");
-        meta.append("community_id", communityId);
-        meta.append("community_counts", communitiesCount);
+        List<Document> docs = new ArrayList<>();
+        int totalRecords = rows == null ? table.getRowCount() : rows.cardinality();
+        int totalPages = (int) Math.ceil(((double) totalRecords) / ((double) Constants.PAGE_SIZE));
+        if (page >= 1) {
+            for (int row : index.select(rows, sortColumn, query.isDescending(), (page - 1) * Constants.PAGE_SIZE, Constants.PAGE_SIZE)) {
+                docs.add(getDocument(table, row));
+            }
+        }
+
+        AnalysisService.getMeta(meta, totalRecords, totalPages, page, table.getHeaders(), "flat");
 
         return docs;
     }
 
-    public List<Document> getFlatCommunityResults(String[] headers, String analysisFile, Integer page, Document meta) throws IOException {
-        List<Document> docs = new ArrayList<>();
-        List<Long> communityPositions = FileUtil.getCommunityPositions(analysisFile);
-        int totalRecords = communityPositions.size();
-        int totalPages = (int) Math.ceil(((double) totalRecords) / ((double) Constants.PAGE_SIZE));
-        int firstCommunityIndex = (page - 1) * Constants.PAGE_SIZE;
+    private static BitSet intersect(BitSet rows, BitSet matches) {
+        if (rows != null) {
+            matches.and(rows);
+        }
+        return matches;
+    }
 
-        if (firstCommunityIndex < communityPositions.size()) {
-            int communityColumnIndex;
-            for (communityColumnIndex = 0; communityColumnIndex < headers.length; communityColumnIndex++) {
-                if (headers[communityColumnIndex].equals("Community")) break;
+    /**
+     * The index of a result file, kept for the most recently queried files.
+     */
+    private ResultIndex getResultIndex(String analysisFile) throws IOException {
+        ResultIndex index = resultIndexes.get(analysisFile);
+        if (index == null || !index.isBuiltFrom(new File(analysisFile))) {
+            index = ResultIndex.load(analysisFile);
+            if (index != null) {
+                resultIndexes.put(analysisFile, index);
             }
+        }
+        return index;
+    }
+
+    private List<Document> scanResults(String analysisFile, Integer page, Document meta) throws IOException {
 
-            boolean reachEnd = communityPositions.size() <= firstCommunityIndex + Constants.PAGE_SIZE;
-            log.debug(reachEnd? "Will reach end":"Will dump 50 entries");
-            long communityPositionLimit = reachEnd ? -1 : communityPositions.get(firstCommunityIndex + Constants.PAGE_SIZE);
-
-            RandomAccessFile communityResultsFile = new RandomAccessFile(analysisFile, "r");
-
-            long currentPosition;
-            String line = null;
-            communityResultsFile.seek(communityPositions.get(firstCommunityIndex));
-            do {
-                currentPosition = communityResultsFile.getFilePointer();
-                if ((currentPosition < communityPositionLimit) || reachEnd) {
-                    line = communityResultsFile.readLine();
-                    if (line != null) {
-                        String[] attributes = line.split("\t");
-                        Document doc = new Document();
-                        for (int i = 0; i < attributes.length; i++) {
-                            doc.append(headers[i], attributes[i]);
-                        }
-                        docs.add(doc);
+        List<Document> docs = new ArrayList<>();
+
+        // row count, headers and page offsets are read from the sidecar index of the results file
+        PageIndex pageIndex = PageIndex.load(analysisFile);
+        int totalRecords = pageIndex.getTotalRecords();
+        int totalPages = pageIndex.getTotalPages();
+        String[] headers = pageIndex.getHeaders();
+        long pageOffset = pageIndex.getPageOffset(page);
+
+        if (pageOffset >= 0) {
+            try (FileChannel channel = FileChannel.open(Paths.get(analysisFile), StandardOpenOption.READ)) {
+                channel.position(pageOffset);
+                Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.name());
+                CSVReader csvReader = new CSVReaderBuilder(reader)
+                    .withCSVParser(new CSVParserBuilder().withSeparator('\t').build())
+                    .build();
+
+                int count = 0;
+                String[] attributes;
+                while (count < Constants.PAGE_SIZE && ((attributes = csvReader.readNext()) != null)) {
+
+                    // IMPORTANT: the order of the fields is indicated by the headers array in metadata section
+                    Document doc = new Document();
+                    for (int i = 0; i < attributes.length; i++) {
+                        doc.append(headers[i], attributes[i]);
                     }
+
+                    docs.add(doc);
+                    count++;
                 }
-            } while (((currentPosition < communityPositionLimit) || reachEnd) && (line != null));
-            communityResultsFile.close();
+            }
         }
 
         AnalysisService.getMeta(meta, totalRecords, totalPages, page, headers, "flat");
-        meta.append("community_counts", totalRecords);
+
         return docs;
     }
 
-    public List<Document> getResults(String analysisFile, Integer page, Document meta) throws IOException {
+    /**
+     * Returns the completed analyses, the current stage and the progress of a job.
+     * <p>
+     * Jobs submitted to this instance are answered from memory; the status of other jobs is read
+     * from their configuration and log files.
+     *
+     * @throws JobExpiredException if the results of the job were evicted from the result cache
+     */
+    public Document getStatus(String id) throws IOException {
+        List<String> analyses;
+        String description;
+        JobState state = jobStatusRegistry.get(id);
+        if (state != null) {
+            analyses = state.getAnalyses();
+            description = state.getDescription();
+        } else {
+            Document config = Document.parse(FileUtil.readJsonFile(FileUtil.getConfFile(id)));
+            analyses = (List<String>) config.get("analyses");
+            description = RandomUtil.getAnalysisDescription(config, false);
+        }
+        Document logInfo = getLogInfo(id);
 
-        List<Document> docs = new ArrayList<>();
-        int totalRecords = FileUtil.countLines(analysisFile);
-        int totalPages = FileUtil.totalPages(totalRecords);
-        String[] headers = FileUtil.getHeaders(analysisFile);
-        final int firstRecordNumber = (page - 1) * Constants.PAGE_SIZE + 1;
-
-        int count = 0;
-        Reader reader = Files.newBufferedReader(Paths.get(analysisFile));
-        CSVReader csvReader = new CSVReaderBuilder(reader)
-            .withCSVParser(new CSVParserBuilder().withSeparator('\t').build()).withSkipLines(firstRecordNumber)
-            .build();
-
-        String[] attributes;
-        while (count < Constants.PAGE_SIZE && ((attributes = csvReader.readNext()) != null)) {
-
-            // IMPORTANT: the order of the fields is indicated by the headers array in metadata section
-            Document doc = new Document();
-            for (int i = 0; i < attributes.length; i++) {
-                doc.append(headers[i], attributes[i]);
+        Document response = new Document();
+        response.append("id", id);
+
+        String lastLine = (String) logInfo.get("lastLine");
+        List<String> completedStages = (List<String>) logInfo.get("completedStages");
+
+        // determine analyses that have been completed
+        Document completed = new Document();
+        for (String analysis : analyses) {
+            completed.append(analysis, completedStages.contains(analysis));
+        }
+        response.append("completed", completed);
+
+        // form description of analysis
+        response.append("description", description);
+
+        String[] tokens = lastLine.split("\t");
+
+        if (tokens[0].equals("Exit Code") && tokens[1].equals(String.valueOf(ResultCache.EXIT_EXPIRED))) {
+            throw new JobExpiredException(id);
+        } else if (tokens[0].equals("Exit Code") && !tokens[1].equals("0")) {
+
+            // set all analyses as completed, in order to stop loading on frontend
+            Document comp = new Document();
+            for (String analysis : analyses) {
+                completed.append(analysis, true);
+            }
+            response.append("completed", comp);
+            if (tokens[1].equals("100")) {
+                response.append("description", "Warning: The produced HIN view does not contain any entities; please try again with more loose constrains.");
+            } else if (tokens[1].equals("200")) {
+                response.append("description", "Warning: Due to limited resources the analysis was aborted as a large HIN view was created; please try again with more strict constraints.");
+            } else {
+                throw new RuntimeException("Error in analysis task: " + id);
             }
+        } else if (tokens.length == 3) {
+            response.append("stage", tokens[0])
+                .append("step", tokens[2])
+                .append("progress", getProgress(new ArrayList<>(analyses), (Integer) logInfo.get("stageNum"), Float.parseFloat(tokens[1])));
 
-            docs.add(doc);
-            count++;
+        // in case logfile is still empty
+        } else {
+            response.append("stage", "HIN Transformation")
+                .append("step", "Initializing")
+                .append("progress", 0);
         }
 
-        AnalysisService.getMeta(meta, totalRecords, totalPages, page, headers, "flat");
+        // jobs waiting for a free slot report their place in the queue
+        JobScheduler.JobStatus scheduling = jobScheduler.getStatus(id);
+        if (scheduling != null) {
+            if (scheduling.isQueued()) {
+                response.append("step", "Queued");
+            }
+            response.append("queued", scheduling.isQueued())
+                .append("queuePosition", scheduling.getQueuePosition())
+                .append("eta", scheduling.getEtaSeconds());
+        }
+        return response;
+    }
 
-        return docs;
+    /**
+     * The last line, the number of stages and the completed stages of a job's log; the log of jobs
+     * not running on this instance is followed incrementally by the {@link JobLogTracker}.
+     */
+    public Document getLogInfo(String id) throws IOException {
+        JobState state = jobStatusRegistry.get(id);
+        return state != null ? state.getLogInfo() : jobLogTracker.getLogInfo(id);
+    }
+
+    /**
+     * Calls the listener with the status of a running job whenever its log advances; the status of a
+     * failed job only holds its id and an {@code error} message.
+     *
+     * @return whether the job is running on this instance
+     */
+    public boolean subscribeStatus(String id, Consumer<Document> listener) {
+        return jobStatusRegistry.subscribe(id, new StatusListener(id, listener));
+    }
+
+    public void unsubscribeStatus(String id, Consumer<Document> listener) {
+        jobStatusRegistry.unsubscribe(id, new StatusListener(id, listener));
+    }
+
+    /**
+     * Adapts a status listener to the job states of the registry; equal if the listeners are.
+     */
+    private final class StatusListener implements Consumer<JobState> {
+        private final String id;
+        private final Consumer<Document> listener;
+
+        StatusListener(String id, Consumer<Document> listener) {
+            this.id = id;
+            this.listener = listener;
+        }
+
+        @Override
+        public void accept(JobState state) {
+            Document status;
+            try {
+                status = getStatus(id);
+            } catch (IOException | RuntimeException e) {
+                status = new Document("id", id).append("error", e.getMessage());
+            }
+            listener.accept(status);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StatusListener && ((StatusListener) o).listener.equals(listener);
+        }
+
+        @Override
+        public int hashCode() {
+            return listener.hashCode();
+        }
     }
 
     public double getProgress(ArrayList<String> analyses, int stage, float step) {
@@ -286,24 +704,52 @@ public class AnalysisService {
         return (step / 3.0) * (100.0 / (analysesSize + 1)) + (stage - 1) * (100.0 / (analysesSize + 1));
     }
 
-    public Document getCommunityCounts(String detailsFile, List<Document> docs)
-        throws FileNotFoundException, IOException {
+    /**
+     * Returns the number of members of the communities of the given results, and the total number of communities.
+     */
+    public Document getCommunityCounts(String analysisFile, List<Document> docs) throws IOException {
+        CommunityIndex communities = CommunityIndex.load(analysisFile, Constants.COMMUNITY_TOP_MEMBERS);
         Document communityCounts = new Document();
-        Document counts = Document.parse(FileUtil.readJsonFile(detailsFile));
 
         // get number of entities of each community in the results
         for (Document doc : docs) {
             String entity = (String) doc.get("Community");
-
-            int count = (int) counts.get(entity);
-            communityCounts.append(entity, count);
+            int community = entity == null ? -1 : communities.indexOf(entity);
+            if (community >= 0) {
+                communityCounts.append(entity, communities.getCount(community));
+            }
         }
 
         // add total number of communities
-        communityCounts.append("total", (int) counts.get("total"));
+        communityCounts.append("total", communities.size());
         return communityCounts;
     }
 
+    /**
+     * Returns the members with the highest scores of the communities of the given results.
+     */
+    public Document getCommunityTopMembers(String analysisFile, List<Document> docs) throws IOException {
+        CommunityIndex communities = CommunityIndex.load(analysisFile, Constants.COMMUNITY_TOP_MEMBERS);
+        ResultTable table = ResultTable.load(analysisFile);
+        Document topMembers = new Document();
+        if (table == null) {
+            return topMembers;
+        }
+
+        for (Document doc : docs) {
+            String entity = (String) doc.get("Community");
+            int community = entity == null || topMembers.containsKey(entity) ? -1 : communities.indexOf(entity);
+            if (community >= 0) {
+                List<Document> members = new ArrayList<>();
+                for (int row : communities.getTopRows(community)) {
+                    members.add(getDocument(table, row));
+                }
+                topMembers.append(entity, members);
+            }
+        }
+        return topMembers;
+    }
+
     public void updatePredifinedMetapaths(String dataset, String metapathToUpdate, String key, List<String> entities) {
 
         PredefinedMetapath metapath = predefinedMetapathRepository.findFirstByDatasetAndMetapath(dataset, metapathToUpdate);
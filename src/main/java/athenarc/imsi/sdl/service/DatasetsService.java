@@ -1,18 +1,17 @@
 package athenarc.imsi.sdl.service;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bson.Document;
 import org.slf4j.Logger;
@@ -20,6 +19,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.hin.CsrStore;
+import athenarc.imsi.sdl.service.hin.HinDataset;
+import athenarc.imsi.sdl.service.index.AttributeIndex;
+import athenarc.imsi.sdl.service.index.AutocompleteIndex;
+import athenarc.imsi.sdl.service.index.TermIndex;
 import athenarc.imsi.sdl.service.util.FileUtil;
 
 @Service
@@ -27,6 +31,9 @@ public class DatasetsService {
 
     private final Logger log = LoggerFactory.getLogger(DatasetsService.class);
 
+    // autocomplete indexes by dataset, entity and field, built lazily
+    private final Map<String, AutocompleteIndex> autocompleteIndexes = new ConcurrentHashMap<>();
+
     public String upload(String filename, byte[] bytes) throws java.io.IOException {
         log.debug("Uploading " + filename);
         String zipFile = Constants.DATA_DIR + filename;
@@ -35,6 +42,29 @@ public class DatasetsService {
         return zipFile;
     }
 
+    /**
+     * Builds the indexes of a newly uploaded dataset: memory-mapped CSR files of its relations
+     * and the attribute indexes of its node files.
+     */
+    public void buildIndexes(String dataset) throws IOException {
+        log.debug("Building indexes of " + dataset);
+        autocompleteIndexes.keySet().removeIf(key -> key.startsWith(dataset + "/"));
+        HinDataset hin = new HinDataset(dataset);
+        CsrStore.invalidate(dataset);
+        CsrStore.build(hin);
+
+        AttributeIndex.invalidate(dataset);
+        TermIndex.invalidate(dataset);
+        String[] nodeFiles = new File(Constants.DATA_DIR + dataset + "/nodes/").list();
+        if (nodeFiles != null) {
+            for (String nodeFile : nodeFiles) {
+                if (nodeFile.endsWith(".csv")) {
+                    AttributeIndex.load(hin, nodeFile.substring(0, nodeFile.length() - ".csv".length()));
+                }
+            }
+        }
+    }
+
     public Document getSchemas() throws FileNotFoundException, IOException {
         Document response = new Document();
 
@@ -48,85 +78,63 @@ public class DatasetsService {
         return response;
     }
 
-    public List<Document> autocomplete(String dataset, String entity, String field, String term, Boolean uniqueValues) throws IOException {
-        List<Document> docs = new ArrayList<>();
-        Set<String> values = new HashSet<>();
-
-        BufferedReader reader;
-        String filename = Constants.DATA_DIR + dataset + "/nodes/" + entity + ".csv";
-        reader = new BufferedReader(new FileReader(filename));
-
-        // read header line and find column of specified field
-        String line = reader.readLine();
-
-        String [] columnNames = line.split("\t");
-        int i;
-        for (i=0; i<columnNames.length; i++) {
-            if (columnNames[i].startsWith(field))
-                break;
-        }
-
-        // loop in lines until find 5 results to return
-        while ( ( line = reader.readLine() ) != null) {
-            String [] attrs = line.split("\t");
-
-            if (i >= attrs.length) continue;
-
-            if (attrs[i].toLowerCase().contains(term)) {
-                // skip if value already exists and we want only unique values
-                if (uniqueValues && values.contains(attrs[i]))
-                    continue;
-
-                Document doc = new Document();
-                doc.append("id", Integer.parseInt(attrs[0]));
-                doc.append("name", attrs[i]);
-                values.add(attrs[i]);
-
-                docs.add(doc);
-                // System.out.println(values.size());
-                // if (docs.size() == 5) {
-                //    break;
-                // }
-            }
+    /**
+     * Returns the nodes whose field contains the given lower-case term, exact matches first and then
+     * values starting with the term, using an index of the field that is built on first use.
+     */
+    public List<Document> autocomplete(String dataset, String entity, String field, String term, Boolean uniqueValues, Integer limit) throws IOException {
+        AutocompleteIndex index = getAutocompleteIndex(dataset, entity, field);
+        int[] rows = index.search(term, uniqueValues != null && uniqueValues, limit != null ? limit : 0);
 
+        List<Document> docs = new ArrayList<>();
+        for (int row : rows) {
+            Document doc = new Document();
+            doc.append("id", index.getId(row));
+            doc.append("name", index.getValue(row));
+            docs.add(doc);
         }
-        reader.close();
-
         return docs;
     }
 
-    public String[] findFiveNonExistent(String folder, String entity, String field, String[] terms) throws IOException {
-        List<Document> docs = new ArrayList<>();
-        BufferedReader reader;
-        String filename = Constants.DATA_DIR + folder + "/nodes/" + entity + ".csv";
-        Set<String> termSet = new HashSet<>(Arrays.asList(terms));
-        reader = new BufferedReader(new FileReader(filename));
-
-        // read header line and find column of specified field
-        String line = reader.readLine();
-
-        String [] columnNames = line.split("\t");
-        int i;
-        for (i=0; i<columnNames.length; i++) {
-            if (columnNames[i].startsWith(field))
-                break;
+    private AutocompleteIndex getAutocompleteIndex(String dataset, String entity, String field) throws IOException {
+        String key = dataset + "/" + entity + "/" + field;
+        File nodes = new File(Constants.DATA_DIR + dataset + "/nodes/" + entity + ".csv");
+        if (!nodes.exists()) {
+            throw new FileNotFoundException(nodes.getPath());
         }
 
-        while( ( ( line = reader.readLine() ) != null) && (termSet.size()>0)) {
-            String [] attrs = line.split("\t");
-            termSet.remove(attrs[i].toLowerCase());
+        AutocompleteIndex index = autocompleteIndexes.get(key);
+        if (index == null || !index.isBuiltFrom(nodes)) {
+            synchronized (autocompleteIndexes) {
+                index = autocompleteIndexes.get(key);
+                if (index == null || !index.isBuiltFrom(nodes)) {
+                    log.debug("Building autocomplete index of " + key);
+                    index = AutocompleteIndex.build(nodes, field);
+                    autocompleteIndexes.put(key, index);
+                }
+            }
         }
+        return index;
+    }
 
-        if (termSet.size()>0) {
-            String[] result = new String[Math.min(termSet.size(),5)];
-            Iterator<String> iter = termSet.iterator();
-            i=0;
-            while(iter.hasNext() && i<5) {
-                result[i++]=(String)iter.next();
+    /**
+     * Returns up to five of the given lower-case terms that are not values of the field, in the order
+     * given, or null if all of them exist.
+     *
+     * @throws IllegalArgumentException if no column of the node file starts with the field
+     */
+    public String[] findFiveNonExistent(String folder, String entity, String field, String[] terms) throws IOException {
+        TermIndex index = TermIndex.load(folder, entity, field);
+
+        Set<String> nonExistent = new LinkedHashSet<>();
+        for (String term : terms) {
+            if (!index.contains(term)) {
+                nonExistent.add(term);
+                if (nonExistent.size() == 5) {
+                    break;
+                }
             }
-            return result;
-        } else {
-            return null;
         }
+        return nonExistent.isEmpty() ? null : nonExistent.toArray(new String[0]);
     }
 }
@@ -0,0 +1,9 @@
+package athenarc.imsi.sdl.service;
+
+public class JobExpiredException extends RuntimeException {
+
+    public JobExpiredException(String id) {
+        super("The results of analysis " + id + " have expired, please submit it again");
+    }
+
+}
@@ -0,0 +1,9 @@
+package athenarc.imsi.sdl.service;
+
+public class JobQueueFullException extends RuntimeException {
+
+    public JobQueueFullException() {
+        super("Too many analyses are waiting to run, please try again later");
+    }
+
+}
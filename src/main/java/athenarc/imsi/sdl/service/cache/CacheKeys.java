@@ -0,0 +1,94 @@
+package athenarc.imsi.sdl.service.cache;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.bson.Document;
+
+import athenarc.imsi.sdl.config.Constants;
+
+/**
+ * Content hashes of job configurations, shared by the caches.
+ */
+final class CacheKeys {
+
+    private CacheKeys() {
+    }
+
+    /**
+     * SHA-256 of the canonical form of a document, together with the version of the files of the given
+     * dataset, so that re-uploading a dataset invalidates the keys computed from it.
+     */
+    static String hash(Document document, String dataset) {
+        Document canonical = (Document) canonicalize(document);
+        if (dataset != null) {
+            canonical.append("dataset_version", datasetVersion(new File(Constants.DATA_DIR + dataset)));
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(canonical.toJson().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sorts the keys of documents recursively and drops the paths that depend on the job id.
+     */
+    private static Object canonicalize(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                Object field = entry.getValue();
+                if (field instanceof String && isJobPath((String) field)) {
+                    continue;
+                }
+                sorted.put(entry.getKey(), canonicalize(field));
+            }
+            return new Document(sorted);
+        } else if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object item : (List<Object>) value) {
+                list.add(canonicalize(item));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    private static boolean isJobPath(String value) {
+        return value.startsWith(Constants.BASE_PATH) || value.startsWith(Constants.HDFS_BASE_PATH);
+    }
+
+    /**
+     * Number, total size and latest modification time of the node and relation files of a dataset.
+     */
+    private static String datasetVersion(File datasetDir) {
+        long length = 0;
+        long modified = 0;
+        int files = 0;
+        for (String sub : new String[] { "nodes", "relations" }) {
+            File[] children = new File(datasetDir, sub).listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    length += child.length();
+                    modified = Math.max(modified, child.lastModified());
+                    files++;
+                }
+            }
+        }
+        return files + ":" + length + ":" + modified;
+    }
+}
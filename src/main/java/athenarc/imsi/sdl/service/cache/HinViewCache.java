@@ -0,0 +1,179 @@
+package athenarc.imsi.sdl.service.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * Cache of the HIN views computed by earlier jobs, so that analyses on the same metapath and
+ * constraints skip the HIN transformation.
+ * <p>
+ * Views are keyed by dataset, metapath, constraints and edges threshold and stored as matrix files
+ * under {@code BASE_PATH/.hin-cache/}; the modification time of a file is the time of its last use.
+ * The converged PageRank vectors of the views are kept alongside them, to start later rankings of
+ * the same metapath from. When the files exceed the disk budget, the least recently used ones are deleted.
+ */
+@Service
+public class HinViewCache {
+
+    public static final String DIR = ".hin-cache";
+    public static final String EXTENSION = ".view";
+    public static final String RANKS_EXTENSION = ".ranks";
+
+    private static final int RANKS_MAGIC = 0x524e4b31;
+
+    private final Logger log = LoggerFactory.getLogger(HinViewCache.class);
+
+    private final File dir;
+    private final long maxSize;
+
+    public HinViewCache() {
+        this(new File(Constants.BASE_PATH, DIR), Constants.HIN_VIEW_CACHE_MAX_SIZE);
+    }
+
+    public HinViewCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The cache key of the view of a metapath; a threshold of 0 stands for the view before thresholding.
+     */
+    public static String key(String dataset, String metapath, Document constraints, double edgesThreshold) {
+        Document view = new Document("dataset", dataset)
+            .append("metapath", metapath)
+            .append("constraints", constraints)
+            .append("edgesThreshold", edgesThreshold);
+        return CacheKeys.hash(view, dataset);
+    }
+
+    /**
+     * The cache key of the rank vectors of a metapath. It leaves out the edges threshold, as the ranks of the
+     * views of different thresholds are close enough to start from.
+     */
+    public static String ranksKey(String dataset, String metapath, Document constraints) {
+        Document view = new Document("dataset", dataset)
+            .append("metapath", metapath)
+            .append("constraints", constraints)
+            .append("ranks", true);
+        return CacheKeys.hash(view, dataset);
+    }
+
+    /**
+     * The cached view with the given key, or null if there is none.
+     */
+    public SparseMatrix get(String key) {
+        File file = new File(dir, key + EXTENSION);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            SparseMatrix view = SparseMatrix.read(file);
+            file.setLastModified(System.currentTimeMillis());
+            return view;
+        } catch (IOException e) {
+            // evicted while reading, or left incomplete
+            log.warn("Could not read cached HIN view " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a view, unless it alone exceeds the disk budget, and evicts the least recently used ones.
+     */
+    public synchronized void put(String key, SparseMatrix view) throws IOException {
+        if (estimatedSize(view) > maxSize) {
+            return;
+        }
+        dir.mkdirs();
+        view.write(new File(dir, key + EXTENSION));
+        evict();
+    }
+
+    /**
+     * The cached rank vector with the given key, or null if there is none of the given size.
+     */
+    public double[] getRanks(String key, int size) {
+        File file = new File(dir, key + RANKS_EXTENSION);
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() != 2 * Integer.BYTES + (long) size * Double.BYTES) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != RANKS_MAGIC || buffer.getInt() != size) {
+                return null;
+            }
+            double[] ranks = new double[size];
+            buffer.asDoubleBuffer().get(ranks);
+            file.setLastModified(System.currentTimeMillis());
+            return ranks;
+        } catch (IOException e) {
+            log.warn("Could not read cached ranks " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a rank vector, replacing the one with the same key, and evicts the least recently used files.
+     */
+    public synchronized void putRanks(String key, double[] ranks) throws IOException {
+        if (2 * Integer.BYTES + (long) ranks.length * Double.BYTES > maxSize) {
+            return;
+        }
+        dir.mkdirs();
+        File file = new File(dir, key + RANKS_EXTENSION);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(RANKS_MAGIC);
+            out.writeInt(ranks.length);
+            for (double rank : ranks) {
+                out.writeDouble(rank);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }
+
+    private static long estimatedSize(SparseMatrix view) {
+        return (view.rows() + 1L) * Integer.BYTES + view.nnz() * (Integer.BYTES + Double.BYTES);
+    }
+
+    private void evict() {
+        File[] files = dir.listFiles((parent, name) -> name.endsWith(EXTENSION) || name.endsWith(RANKS_EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && size > maxSize; i++) {
+            size -= files[i].length();
+            if (files[i].delete()) {
+                log.debug("Evicted cached file " + files[i].getName());
+            }
+        }
+    }
+}
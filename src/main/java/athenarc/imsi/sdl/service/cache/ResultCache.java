@@ -0,0 +1,208 @@
+package athenarc.imsi.sdl.service.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import athenarc.imsi.sdl.config.Constants;
+
+/**
+ * Cache of the outputs of finished jobs, keyed by a hash of their configuration.
+ * <p>
+ * The key is the SHA-256 of the job configuration written by
+ * {@link athenarc.imsi.sdl.service.util.FileUtil#writeConfig}, with the job specific paths removed,
+ * the keys sorted and the size and modification time of the dataset files added (see
+ * {@link CacheKeys}). A job with a cached configuration is completed by linking the files of the
+ * cached job into its own directory.
+ * <p>
+ * Every entry is a file under {@code BASE_PATH/.result-cache/} listing the job that computed the
+ * results followed by the jobs linked to it; its modification time is the time of its last use.
+ * Only the directories of the jobs that computed cached results count toward the size budget, as
+ * the other jobs under {@code BASE_PATH} cannot be evicted. When they exceed it, the least recently
+ * used entries are evicted: the job that computed the results and the jobs linked to it keep only
+ * their configuration and their logs, which end with the {@link #EXIT_EXPIRED} exit code.
+ */
+@Service
+public class ResultCache {
+
+    public static final String DIR = ".result-cache";
+
+    /**
+     * Exit code appended to the logs of the jobs whose results were evicted.
+     */
+    public static final int EXIT_EXPIRED = 300;
+
+    private final Logger log = LoggerFactory.getLogger(ResultCache.class);
+
+    private final File baseDir;
+    private final File cacheDir;
+    private final long maxSize;
+
+    public ResultCache() {
+        this(new File(Constants.BASE_PATH), Constants.RESULT_CACHE_MAX_SIZE);
+    }
+
+    ResultCache(File baseDir, long maxSize) {
+        this.baseDir = baseDir;
+        this.cacheDir = new File(baseDir, DIR);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The cache key of a job configuration.
+     */
+    public static String key(Document config) {
+        return CacheKeys.hash(config, config.getString("dataset"));
+    }
+
+    /**
+     * Completes a job from the cache if an earlier job had the same configuration, linking the files
+     * of that job into the directory of the new one (all but its configuration).
+     *
+     * @return the id of the job whose results were reused, or null on a cache miss
+     */
+    public synchronized String link(String key, String id) throws IOException {
+        Path entry = cacheDir.toPath().resolve(key);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+
+        List<String> jobs = Files.readAllLines(entry, StandardCharsets.UTF_8);
+        Path source = jobs.isEmpty() ? null : baseDir.toPath().resolve(jobs.get(0));
+        if (source == null || !Files.isDirectory(source)) {
+            Files.delete(entry);
+            return null;
+        }
+
+        Path target = baseDir.toPath().resolve(id);
+        Files.createDirectories(target);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(source)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().equals(Constants.CONFIG_FILE)) {
+                    continue;
+                }
+                Path link = target.resolve(file.getFileName());
+                Files.deleteIfExists(link);
+                Files.createSymbolicLink(link, file);
+            }
+        }
+
+        Files.write(entry, Collections.singletonList(id), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        entry.toFile().setLastModified(System.currentTimeMillis());
+        log.debug("Analysis task " + id + " reuses the results of " + jobs.get(0));
+        return jobs.get(0);
+    }
+
+    /**
+     * Records the results of a finished job and evicts old entries if the size budget is exceeded.
+     *
+     * @return the jobs whose results were evicted
+     */
+    public synchronized List<String> put(String key, String id) throws IOException {
+        Files.createDirectories(cacheDir.toPath());
+        Files.write(cacheDir.toPath().resolve(key), Collections.singletonList(id), StandardCharsets.UTF_8);
+        return evict();
+    }
+
+    private List<String> evict() throws IOException {
+        List<String> evicted = new ArrayList<>();
+        File[] entries = cacheDir.listFiles();
+        if (entries == null) {
+            return evicted;
+        }
+
+        long size = 0;
+        for (File entry : entries) {
+            List<String> jobs = Files.readAllLines(entry.toPath(), StandardCharsets.UTF_8);
+            if (!jobs.isEmpty()) {
+                size += sizeOf(baseDir.toPath().resolve(jobs.get(0)));
+            }
+        }
+        if (size <= maxSize) {
+            return evicted;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+
+        // the most recent entry is kept even if it alone exceeds the budget
+        for (int i = 0; i < entries.length - 1 && size > maxSize; i++) {
+            List<String> jobs = Files.readAllLines(entries[i].toPath(), StandardCharsets.UTF_8);
+            // the linked jobs go first, as they copy the logs of the job that computed the results
+            for (int j = jobs.size() - 1; j >= 0; j--) {
+                Path dir = baseDir.toPath().resolve(jobs.get(j));
+                if (j == 0) {
+                    size -= sizeOf(dir);
+                }
+                expire(dir);
+            }
+            Files.delete(entries[i].toPath());
+            evicted.addAll(jobs);
+            log.debug("Evicted cached results of " + jobs);
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes all files of a job but its configuration and its logs, copying the logs it links to, and
+     * appends the {@link #EXIT_EXPIRED} exit code to its log.
+     */
+    private static void expire(Path dir) throws IOException {
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            boolean kept = name.equals(Constants.CONFIG_FILE) || name.equals(Constants.LOG_OUT) || name.equals(Constants.LOG_ERR);
+            if (kept) {
+                if (Files.isSymbolicLink(file)) {
+                    Path target = file.toRealPath();
+                    Files.delete(file);
+                    Files.copy(target, file);
+                }
+            } else if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+                FileUtils.deleteDirectory(file.toFile());
+            } else {
+                Files.delete(file);
+            }
+        }
+
+        // the log of a finished job ends with its exit code, without a line break
+        Files.write(dir.resolve(Constants.LOG_OUT), ("\nExit Code\t" + EXIT_EXPIRED).getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Total size of the regular files under a directory; links to the files of other jobs are not counted.
+     */
+    private static long sizeOf(Path dir) throws IOException {
+        if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+                .mapToLong(file -> file.toFile().length())
+                .sum();
+        }
+    }
+}
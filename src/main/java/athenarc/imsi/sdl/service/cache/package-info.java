@@ -0,0 +1,4 @@
+/**
+ * Caches that let analysis jobs reuse the work of earlier jobs.
+ */
+package athenarc.imsi.sdl.service.cache;
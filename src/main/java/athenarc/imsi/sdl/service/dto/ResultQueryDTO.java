@@ -0,0 +1,90 @@
+package athenarc.imsi.sdl.service.dto;
+
+/**
+ * A DTO representing the sorting and filtering of the results of an analysis.
+ */
+public class ResultQueryDTO {
+    private String sort;
+    private boolean descending;
+    private String filter;
+    private boolean prefix;
+    private Double minScore;
+    private Double maxScore;
+    private String community;
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    public boolean isPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(boolean prefix) {
+        this.prefix = prefix;
+    }
+
+    public Double getMinScore() {
+        return minScore;
+    }
+
+    public void setMinScore(Double minScore) {
+        this.minScore = minScore;
+    }
+
+    public Double getMaxScore() {
+        return maxScore;
+    }
+
+    public void setMaxScore(Double maxScore) {
+        this.maxScore = maxScore;
+    }
+
+    public String getCommunity() {
+        return community;
+    }
+
+    public void setCommunity(String community) {
+        this.community = community;
+    }
+
+    /**
+     * Whether the results are requested in file order and unfiltered.
+     */
+    public boolean isEmpty() {
+        return sort == null && (filter == null || filter.isEmpty()) && minScore == null && maxScore == null && community == null;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultQueryDTO{" +
+            "sort='" + sort + '\'' +
+            ", descending=" + descending +
+            ", filter='" + filter + '\'' +
+            ", prefix=" + prefix +
+            ", minScore=" + minScore +
+            ", maxScore=" + maxScore +
+            ", community='" + community + '\'' +
+            "}";
+    }
+}
@@ -0,0 +1,34 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+
+/**
+ * Executes the analyses described by a job configuration, as written by
+ * {@link athenarc.imsi.sdl.service.util.FileUtil#writeConfig}.
+ * <p>
+ * Engines report their progress in the job's {@code log.out} and write their results to the
+ * output files named in the configuration, so that the REST layer is agnostic of the engine used.
+ * Every line written to the log is also passed to a listener, to track the progress in memory.
+ */
+public interface AnalysisEngine {
+
+    int EXIT_SUCCESS = 0;
+    int EXIT_FAILURE = 1;
+    int EXIT_EMPTY_VIEW = 100;
+    int EXIT_LARGE_VIEW = 200;
+
+    /**
+     * Whether this engine is able to run the analyses of the given configuration.
+     */
+    boolean supports(Document config);
+
+    /**
+     * Runs the job and returns its exit code.
+     *
+     * @param logListener called with every line written to the job's log
+     */
+    int run(String id, String configFile, Document config, Consumer<String> logListener) throws IOException, InterruptedException;
+}
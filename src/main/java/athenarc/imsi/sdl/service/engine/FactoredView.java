@@ -0,0 +1,91 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import athenarc.imsi.sdl.service.hin.NodeSet;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * HIN view of a symmetric metapath kept as the matrix {@code M} of its first half; every product
+ * with {@code C = M * M^T} is computed as {@code (w^T * M) * M^T}, so {@code C} is never materialised.
+ * <p>
+ * Both steps read a row per entry of their result, so that blocks of rows are computed in parallel:
+ * the rows of {@code M^T} for {@code w^T * M}, and the rows of {@code M} for the product with
+ * {@code M^T}. Entries are summed in ascending order of their column, as by row-wise products,
+ * which needs the rows of both matrices sorted by column; a sorted copy is made of a matrix
+ * whose rows are not.
+ */
+class FactoredView implements HinView {
+
+    private final SparseMatrix half;
+    private final SparseMatrix halfTransposed;
+    private final SparseMatrix sortedHalf;
+    private final SparseMatrix sortedHalfTransposed;
+    private RowBlocks halfBlocks;
+    private RowBlocks halfTransposedBlocks;
+
+    FactoredView(SparseMatrix half, SparseMatrix halfTransposed) {
+        this.half = half;
+        this.halfTransposed = halfTransposed;
+        this.sortedHalf = hasSortedRows(half) ? half : halfTransposed.transpose();
+        this.sortedHalfTransposed = hasSortedRows(halfTransposed) ? halfTransposed : half.transpose();
+    }
+
+    private static boolean hasSortedRows(SparseMatrix matrix) {
+        for (int i = 0; i < matrix.rows(); i++) {
+            for (int pos = matrix.rowStart(i) + 1; pos < matrix.rowEnd(i); pos++) {
+                if (matrix.colAt(pos - 1) > matrix.colAt(pos)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return half.rows();
+    }
+
+    @Override
+    public long storedEntries() {
+        return half.nnz() + halfTransposed.nnz()
+            + (sortedHalf != half ? sortedHalf.nnz() : 0) + (sortedHalfTransposed != halfTransposed ? sortedHalfTransposed.nnz() : 0);
+    }
+
+    /**
+     * As {@code C[i][i] = ||M_i||^2}, a node has edges in the view exactly when its row of {@code M} is not empty.
+     */
+    @Override
+    public NodeSet nodes() {
+        NodeSet nodes = new NodeSet();
+        for (int i = 0; i < half.rows(); i++) {
+            if (half.rowNnz(i) > 0) {
+                nodes.add(i);
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public double[] rowSums() {
+        double[] ones = new double[half.rows()];
+        Arrays.fill(ones, 1.0);
+        double[] sums = new double[half.rows()];
+        propagate(ones, sums);
+        return sums;
+    }
+
+    @Override
+    public void propagate(double[] weights, double[] out, int vectors, ForkJoinPool pool) {
+        if (halfBlocks == null || !halfBlocks.isFor(pool)) {
+            halfBlocks = RowBlocks.of(sortedHalf, pool);
+            halfTransposedBlocks = RowBlocks.of(sortedHalfTransposed, pool);
+        }
+
+        double[] middle = new double[half.cols() * vectors];
+        halfTransposedBlocks.run((from, to) -> RowBlocks.multiplyRows(sortedHalfTransposed, weights, middle, vectors, from, to));
+        halfBlocks.run((from, to) -> RowBlocks.multiplyRows(sortedHalf, middle, out, vectors, from, to));
+    }
+}
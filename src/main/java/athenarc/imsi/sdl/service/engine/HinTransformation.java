@@ -0,0 +1,134 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.bson.Document;
+
+import athenarc.imsi.sdl.service.hin.ConstraintExpression;
+import athenarc.imsi.sdl.service.hin.CsrMatrix;
+import athenarc.imsi.sdl.service.hin.HinDataset;
+import athenarc.imsi.sdl.service.hin.MatrixChain;
+import athenarc.imsi.sdl.service.hin.Metapath;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+import athenarc.imsi.sdl.service.index.AttributeIndex;
+
+/**
+ * Transforms a dataset into the homogeneous HIN view of a constrained metapath,
+ * i.e. the commuting matrix of the metapath restricted to the nodes satisfying the constraints.
+ */
+public class HinTransformation {
+
+    private final HinDataset dataset;
+    private final Document constraints;
+    private final ForkJoinPool pool;
+    private final Map<String, BitSet> masks = new HashMap<>();
+
+    public HinTransformation(HinDataset dataset, Document constraints, ForkJoinPool pool) {
+        this.dataset = dataset;
+        this.pool = pool;
+        this.constraints = constraints != null ? constraints : new Document();
+    }
+
+    /**
+     * Ids of the nodes of an entity type that satisfy its constraint, or null when it is unconstrained.
+     * Constraints are evaluated on the attribute index of the entity, before any relation is read.
+     */
+    public BitSet mask(String entity) throws IOException {
+        if (masks.containsKey(entity)) {
+            return masks.get(entity);
+        }
+
+        BitSet mask = null;
+        Object expression = constraints.get(entity);
+        if (expression instanceof String && !((String) expression).trim().isEmpty()) {
+            mask = AttributeIndex.load(dataset, entity).evaluate(ConstraintExpression.parse((String) expression));
+        }
+        masks.put(entity, mask);
+        return mask;
+    }
+
+    /**
+     * Chooses the multiplication order of the hops of a metapath from their estimated number of non-zeros,
+     * taking the selectivity of the constraints into account.
+     */
+    public MatrixChain plan(String metapath) throws IOException {
+        List<MatrixChain.Estimate> estimates = new ArrayList<>();
+        for (int i = 0; i < Metapath.length(metapath) - 1; i++) {
+            String source = Metapath.entity(metapath, i);
+            String target = Metapath.entity(metapath, i + 1);
+            CsrMatrix relation = dataset.relation(source, target);
+            double nnz = relation.nnz() * selectivity(i == 0 ? mask(source) : null, relation.rows())
+                * selectivity(mask(target), relation.cols());
+            estimates.add(new MatrixChain.Estimate(relation.rows(), relation.cols(), nnz));
+        }
+        return new MatrixChain(estimates);
+    }
+
+    /**
+     * Human-readable multiplication order of a metapath, e.g. {@code ((AP PV) (VP PA))}.
+     */
+    public String describe(String metapath) throws IOException {
+        List<String> hops = new ArrayList<>();
+        for (int i = 0; i < Metapath.length(metapath) - 1; i++) {
+            hops.add(metapath.substring(i, i + 2));
+        }
+        return plan(metapath).toString(hops);
+    }
+
+    /**
+     * Computes the commuting matrix of the metapath in the order chosen by {@link #plan(String)},
+     * splitting each product into row blocks that are multiplied in parallel.
+     */
+    public SparseMatrix transform(String metapath) throws IOException {
+        if (Metapath.length(metapath) < 2) {
+            throw new IllegalArgumentException("Metapath should contain at least two entities: " + metapath);
+        }
+
+        MatrixChain chain = plan(metapath);
+        Operand result = product(metapath, chain, 0, chain.size() - 1);
+        if (result.matrix instanceof SparseMatrix && result.rowMask == null && result.colMask == null) {
+            return (SparseMatrix) result.matrix;
+        }
+        return SparseMatrix.copyOf(result.matrix, result.rowMask, result.colMask);
+    }
+
+    private Operand product(String metapath, MatrixChain chain, int from, int to) throws IOException {
+        if (from == to) {
+            // a single hop is read from the mapped relation, with the constraints applied while multiplying
+            String source = Metapath.entity(metapath, from);
+            String target = Metapath.entity(metapath, from + 1);
+            return new Operand(dataset.relation(source, target), from == 0 ? mask(source) : null, mask(target));
+        }
+
+        int k = chain.split(from, to);
+        Operand left = product(metapath, chain, from, k);
+        Operand right = product(metapath, chain, k + 1, to);
+        return new Operand(SparseMatrix.multiply(left.matrix, left.rowMask, left.colMask, right.matrix, right.colMask, pool), null, null);
+    }
+
+    private static double selectivity(BitSet mask, int size) {
+        return (mask == null || size == 0) ? 1.0 : (double) mask.cardinality() / size;
+    }
+
+    /**
+     * A factor of the commuting matrix, along with the constraints still to be applied to its rows and columns.
+     * Only the first hop of a metapath ever has a row mask, so it is always the left operand of a product.
+     */
+    private static final class Operand {
+        final CsrMatrix matrix;
+        final BitSet rowMask;
+        final BitSet colMask;
+
+        Operand(CsrMatrix matrix, BitSet rowMask, BitSet colMask) {
+            this.matrix = matrix;
+            this.rowMask = rowMask;
+            this.colMask = colMask;
+        }
+    }
+}
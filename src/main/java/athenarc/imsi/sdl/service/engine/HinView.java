@@ -0,0 +1,83 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.concurrent.ForkJoinPool;
+
+import athenarc.imsi.sdl.service.hin.NodeSet;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * The homogeneous HIN view of a metapath, i.e. its weighted commuting matrix {@code C},
+ * as needed by the ranking analyses.
+ * <p>
+ * Views of symmetric metapaths need not hold {@code C} itself: it can be computed on demand
+ * from the matrix {@code M} of the first half of the metapath as {@code C = M * M^T}, or kept
+ * as its upper triangle only.
+ */
+public interface HinView {
+
+    /**
+     * Number of rows (and columns) of the commuting matrix.
+     */
+    int size();
+
+    /**
+     * Number of matrix entries held in memory, used to reject views that are too large.
+     */
+    long storedEntries();
+
+    /**
+     * Nodes that take part in at least one edge of the view.
+     */
+    NodeSet nodes();
+
+    double[] rowSums();
+
+    /**
+     * Adds {@code weights^T * C} to {@code out}, i.e. spreads the weight of every node over its out-edges.
+     */
+    default void propagate(double[] weights, double[] out) {
+        propagate(weights, out, null);
+    }
+
+    /**
+     * Adds {@code weights^T * C} to {@code out}, splitting the rows of the product into blocks that are
+     * computed on the given pool (if any). Every entry of {@code out} is summed in the same order
+     * whatever the number of threads, so the results do not depend on the pool.
+     */
+    default void propagate(double[] weights, double[] out, ForkJoinPool pool) {
+        propagate(weights, out, 1, pool);
+    }
+
+    /**
+     * Adds {@code weights^T * C} to {@code out} for several vectors at once, in a single pass over the view.
+     * Both arrays hold the values of the vectors for a node next to each other, i.e. the value of vector
+     * {@code v} for node {@code i} is at {@code i * vectors + v}. Every vector is summed in the same order
+     * as on its own.
+     */
+    void propagate(double[] weights, double[] out, int vectors, ForkJoinPool pool);
+
+    default boolean isEmpty() {
+        return nodes().isEmpty();
+    }
+
+    /**
+     * A view backed by the full commuting matrix.
+     */
+    static HinView of(SparseMatrix matrix) {
+        return new MaterializedView(matrix);
+    }
+
+    /**
+     * A view of {@code M * M^T} that is never materialised, given {@code M} and its transpose.
+     */
+    static HinView factored(SparseMatrix half, SparseMatrix halfTransposed) {
+        return new FactoredView(half, halfTransposed);
+    }
+
+    /**
+     * A view of {@code M * M^T} that keeps only the entries of its upper triangle of at least {@code minValue}.
+     */
+    static HinView upperTriangle(SparseMatrix half, SparseMatrix halfTransposed, double minValue) {
+        return SymmetricView.build(half, halfTransposed, minValue);
+    }
+}
@@ -0,0 +1,45 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.function.Consumer;
+
+/**
+ * Writes progress lines to a job's log file, in the {@code stage \t step \t message}
+ * format interpreted by {@link athenarc.imsi.sdl.service.status.JobState}, and passes them
+ * to a listener.
+ */
+public class JobLog implements Closeable {
+
+    public static final String HIN_TRANSFORMATION = "HIN Transformation";
+
+    /**
+     * Number of steps of each stage, as assumed by the progress computation.
+     */
+    public static final int STEPS = 3;
+
+    private final PrintWriter writer;
+    private final Consumer<String> listener;
+
+    public JobLog(String logfile, Consumer<String> listener) throws IOException {
+        this.writer = new PrintWriter(new FileWriter(logfile, true), true);
+        this.listener = listener;
+    }
+
+    public void progress(String stage, int step, String message) {
+        String line = stage + "\t" + step + "\t" + message;
+        writer.println(line);
+        listener.accept(line);
+    }
+
+    public void completed(String stage) {
+        progress(stage, STEPS, "Completed");
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+}
@@ -0,0 +1,286 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.cache.HinViewCache;
+import athenarc.imsi.sdl.service.hin.HinDataset;
+import athenarc.imsi.sdl.service.hin.Metapath;
+import athenarc.imsi.sdl.service.hin.NodeSet;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+import athenarc.imsi.sdl.service.util.FileUtil;
+
+/**
+ * Runs the HIN transformation, Ranking and the similarity analyses inside the application JVM,
+ * avoiding the start-up cost of the Spark workflow for small and medium datasets.
+ */
+@Component
+public class LocalAnalysisEngine implements AnalysisEngine {
+
+    public static final List<String> SUPPORTED_ANALYSES = Arrays.asList("Ranking", "Similarity Join", "Similarity Search");
+
+    private final Logger log = LoggerFactory.getLogger(LocalAnalysisEngine.class);
+
+    private final ForkJoinPool pool = new ForkJoinPool(Constants.LOCAL_ENGINE_PARALLELISM);
+
+    private final HinViewCache viewCache;
+    private final String dataDir;
+    private final String resultsDir;
+    private final long maxViewNnz;
+
+    @Autowired
+    public LocalAnalysisEngine(HinViewCache viewCache) {
+        this(viewCache, Constants.DATA_DIR, Constants.BASE_PATH, Constants.LOCAL_ENGINE_MAX_VIEW_NNZ);
+    }
+
+    LocalAnalysisEngine(HinViewCache viewCache, String dataDir, String resultsDir, long maxViewNnz) {
+        this.viewCache = viewCache;
+        this.dataDir = dataDir;
+        this.resultsDir = resultsDir;
+        this.maxViewNnz = maxViewNnz;
+    }
+
+    @Override
+    public boolean supports(Document config) {
+        List<String> analyses = (List<String>) config.get("analyses");
+        List<Document> queries = (List<Document>) config.get("queries");
+
+        if (analyses == null || !SUPPORTED_ANALYSES.containsAll(analyses) || queries == null || queries.size() != 1) {
+            return false;
+        }
+
+        String metapath = queries.get(0).getString("metapath");
+        if (metapath == null || Metapath.length(metapath) < 2) {
+            return false;
+        }
+
+        HinDataset dataset = getDataset(config);
+        for (int i = 0; i < Metapath.length(metapath) - 1; i++) {
+            if (!dataset.hasRelation(Metapath.entity(metapath, i), Metapath.entity(metapath, i + 1))) {
+                return false;
+            }
+        }
+        return dataset.relationsSize() <= Constants.LOCAL_ENGINE_MAX_DATASET_SIZE;
+    }
+
+    @Override
+    public int run(String id, String configFile, Document config, Consumer<String> logListener) throws IOException {
+        try (JobLog jobLog = new JobLog(getJobFile(id, Constants.LOG_OUT), logListener)) {
+            return execute(id, config, jobLog);
+        } catch (IOException | RuntimeException e) {
+            log.error("Local analysis task for id: " + id + " failed", e);
+            try (PrintWriter err = new PrintWriter(new FileWriter(getJobFile(id, Constants.LOG_ERR), true))) {
+                e.printStackTrace(err);
+            }
+            return EXIT_FAILURE;
+        }
+    }
+
+    private int execute(String id, Document config, JobLog jobLog) throws IOException {
+        List<String> analyses = (List<String>) config.get("analyses");
+        Document query = ((List<Document>) config.get("queries")).get(0);
+        String metapath = query.getString("metapath");
+        String joinpath = query.getString("joinpath") != null ? query.getString("joinpath") : Metapath.joinpath(metapath);
+        String selectField = config.getString("select_field");
+        HinDataset dataset = getDataset(config);
+        Document constraints = (Document) query.get("constraints");
+
+        // HIN transformation
+        jobLog.progress(JobLog.HIN_TRANSFORMATION, 1, "Loading relations and applying constraints");
+        HinTransformation transformation = new HinTransformation(dataset, constraints, pool);
+
+        boolean ranking = analyses.contains("Ranking");
+        boolean similarity = analyses.contains("Similarity Join") || analyses.contains("Similarity Search");
+        int edgesThreshold = getInt(config, "edgesThreshold", 1);
+
+        // symmetric metapaths only need the matrix M of their first half, as their view is M * M^T
+        boolean factorable = Metapath.isFactorable(metapath);
+        SparseMatrix half = null;
+        SparseMatrix halfTransposed = null;
+        if (similarity || (ranking && factorable)) {
+            String path = similarity ? joinpath : Metapath.joinpath(metapath);
+            half = transform(transformation, dataset, constraints, path, 0, jobLog);
+            if (half.nnz() == 0) {
+                return EXIT_EMPTY_VIEW;
+            } else if (half.nnz() > maxViewNnz) {
+                return EXIT_LARGE_VIEW;
+            }
+            halfTransposed = half.transpose();
+        }
+
+        HinView view = null;
+        NodeSet nodes = null;
+        if (ranking) {
+            if (factorable && (!similarity || joinpath.equals(Metapath.joinpath(metapath)))) {
+                // integer path counts always pass a threshold of 1, so then the view need not be materialised
+                view = (edgesThreshold <= 1) ? HinView.factored(half, halfTransposed)
+                    : HinView.upperTriangle(half, halfTransposed, edgesThreshold);
+            } else {
+                view = HinView.of(transform(transformation, dataset, constraints, metapath, edgesThreshold, jobLog));
+            }
+            nodes = view.nodes();
+            if (nodes.isEmpty()) {
+                return EXIT_EMPTY_VIEW;
+            } else if (view.storedEntries() > maxViewNnz) {
+                return EXIT_LARGE_VIEW;
+            }
+        }
+        jobLog.completed(JobLog.HIN_TRANSFORMATION);
+
+        String[] names = dataset.column(Metapath.entity(metapath, 0), selectField);
+        PathSim pathSim = similarity ? new PathSim(half, halfTransposed) : null;
+        int k = getInt(config, "searchK", 100);
+        int minValues = getInt(config, "sim_min_values", 0);
+
+        List<Double> sweep = FileUtil.getRankingAlphas(config);
+        for (String analysis : analyses) {
+            if (analysis.equals("Ranking") && sweep != null && sweep.size() > 1) {
+                rankSweep(id, config, view, nodes, names, selectField, sweep, jobLog);
+
+            } else if (analysis.equals("Ranking")) {
+                jobLog.progress(analysis, 1, "Computing PageRank");
+                double alpha = getDouble(config, "pr_alpha", PageRank.DEFAULT_ALPHA);
+                double tol = getDouble(config, "pr_tol", PageRank.DEFAULT_TOL);
+                // start from the converged ranks of an earlier ranking of the metapath, whatever its threshold or alpha
+                String ranksKey = HinViewCache.ranksKey(dataset.getName(), metapath, constraints);
+                double[] initial = viewCache.getRanks(ranksKey, view.size());
+                double[] lastError = { Double.POSITIVE_INFINITY };
+                int[] iterations = { 0 };
+                double[] ranks = PageRank.rank(view, alpha, tol, Constants.PAGERANK_MAX_ITERATIONS, pool, initial,
+                    (iteration, error) -> {
+                        iterations[0] = iteration;
+                        lastError[0] = error;
+                        jobLog.progress(analysis, 2, "Iteration " + iteration + ", error " + error);
+                    });
+                boolean converged = lastError[0] < tol;
+                String start = (initial != null) ? "warm" : "cold";
+                jobLog.progress(analysis, 2, (converged ? "Converged" : "Stopped") + " after " + iterations[0] + " iterations from a " + start + " start");
+                log.info("PageRank for id: {} took {} iterations from a {} start", id, iterations[0], start);
+                if (converged) {
+                    saveRanks(ranksKey, ranks);
+                }
+
+                ResultWriter.writeRanking(config.getString("final_ranking_out"), selectField, names, ranks, nodes);
+
+            } else if (analysis.equals("Similarity Join")) {
+                jobLog.progress(analysis, 1, "Computing top-" + k + " similar pairs");
+                List<SimilarityPair> pairs;
+                if (config.get("sim_lsh_bands") != null) {
+                    int bands = getInt(config, "sim_lsh_bands", 1);
+                    int rows = getInt(config, "sim_lsh_rows", Constants.SIM_LSH_DEFAULT_ROWS);
+                    MinHashJoin minHashJoin = new MinHashJoin(pathSim, bands, rows);
+                    pairs = minHashJoin.join(k, minValues, pool);
+                    jobLog.progress(analysis, 1, "Scored " + minHashJoin.getCandidates() + " candidate pairs of " + bands + " LSH bands");
+                    ResultWriter.writeJoinStats(config.getString("sim_join_stats"), bands, rows, minHashJoin.getCandidates());
+                } else {
+                    pairs = pathSim.join(k, minValues, pool);
+                }
+                jobLog.progress(analysis, 2, "Writing results");
+                ResultWriter.writeSimilarities(config.getString("final_sim_join_out"), names, pairs);
+
+            } else if (analysis.equals("Similarity Search")) {
+                jobLog.progress(analysis, 1, "Computing top-" + k + " similar entities");
+                List<SimilarityPair> pairs = pathSim.search(getInt(config, "target_id", 0), k, minValues);
+                jobLog.progress(analysis, 2, "Writing results");
+                ResultWriter.writeSimilarities(config.getString("final_sim_search_out"), names, pairs);
+            }
+            jobLog.completed(analysis);
+        }
+
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * Ranks with several damping factors in a single power iteration, writing the results of each to its own file
+     * and those of the first one as the main ranking results. The sweep starts from uniform ranks.
+     */
+    private void rankSweep(String id, Document config, HinView view, NodeSet nodes, String[] names, String selectField,
+                           List<Double> sweep, JobLog jobLog) throws IOException {
+        String analysis = "Ranking";
+        double[] alphas = sweep.stream().mapToDouble(Double::doubleValue).toArray();
+        double tol = getDouble(config, "pr_tol", PageRank.DEFAULT_TOL);
+        jobLog.progress(analysis, 1, "Computing PageRank for " + alphas.length + " damping factors");
+        double[] lastError = { Double.POSITIVE_INFINITY };
+        int[] iterations = { 0 };
+        double[][] ranks = PageRank.rank(view, alphas, tol, Constants.PAGERANK_MAX_ITERATIONS, pool,
+            (iteration, error) -> {
+                iterations[0] = iteration;
+                lastError[0] = error;
+                jobLog.progress(analysis, 2, "Iteration " + iteration + ", error " + error);
+            });
+        jobLog.progress(analysis, 2, (lastError[0] < tol ? "Converged" : "Stopped") + " after " + iterations[0] + " iterations");
+        log.info("PageRank sweep of {} damping factors for id: {} took {} iterations", alphas.length, id, iterations[0]);
+
+        String rankingFile = config.getString("final_ranking_out");
+        for (int v = 0; v < alphas.length; v++) {
+            ResultWriter.writeRanking(FileUtil.getRankingFile(rankingFile, alphas[v]), selectField, names, ranks[v], nodes);
+        }
+        ResultWriter.writeRanking(rankingFile, selectField, names, ranks[0], nodes);
+    }
+
+    /**
+     * Returns the view of a metapath from the cache of earlier jobs, computing and caching it if missing.
+     *
+     * @param edgesThreshold the minimum value of the entries of the view, or 0 to keep all of them
+     */
+    private SparseMatrix transform(HinTransformation transformation, HinDataset dataset, Document constraints,
+                                   String metapath, int edgesThreshold, JobLog jobLog) throws IOException {
+        String key = HinViewCache.key(dataset.getName(), metapath, constraints, edgesThreshold);
+        SparseMatrix view = viewCache.get(key);
+        if (view != null) {
+            jobLog.progress(JobLog.HIN_TRANSFORMATION, 2, "Reusing HIN view of " + metapath);
+            return view;
+        }
+
+        jobLog.progress(JobLog.HIN_TRANSFORMATION, 2, "Computing HIN view of " + metapath + " as " + transformation.describe(metapath));
+        view = transformation.transform(metapath);
+        if (edgesThreshold > 0) {
+            view = view.threshold(edgesThreshold);
+        }
+        viewCache.put(key, view);
+        return view;
+    }
+
+    private HinDataset getDataset(Document config) {
+        String name = config.getString("dataset");
+        return new HinDataset(name, dataDir + name + "/");
+    }
+
+    private String getJobFile(String id, String name) {
+        return resultsDir + "/" + id + "/" + name;
+    }
+
+    private void saveRanks(String key, double[] ranks) {
+        try {
+            viewCache.putRanks(key, ranks);
+        } catch (IOException e) {
+            // later rankings start cold
+            log.warn("Could not cache ranks " + key + ": " + e.getMessage());
+        }
+    }
+
+    private static int getInt(Document config, String key, int defaultValue) {
+        Object value = config.get(key);
+        return (value instanceof Number) ? ((Number) value).intValue() : defaultValue;
+    }
+
+    /**
+     * Returns a numeric parameter, falling back to the default for missing or non-positive values.
+     */
+    private static double getDouble(Document config, String key, double defaultValue) {
+        Object value = config.get(key);
+        return (value instanceof Number && ((Number) value).doubleValue() > 0) ? ((Number) value).doubleValue() : defaultValue;
+    }
+}
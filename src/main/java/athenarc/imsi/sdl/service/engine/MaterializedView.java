@@ -0,0 +1,66 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+
+import athenarc.imsi.sdl.service.hin.NodeSet;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * HIN view backed by the full commuting matrix.
+ * <p>
+ * Products read the transpose of the matrix, so that every block of its rows writes its own entries
+ * of the result. The rows of the transpose list their entries in ascending order of the rows of the
+ * matrix, so every entry of the result is summed in the same order as by a row-wise product.
+ */
+class MaterializedView implements HinView {
+
+    private final SparseMatrix matrix;
+    private final SparseMatrix transposed;
+    private RowBlocks blocks;
+
+    MaterializedView(SparseMatrix matrix) {
+        this.matrix = matrix;
+        this.transposed = matrix.transpose();
+    }
+
+    @Override
+    public int size() {
+        return matrix.rows();
+    }
+
+    /**
+     * The entries of the matrix and of its transpose.
+     */
+    @Override
+    public long storedEntries() {
+        return 2 * matrix.nnz();
+    }
+
+    @Override
+    public NodeSet nodes() {
+        BitSet nodes = new BitSet(matrix.rows());
+        for (int i = 0; i < matrix.rows(); i++) {
+            if (matrix.rowNnz(i) > 0) {
+                nodes.set(i);
+                for (int pos = matrix.rowStart(i); pos < matrix.rowEnd(i); pos++) {
+                    nodes.set(matrix.colAt(pos));
+                }
+            }
+        }
+        return NodeSet.fromBitSet(nodes);
+    }
+
+    @Override
+    public double[] rowSums() {
+        return matrix.rowSums();
+    }
+
+    @Override
+    public void propagate(double[] weights, double[] out, int vectors, ForkJoinPool pool) {
+        if (blocks == null || !blocks.isFor(pool)) {
+            blocks = RowBlocks.of(transposed, pool);
+        }
+        blocks.run((from, to) -> RowBlocks.multiplyRows(transposed, weights, out, vectors, from, to));
+    }
+}
@@ -0,0 +1,165 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * Approximate top-k PathSim join, scoring only the pairs of entities that share a bucket of a MinHash sketch.
+ * <p>
+ * The neighbours of every entity in the first half of the metapath are sketched with {@code bands * rows} MinHash
+ * values, and every band of {@code rows} values is hashed to a bucket. Two entities whose neighbour sets have a
+ * Jaccard similarity {@code s} share a bucket in some band with probability {@code 1 - (1 - s^rows)^bands}, so
+ * more bands find more of the similar pairs and more rows drop more of the dissimilar ones. The pairs that collide
+ * are scored with their exact PathSim; a pair colliding in several bands is only scored in the first of them.
+ */
+public class MinHashJoin {
+
+    private final PathSim pathSim;
+    private final SparseMatrix half;
+    private final int bands;
+    private final int rows;
+    private final LongAdder candidates = new LongAdder();
+
+    public MinHashJoin(PathSim pathSim, int bands, int rows) {
+        if (bands < 1 || rows < 1) {
+            throw new IllegalArgumentException("Invalid LSH bands or rows: " + bands + ", " + rows);
+        }
+        this.pathSim = pathSim;
+        this.half = pathSim.half();
+        this.bands = bands;
+        this.rows = rows;
+    }
+
+    /**
+     * The k most similar pairs among the colliding ones, each with its entities in increasing order.
+     */
+    public List<SimilarityPair> join(int k, int minValues, ForkJoinPool pool) {
+        candidates.reset();
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+
+        int[] entities = IntStream.range(0, half.rows()).filter(i -> pathSim.isJoinable(i, minValues)).toArray();
+        int[] buckets = new int[half.rows() * bands];
+        RowBlocks.of(half, pool).run((from, to) -> sketch(from, to, buckets));
+
+        AtomicInteger nextBand = new AtomicInteger();
+        return PathSim.top(k, () -> {
+            PriorityQueue<SimilarityPair> top = new PriorityQueue<>(k, PathSim.BEST_FIRST.reversed());
+            double[] row = new double[half.cols()];
+            long[] order = new long[entities.length];
+            for (int band = nextBand.getAndIncrement(); band < bands; band = nextBand.getAndIncrement()) {
+                joinBand(band, entities, buckets, order, row, top, k);
+            }
+            return new ArrayList<>(top);
+        }, pool);
+    }
+
+    /**
+     * Number of distinct pairs scored by the last join.
+     */
+    public long getCandidates() {
+        return candidates.sum();
+    }
+
+    /**
+     * Computes the bucket of every band of the entities {@code [from, to)}.
+     */
+    private void sketch(int from, int to, int[] buckets) {
+        long[] minima = new long[rows];
+        for (int i = from; i < to; i++) {
+            if (half.rowNnz(i) == 0) {
+                continue;
+            }
+            for (int band = 0; band < bands; band++) {
+                Arrays.fill(minima, Long.MAX_VALUE);
+                for (int pos = half.rowStart(i); pos < half.rowEnd(i); pos++) {
+                    long column = half.colAt(pos);
+                    for (int r = 0; r < rows; r++) {
+                        long hash = mix(((long) (band * rows + r) << 32) | column);
+                        if (hash < minima[r]) {
+                            minima[r] = hash;
+                        }
+                    }
+                }
+
+                long bucket = band;
+                for (long minimum : minima) {
+                    bucket = mix(bucket ^ minimum);
+                }
+                buckets[i * bands + band] = (int) (bucket ^ (bucket >>> 32));
+            }
+        }
+    }
+
+    /**
+     * Scores the pairs of entities sharing a bucket of a band, skipping those that shared one in an earlier band.
+     */
+    private void joinBand(int band, int[] entities, int[] buckets, long[] order, double[] row,
+                          PriorityQueue<SimilarityPair> top, int k) {
+        // entities sorted by bucket, and by id within a bucket
+        for (int p = 0; p < entities.length; p++) {
+            order[p] = ((buckets[entities[p] * bands + band] & 0xffffffffL) << 32) | entities[p];
+        }
+        Arrays.sort(order);
+
+        long scored = 0;
+        for (int start = 0, end; start < order.length; start = end) {
+            end = start + 1;
+            while (end < order.length && (order[end] >>> 32) == (order[start] >>> 32)) {
+                end++;
+            }
+
+            for (int x = start; x < end - 1; x++) {
+                int i = (int) order[x];
+                for (int pos = half.rowStart(i); pos < half.rowEnd(i); pos++) {
+                    row[half.colAt(pos)] = half.valueAt(pos);
+                }
+                for (int y = x + 1; y < end; y++) {
+                    int j = (int) order[y];
+                    if (collidedBefore(i, j, band, buckets)) {
+                        continue;
+                    }
+                    scored++;
+                    double commuting = 0.0;
+                    for (int pos = half.rowStart(j); pos < half.rowEnd(j); pos++) {
+                        commuting += row[half.colAt(pos)] * half.valueAt(pos);
+                    }
+                    if (commuting > 0.0) {
+                        PathSim.keep(top, new SimilarityPair(i, j, pathSim.score(i, j, commuting)), k);
+                    }
+                }
+                for (int pos = half.rowStart(i); pos < half.rowEnd(i); pos++) {
+                    row[half.colAt(pos)] = 0.0;
+                }
+            }
+        }
+        candidates.add(scored);
+    }
+
+    private boolean collidedBefore(int i, int j, int band, int[] buckets) {
+        for (int b = 0; b < band; b++) {
+            if (buckets[i * bands + b] == buckets[j * bands + b]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, a bijection of longs whose bits all depend on all input bits.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,194 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PageRank over the weighted homogeneous HIN view of a metapath.
+ * <p>
+ * Only the nodes that take part in at least one edge of the view are ranked;
+ * the rank mass of dangling nodes is redistributed uniformly. The products with the view,
+ * which take most of the time of an iteration, are split into blocks of rows computed on
+ * a pool; the ranks do not depend on its number of threads.
+ */
+public final class PageRank {
+
+    public static final double DEFAULT_ALPHA = 0.85;
+    public static final double DEFAULT_TOL = 1e-6;
+
+    /**
+     * Notified after every iteration.
+     */
+    public interface IterationListener {
+        void iteration(int iteration, double error);
+    }
+
+    private PageRank() {
+    }
+
+    public static double[] rank(HinView view, double alpha, double tol, int maxIterations, IterationListener listener) {
+        return rank(view, alpha, tol, maxIterations, null, null, listener);
+    }
+
+    /**
+     * Ranks the nodes of a view, multiplying it on the given pool (if any).
+     *
+     * @param initial the ranks to start from, e.g. those of an earlier ranking of a similar view, or {@code null}
+     *                to start from uniform ranks; nodes without a positive initial rank start from the uniform one,
+     *                and the initial ranks are scaled to sum to one
+     */
+    public static double[] rank(HinView view, double alpha, double tol, int maxIterations, ForkJoinPool pool,
+                                double[] initial, IterationListener listener) {
+        int size = view.size();
+        int[] nodes = view.nodes().toArray();
+        int n = nodes.length;
+        double[] outWeights = view.rowSums();
+
+        double[] ranks = new double[size];
+        for (int i : nodes) {
+            ranks[i] = 1.0 / n;
+        }
+        if (initial != null && initial.length == size) {
+            double total = 0.0;
+            for (int i : nodes) {
+                if (initial[i] > 0.0) {
+                    ranks[i] = initial[i];
+                }
+                total += ranks[i];
+            }
+            for (int i : nodes) {
+                ranks[i] /= total;
+            }
+        }
+
+        double[] next = new double[size];
+        double[] shares = new double[size];
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+            double dangling = 0.0;
+            for (int i : nodes) {
+                next[i] = 0.0;
+                if (outWeights[i] == 0.0) {
+                    dangling += ranks[i];
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                shares[i] = (outWeights[i] > 0.0) ? alpha * ranks[i] / outWeights[i] : 0.0;
+            }
+            view.propagate(shares, next, pool);
+
+            double base = (alpha * dangling + (1.0 - alpha)) / n;
+            double error = 0.0;
+            for (int i : nodes) {
+                next[i] += base;
+                error += Math.abs(next[i] - ranks[i]);
+            }
+
+            double[] tmp = ranks;
+            ranks = next;
+            next = tmp;
+
+            if (listener != null) {
+                listener.iteration(iteration, error);
+            }
+            if (error < tol) {
+                break;
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * Ranks the nodes of a view for several damping factors at once, multiplying the view once per iteration
+     * for all of them. Every vector stops at its own convergence, so its ranks are those of a ranking with
+     * its damping factor on its own; the listener is given the largest error of the vectors still running.
+     *
+     * @return the ranks of every damping factor, in the given order
+     */
+    public static double[][] rank(HinView view, double[] alphas, double tol, int maxIterations, ForkJoinPool pool,
+                                  IterationListener listener) {
+        int size = view.size();
+        int[] nodes = view.nodes().toArray();
+        int n = nodes.length;
+        int k = alphas.length;
+        double[] outWeights = view.rowSums();
+
+        // the values of the k vectors for a node are next to each other
+        double[] ranks = new double[size * k];
+        for (int i : nodes) {
+            Arrays.fill(ranks, i * k, (i + 1) * k, 1.0 / n);
+        }
+
+        double[][] results = new double[k][];
+        double[] next = new double[size * k];
+        double[] shares = new double[size * k];
+        double[] dangling = new double[k];
+        double[] errors = new double[k];
+        for (int iteration = 1; iteration <= maxIterations; iteration++) {
+            Arrays.fill(dangling, 0.0);
+            for (int i : nodes) {
+                for (int v = 0; v < k; v++) {
+                    next[i * k + v] = 0.0;
+                    if (outWeights[i] == 0.0) {
+                        dangling[v] += ranks[i * k + v];
+                    }
+                }
+            }
+
+            for (int i = 0; i < size; i++) {
+                for (int v = 0; v < k; v++) {
+                    // converged vectors are left out of the product
+                    shares[i * k + v] = (outWeights[i] > 0.0 && results[v] == null) ? alphas[v] * ranks[i * k + v] / outWeights[i] : 0.0;
+                }
+            }
+            view.propagate(shares, next, k, pool);
+
+            double maxError = 0.0;
+            for (int v = 0; v < k; v++) {
+                if (results[v] != null) {
+                    continue;
+                }
+                double base = (alphas[v] * dangling[v] + (1.0 - alphas[v])) / n;
+                errors[v] = 0.0;
+                for (int i : nodes) {
+                    next[i * k + v] += base;
+                    errors[v] += Math.abs(next[i * k + v] - ranks[i * k + v]);
+                }
+                maxError = Math.max(maxError, errors[v]);
+            }
+
+            double[] tmp = ranks;
+            ranks = next;
+            next = tmp;
+
+            if (listener != null) {
+                listener.iteration(iteration, maxError);
+            }
+            boolean running = false;
+            for (int v = 0; v < k; v++) {
+                if (results[v] == null && (errors[v] < tol || iteration == maxIterations)) {
+                    results[v] = column(ranks, k, v);
+                }
+                running |= results[v] == null;
+            }
+            if (!running) {
+                break;
+            }
+        }
+
+        for (int v = 0; v < k; v++) {
+            if (results[v] == null) {
+                results[v] = column(ranks, k, v);
+            }
+        }
+        return results;
+    }
+
+    private static double[] column(double[] values, int k, int v) {
+        double[] column = new double[values.length / k];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = values[i * k + v];
+        }
+        return column;
+    }
+}
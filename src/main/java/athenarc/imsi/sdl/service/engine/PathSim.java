@@ -0,0 +1,313 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * PathSim similarity over a symmetric metapath, given the matrix {@code M} of its first half:
+ * the commuting matrix of the whole metapath is {@code C = M * M^T} and
+ * {@code PathSim(i, j) = 2 * C[i][j] / (C[i][i] + C[j][j])}.
+ */
+public class PathSim {
+
+    private static final Comparator<SimilarityPair> BY_SCORE = Comparator.comparingDouble(SimilarityPair::getScore);
+    // pairs of equal scores are ordered by their entities, so that parallel joins return the same pairs
+    static final Comparator<SimilarityPair> BEST_FIRST = BY_SCORE.reversed()
+        .thenComparingInt(SimilarityPair::getSource)
+        .thenComparingInt(SimilarityPair::getTarget);
+
+    private static final int JOIN_CHUNK_ROWS = 256;
+    // relative slack on the score bound, so that rounding never prunes a pair scoring exactly the bound
+    private static final double BOUND_SLACK = 1e-9;
+
+    private final SparseMatrix half;
+    private final SparseMatrix halfTransposed;
+    private final double[] diagonal;
+
+    public PathSim(SparseMatrix half) {
+        this(half, half.transpose());
+    }
+
+    public PathSim(SparseMatrix half, SparseMatrix halfTransposed) {
+        this.half = half;
+        this.halfTransposed = halfTransposed;
+        this.diagonal = new double[half.rows()];
+        for (int i = 0; i < half.rows(); i++) {
+            double sum = 0.0;
+            for (int pos = half.rowStart(i); pos < half.rowEnd(i); pos++) {
+                sum += half.valueAt(pos) * half.valueAt(pos);
+            }
+            diagonal[i] = sum;
+        }
+    }
+
+    /**
+     * The k entities most similar to the target entity.
+     */
+    public List<SimilarityPair> search(int target, int k, int minValues) {
+        PriorityQueue<SimilarityPair> top = new PriorityQueue<>(BY_SCORE);
+        if (target < 0 || target >= half.rows() || diagonal[target] == 0.0) {
+            return new ArrayList<>();
+        }
+
+        double[] row = new double[half.rows()];
+        for (int j : commutingRow(target, row, -1)) {
+            if (j != target && half.rowNnz(j) >= minValues) {
+                offer(top, new SimilarityPair(target, j, score(target, j, row[j])), k);
+            }
+            row[j] = 0.0;
+        }
+        return sorted(top);
+    }
+
+    /**
+     * The k most similar pairs of entities, sequentially.
+     */
+    public List<SimilarityPair> join(int k, int minValues) {
+        return join(k, minValues, null);
+    }
+
+    /**
+     * The k most similar pairs of entities, each with its entities in increasing order.
+     * <p>
+     * As {@code C[i][j] <= sqrt(C[i][i] * C[j][j])}, the score of two entities whose diagonal entries have a
+     * ratio {@code x >= 1} is at most {@code 2 * sqrt(x) / (1 + x)}, which falls as the ratio grows. Entities are
+     * visited in increasing order of their diagonal entries, and each one is only paired with the entities after
+     * it whose ratio still allows a score above the k-th best score found so far. Chunks of entities are processed
+     * in parallel on the pool, each thread with its own top k pairs and a single row of the commuting matrix.
+     */
+    public List<SimilarityPair> join(int k, int minValues, ForkJoinPool pool) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+
+        return top(k, new Join(k, minValues)::run, pool);
+    }
+
+    /**
+     * Runs a task on every thread of the pool, or once without a pool, and returns the k best pairs of those
+     * the runs returned.
+     */
+    static List<SimilarityPair> top(int k, Supplier<List<SimilarityPair>> task, ForkJoinPool pool) {
+        List<SimilarityPair> pairs = new ArrayList<>();
+        if (pool == null) {
+            pairs.addAll(task.get());
+        } else {
+            List<Callable<List<SimilarityPair>>> tasks = new ArrayList<>();
+            for (int t = 0; t < pool.getParallelism(); t++) {
+                tasks.add(task::get);
+            }
+            for (Future<List<SimilarityPair>> future : pool.invokeAll(tasks)) {
+                try {
+                    pairs.addAll(future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while joining similar entities", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Joining similar entities failed", e.getCause());
+                }
+            }
+        }
+
+        pairs.sort(BEST_FIRST);
+        return new ArrayList<>(pairs.subList(0, Math.min(k, pairs.size())));
+    }
+
+    /**
+     * Keeps a pair among the k best pairs of a heap whose head is the worst of them.
+     */
+    static void keep(PriorityQueue<SimilarityPair> top, SimilarityPair pair, int k) {
+        if (top.size() < k) {
+            top.add(pair);
+        } else if (BEST_FIRST.compare(pair, top.peek()) < 0) {
+            top.poll();
+            top.add(pair);
+        }
+    }
+
+    SparseMatrix half() {
+        return half;
+    }
+
+    /**
+     * Whether an entity may be part of a similar pair: it has paths to itself and enough values.
+     */
+    boolean isJoinable(int i, int minValues) {
+        return diagonal[i] > 0.0 && half.rowNnz(i) >= minValues;
+    }
+
+    /**
+     * Computes row i of the commuting matrix into {@code row}, for columns greater than {@code minColumn},
+     * and returns the columns of its non-zero entries; callers reset these entries after use.
+     */
+    private int[] commutingRow(int i, double[] row, int minColumn) {
+        int[] columns = new int[16];
+        int count = 0;
+        for (int pos = half.rowStart(i); pos < half.rowEnd(i); pos++) {
+            int k = half.colAt(pos);
+            double a = half.valueAt(pos);
+            for (int tpos = halfTransposed.rowStart(k); tpos < halfTransposed.rowEnd(k); tpos++) {
+                int j = halfTransposed.colAt(tpos);
+                if (j <= minColumn) {
+                    continue;
+                }
+                if (row[j] == 0.0) {
+                    if (count == columns.length) {
+                        columns = Arrays.copyOf(columns, count * 2);
+                    }
+                    columns[count++] = j;
+                }
+                row[j] += a * halfTransposed.valueAt(tpos);
+            }
+        }
+
+        return Arrays.copyOf(columns, count);
+    }
+
+    /**
+     * The state of a top-k join shared by its threads: the entities that may take part, renumbered in increasing
+     * order of their diagonal entries, the transposed half with the same numbering, and the best k-th score any
+     * thread has found so far.
+     */
+    private final class Join {
+        private final int k;
+        // entity of each position, and its diagonal entry
+        private final int[] entities;
+        private final double[] diagonals;
+        // the positions of the entities of every column of the half, in increasing order, and their values
+        private final int[] columnStarts;
+        private final int[] positions;
+        private final double[] values;
+
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        // the bits of a non-negative double order like the double
+        private final AtomicLong threshold = new AtomicLong(Double.doubleToLongBits(0.0));
+
+        Join(int k, int minValues) {
+            this.k = k;
+            entities = IntStream.range(0, half.rows())
+                .filter(i -> isJoinable(i, minValues))
+                .boxed()
+                .sorted(Comparator.<Integer>comparingDouble(i -> diagonal[i]).thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue)
+                .toArray();
+            diagonals = new double[entities.length];
+            columnStarts = new int[half.cols() + 1];
+            for (int p = 0; p < entities.length; p++) {
+                diagonals[p] = diagonal[entities[p]];
+                for (int pos = half.rowStart(entities[p]); pos < half.rowEnd(entities[p]); pos++) {
+                    columnStarts[half.colAt(pos) + 1]++;
+                }
+            }
+            for (int c = 0; c < half.cols(); c++) {
+                columnStarts[c + 1] += columnStarts[c];
+            }
+            positions = new int[columnStarts[half.cols()]];
+            values = new double[positions.length];
+            int[] next = Arrays.copyOf(columnStarts, half.cols());
+            for (int p = 0; p < entities.length; p++) {
+                for (int pos = half.rowStart(entities[p]); pos < half.rowEnd(entities[p]); pos++) {
+                    int at = next[half.colAt(pos)]++;
+                    positions[at] = p;
+                    values[at] = half.valueAt(pos);
+                }
+            }
+        }
+
+        /**
+         * Takes chunks of entities until none are left, returning the top k pairs among them.
+         */
+        List<SimilarityPair> run() {
+            PriorityQueue<SimilarityPair> top = new PriorityQueue<>(k, BEST_FIRST.reversed());
+            double[] row = new double[entities.length];
+            int[] columns = new int[16];
+
+            for (int chunk = nextChunk.getAndAdd(JOIN_CHUNK_ROWS); chunk < entities.length;
+                 chunk = nextChunk.getAndAdd(JOIN_CHUNK_ROWS)) {
+                for (int p = chunk; p < Math.min(chunk + JOIN_CHUNK_ROWS, entities.length); p++) {
+                    double maxDiagonal = maxDiagonal(diagonals[p], Double.longBitsToDouble(threshold.get()));
+                    if (p + 1 == entities.length || diagonals[p + 1] > maxDiagonal) {
+                        continue;
+                    }
+
+                    // the part of row p of the commuting matrix after p, within the bound
+                    int count = 0;
+                    int i = entities[p];
+                    for (int pos = half.rowStart(i); pos < half.rowEnd(i); pos++) {
+                        int c = half.colAt(pos);
+                        double a = half.valueAt(pos);
+                        int from = Arrays.binarySearch(positions, columnStarts[c], columnStarts[c + 1], p) + 1;
+                        for (int at = from; at < columnStarts[c + 1] && diagonals[positions[at]] <= maxDiagonal; at++) {
+                            int q = positions[at];
+                            if (row[q] == 0.0) {
+                                if (count == columns.length) {
+                                    columns = Arrays.copyOf(columns, count * 2);
+                                }
+                                columns[count++] = q;
+                            }
+                            row[q] += a * values[at];
+                        }
+                    }
+
+                    for (int n = 0; n < count; n++) {
+                        int q = columns[n];
+                        int j = entities[q];
+                        keep(top, new SimilarityPair(Math.min(i, j), Math.max(i, j), score(i, j, row[q])), k);
+                        row[q] = 0.0;
+                    }
+                    if (top.size() == k) {
+                        threshold.accumulateAndGet(Double.doubleToLongBits(top.peek().getScore()), Math::max);
+                    }
+                }
+            }
+            return new ArrayList<>(top);
+        }
+    }
+
+    /**
+     * The largest diagonal entry an entity with the given diagonal entry may be paired with, for a score of at
+     * least {@code threshold}: the larger root of {@code 2 * sqrt(x) / (1 + x) = threshold}, times the entry.
+     */
+    private static double maxDiagonal(double diagonal, double threshold) {
+        double bound = threshold * (1.0 - BOUND_SLACK);
+        if (bound <= 0.0) {
+            return Double.POSITIVE_INFINITY;
+        } else if (bound >= 1.0) {
+            return diagonal;
+        }
+        double root = (1.0 + Math.sqrt(1.0 - bound * bound)) / bound;
+        return diagonal * root * root;
+    }
+
+    double score(int i, int j, double commuting) {
+        return 2.0 * commuting / (diagonal[i] + diagonal[j]);
+    }
+
+    private static void offer(PriorityQueue<SimilarityPair> top, SimilarityPair pair, int k) {
+        if (top.size() < k) {
+            top.add(pair);
+        } else if (k > 0 && top.peek().getScore() < pair.getScore()) {
+            top.poll();
+            top.add(pair);
+        }
+    }
+
+    private static List<SimilarityPair> sorted(PriorityQueue<SimilarityPair> top) {
+        List<SimilarityPair> pairs = new ArrayList<>(top);
+        pairs.sort(BY_SCORE.reversed());
+        return pairs;
+    }
+}
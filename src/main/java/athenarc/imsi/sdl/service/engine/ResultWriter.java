@@ -0,0 +1,68 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.Document;
+
+import athenarc.imsi.sdl.service.hin.NodeSet;
+
+/**
+ * Writes the tab-separated result files of the analyses.
+ */
+public final class ResultWriter {
+
+    public static final String RANKING_SCORE = "Ranking Score";
+    public static final String SIMILARITY_SCORE = "Similarity Score";
+
+    private ResultWriter() {
+    }
+
+    private static String name(String[] names, int id) {
+        return (names != null && id < names.length && names[id] != null) ? names[id] : String.valueOf(id);
+    }
+
+    /**
+     * Writes the ranked nodes in descending order of their score.
+     */
+    public static void writeRanking(String file, String selectField, String[] names, double[] ranks, NodeSet nodes) throws IOException {
+        Integer[] order = new Integer[nodes.cardinality()];
+        int[] n = { 0 };
+        nodes.forEach(i -> order[n[0]++] = i);
+        Arrays.sort(order, (a, b) -> Double.compare(ranks[b], ranks[a]));
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            writer.write("id\t" + selectField + "\t" + RANKING_SCORE + "\n");
+            for (Integer id : order) {
+                writer.write(id + "\t" + name(names, id) + "\t" + ranks[id] + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes pairs of similar entities, in the given order.
+     */
+    public static void writeSimilarities(String file, String[] names, List<SimilarityPair> pairs) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            writer.write("Entity 1\tEntity 2\t" + SIMILARITY_SCORE + "\n");
+            for (SimilarityPair pair : pairs) {
+                writer.write(name(names, pair.getSource()) + "\t" + name(names, pair.getTarget()) + "\t" + pair.getScore() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes the parameters of an approximate similarity join and the number of pairs it scored.
+     */
+    public static void writeJoinStats(String file, int bands, int rows, long candidates) throws IOException {
+        Document stats = new Document("lsh_bands", bands)
+            .append("lsh_rows", rows)
+            .append("candidates", candidates);
+        Files.write(Paths.get(file), stats.toJson().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import athenarc.imsi.sdl.service.hin.CsrMatrix;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * Consecutive ranges of the rows of a matrix holding a similar number of entries, processed
+ * in parallel on a pool. The ranges are computed once, as a view is multiplied on every
+ * iteration of an analysis.
+ */
+final class RowBlocks {
+
+    /**
+     * Work on the rows {@code [from, to)}.
+     */
+    interface RangeTask {
+        void run(int from, int to);
+    }
+
+    private final ForkJoinPool pool;
+    private final List<int[]> ranges;
+
+    private RowBlocks(ForkJoinPool pool, List<int[]> ranges) {
+        this.pool = pool;
+        this.ranges = ranges;
+    }
+
+    static RowBlocks of(CsrMatrix matrix, ForkJoinPool pool) {
+        return new RowBlocks(pool, SparseMatrix.rowBlocks(matrix, pool));
+    }
+
+    /**
+     * Whether the ranges were computed for the given pool.
+     */
+    boolean isFor(ForkJoinPool pool) {
+        return this.pool == pool;
+    }
+
+    /**
+     * Runs a task on every range and waits for all of them; a single range is run by the calling thread.
+     */
+    void run(RangeTask task) {
+        if (ranges.size() == 1) {
+            task.run(ranges.get(0)[0], ranges.get(0)[1]);
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>(ranges.size());
+        for (int[] range : ranges) {
+            tasks.add(() -> {
+                task.run(range[0], range[1]);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while multiplying a view", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Multiplying a view failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Adds the products of the rows {@code [from, to)} of a matrix with a block of vectors to the same rows
+     * of {@code out}. Both blocks hold the values of the vectors for a row next to each other, and the
+     * entries of every row are summed in their order in the matrix.
+     */
+    static void multiplyRows(SparseMatrix matrix, double[] vectors, double[] out, int count, int from, int to) {
+        if (count == 1) {
+            for (int i = from; i < to; i++) {
+                double sum = out[i];
+                for (int pos = matrix.rowStart(i); pos < matrix.rowEnd(i); pos++) {
+                    double value = vectors[matrix.colAt(pos)];
+                    if (value != 0.0) {
+                        sum += value * matrix.valueAt(pos);
+                    }
+                }
+                out[i] = sum;
+            }
+            return;
+        }
+
+        for (int i = from; i < to; i++) {
+            int row = i * count;
+            for (int pos = matrix.rowStart(i); pos < matrix.rowEnd(i); pos++) {
+                int col = matrix.colAt(pos) * count;
+                double entry = matrix.valueAt(pos);
+                for (int v = 0; v < count; v++) {
+                    double value = vectors[col + v];
+                    if (value != 0.0) {
+                        out[row + v] += value * entry;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package athenarc.imsi.sdl.service.engine;
+
+/**
+ * A pair of entities of a HIN view together with their similarity score.
+ */
+public class SimilarityPair {
+
+    private final int source;
+    private final int target;
+    private final double score;
+
+    public SimilarityPair(int source, int target, double score) {
+        this.source = source;
+        this.target = target;
+        this.score = score;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,130 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+
+import athenarc.imsi.sdl.service.hin.NodeSet;
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+/**
+ * HIN view of a symmetric metapath that stores only the upper triangle (including the diagonal)
+ * of its commuting matrix; each stored off-diagonal entry stands for both {@code C[i][j]} and {@code C[j][i]}.
+ * <p>
+ * The entries of the product that come from the lower triangle are gathered from the rows of the upper
+ * one, in parallel blocks of rows. Those that come from the upper triangle are spread from its rows to
+ * their columns, which is left to a single thread, as the triangle is not stored by column.
+ */
+class SymmetricView implements HinView {
+
+    private final SparseMatrix upper;
+    private RowBlocks blocks;
+
+    private SymmetricView(SparseMatrix upper) {
+        this.upper = upper;
+    }
+
+    /**
+     * Computes the upper triangle of {@code M * M^T} row by row, keeping the entries of at least {@code minValue}.
+     */
+    static SymmetricView build(SparseMatrix half, SparseMatrix halfTransposed, double minValue) {
+        int n = half.rows();
+        int[] rowPtr = new int[n + 1];
+        int[] colIdx = new int[Math.max(16, (int) Math.min(Integer.MAX_VALUE - 8, half.nnz()))];
+        double[] values = new double[colIdx.length];
+
+        double[] row = new double[n];
+        int[] touched = new int[n];
+        int nnz = 0;
+        for (int i = 0; i < n; i++) {
+            int count = 0;
+            for (int pos = half.rowStart(i); pos < half.rowEnd(i); pos++) {
+                int k = half.colAt(pos);
+                double a = half.valueAt(pos);
+                for (int tpos = halfTransposed.rowStart(k); tpos < halfTransposed.rowEnd(k); tpos++) {
+                    int j = halfTransposed.colAt(tpos);
+                    if (j < i) {
+                        continue;
+                    }
+                    if (row[j] == 0.0) {
+                        touched[count++] = j;
+                    }
+                    row[j] += a * halfTransposed.valueAt(tpos);
+                }
+            }
+
+            for (int t = 0; t < count; t++) {
+                int j = touched[t];
+                if (row[j] >= minValue) {
+                    if (nnz == colIdx.length) {
+                        int capacity = colIdx.length + (colIdx.length >> 1);
+                        colIdx = Arrays.copyOf(colIdx, capacity);
+                        values = Arrays.copyOf(values, capacity);
+                    }
+                    colIdx[nnz] = j;
+                    values[nnz] = row[j];
+                    nnz++;
+                }
+                row[j] = 0.0;
+            }
+            rowPtr[i + 1] = nnz;
+        }
+
+        return new SymmetricView(new SparseMatrix(n, n, rowPtr, Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz)));
+    }
+
+    @Override
+    public int size() {
+        return upper.rows();
+    }
+
+    @Override
+    public long storedEntries() {
+        return upper.nnz();
+    }
+
+    @Override
+    public NodeSet nodes() {
+        BitSet nodes = new BitSet(upper.rows());
+        for (int i = 0; i < upper.rows(); i++) {
+            for (int pos = upper.rowStart(i); pos < upper.rowEnd(i); pos++) {
+                nodes.set(i);
+                nodes.set(upper.colAt(pos));
+            }
+        }
+        return NodeSet.fromBitSet(nodes);
+    }
+
+    @Override
+    public double[] rowSums() {
+        double[] ones = new double[upper.rows()];
+        Arrays.fill(ones, 1.0);
+        double[] sums = new double[upper.rows()];
+        propagate(ones, sums);
+        return sums;
+    }
+
+    @Override
+    public void propagate(double[] weights, double[] out, int vectors, ForkJoinPool pool) {
+        // out[j] receives C[i][j] * w[i] from every row i < j before the entries of its own row, as in a row-wise product
+        for (int i = 0; i < upper.rows(); i++) {
+            for (int pos = upper.rowStart(i); pos < upper.rowEnd(i); pos++) {
+                int j = upper.colAt(pos);
+                if (j != i) {
+                    double value = upper.valueAt(pos);
+                    for (int v = 0; v < vectors; v++) {
+                        double weight = weights[i * vectors + v];
+                        if (weight != 0.0) {
+                            out[j * vectors + v] += weight * value;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (blocks == null || !blocks.isFor(pool)) {
+            blocks = RowBlocks.of(upper, pool);
+        }
+        blocks.run((from, to) -> RowBlocks.multiplyRows(upper, weights, out, vectors, from, to));
+    }
+}
@@ -0,0 +1,49 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.springframework.stereotype.Component;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.util.FileUtil;
+
+/**
+ * Runs a job through the external Spark workflow ({@code analysis.sh}).
+ */
+@Component
+public class WorkflowAnalysisEngine implements AnalysisEngine {
+
+    @Override
+    public boolean supports(Document config) {
+        return true;
+    }
+
+    @Override
+    public int run(String id, String configFile, Document config, Consumer<String> logListener) throws IOException, InterruptedException {
+        ProcessBuilder pb = new ProcessBuilder();
+        pb.command("/bin/bash", Constants.WORKFLOW_DIR + "analysis/analysis.sh", configFile);
+
+        // redirect errors to the error log; the output is copied to the log line by line
+        pb.redirectError(new File(FileUtil.getErrorLog(id)));
+
+        // execute analysis script
+        Process process = pb.start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter logfile = new PrintWriter(new FileWriter(FileUtil.getLogfile(id), true), true)) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                logfile.println(line);
+                logListener.accept(line);
+            }
+        }
+        return process.waitFor();
+    }
+}
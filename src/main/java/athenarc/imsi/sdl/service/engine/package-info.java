@@ -0,0 +1,4 @@
+/**
+ * Analysis engines executing the HIN transformation and the analyses of a job.
+ */
+package athenarc.imsi.sdl.service.engine;
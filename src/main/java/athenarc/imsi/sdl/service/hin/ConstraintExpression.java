@@ -0,0 +1,280 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed form of a node constraint, as sent by the frontend for an entity of a metapath,
+ * e.g. {@code year > 2015 and name = 'KDD' or name = 'ICDE'}.
+ * <p>
+ * Conditions compare a node attribute with a numeric or a quoted string literal using one of
+ * {@code =, !=, <>, >, >=, <, <=}; they are combined with {@code and} / {@code or}
+ * ({@code and} binds tighter) and may be grouped with parentheses.
+ */
+public abstract class ConstraintExpression {
+
+    public enum Operator {
+        EQ, NE, GT, GE, LT, LE
+    }
+
+    /**
+     * Evaluates the expression against one node, given the values of its attributes.
+     */
+    public abstract boolean matches(Attributes attributes);
+
+    /**
+     * Access to the attribute values of a single node.
+     */
+    public interface Attributes {
+        String get(String field);
+    }
+
+    public static final class And extends ConstraintExpression {
+        private final List<ConstraintExpression> operands;
+
+        And(List<ConstraintExpression> operands) {
+            this.operands = operands;
+        }
+
+        public List<ConstraintExpression> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public boolean matches(Attributes attributes) {
+            for (ConstraintExpression operand : operands) {
+                if (!operand.matches(attributes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static final class Or extends ConstraintExpression {
+        private final List<ConstraintExpression> operands;
+
+        Or(List<ConstraintExpression> operands) {
+            this.operands = operands;
+        }
+
+        public List<ConstraintExpression> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public boolean matches(Attributes attributes) {
+            for (ConstraintExpression operand : operands) {
+                if (operand.matches(attributes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    public static final class Comparison extends ConstraintExpression {
+        private final String field;
+        private final Operator operator;
+        private final String value;
+        private final boolean numeric;
+
+        Comparison(String field, Operator operator, String value, boolean numeric) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+            this.numeric = numeric;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isNumeric() {
+            return numeric;
+        }
+
+        public double getNumericValue() {
+            return Double.parseDouble(value);
+        }
+
+        @Override
+        public boolean matches(Attributes attributes) {
+            String actual = attributes.get(field);
+            if (actual == null) {
+                return false;
+            }
+
+            int cmp;
+            if (numeric) {
+                try {
+                    cmp = Double.compare(Double.parseDouble(actual.trim()), getNumericValue());
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            } else {
+                // string values are compared case-sensitively, as by the filters of the Spark workflow
+                cmp = actual.compareTo(value);
+            }
+            return test(operator, cmp);
+        }
+    }
+
+    public static boolean test(Operator operator, int cmp) {
+        switch (operator) {
+            case EQ: return cmp == 0;
+            case NE: return cmp != 0;
+            case GT: return cmp > 0;
+            case GE: return cmp >= 0;
+            case LT: return cmp < 0;
+            default: return cmp <= 0;
+        }
+    }
+
+    /**
+     * Parses a constraint expression; throws {@link IllegalArgumentException} on malformed input.
+     */
+    public static ConstraintExpression parse(String expression) {
+        Parser parser = new Parser(expression);
+        ConstraintExpression result = parser.parseOr();
+        parser.skipWhitespace();
+        if (parser.pos < expression.length()) {
+            throw new IllegalArgumentException("Unexpected input at position " + parser.pos + " of constraint: " + expression);
+        }
+        return result;
+    }
+
+    private static final class Parser {
+        private final String input;
+        private int pos;
+
+        Parser(String input) {
+            this.input = input;
+        }
+
+        ConstraintExpression parseOr() {
+            List<ConstraintExpression> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (acceptKeyword("or")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        ConstraintExpression parseAnd() {
+            List<ConstraintExpression> operands = new ArrayList<>();
+            operands.add(parsePrimary());
+            while (acceptKeyword("and")) {
+                operands.add(parsePrimary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        ConstraintExpression parsePrimary() {
+            skipWhitespace();
+            if (pos < input.length() && input.charAt(pos) == '(') {
+                pos++;
+                ConstraintExpression inner = parseOr();
+                skipWhitespace();
+                expect(')');
+                return inner;
+            }
+
+            String field = parseIdentifier();
+            Operator operator = parseOperator();
+            skipWhitespace();
+
+            if (pos < input.length() && input.charAt(pos) == '\'') {
+                pos++;
+                StringBuilder value = new StringBuilder();
+                while (pos < input.length()) {
+                    char c = input.charAt(pos++);
+                    if (c == '\'') {
+                        // a doubled quote escapes a quote inside the literal
+                        if (pos < input.length() && input.charAt(pos) == '\'') {
+                            value.append('\'');
+                            pos++;
+                            continue;
+                        }
+                        return new Comparison(field, operator, value.toString(), false);
+                    }
+                    value.append(c);
+                }
+                throw new IllegalArgumentException("Unterminated string literal in constraint: " + input);
+            }
+
+            int start = pos;
+            while (pos < input.length() && "+-.0123456789eE".indexOf(input.charAt(pos)) >= 0) {
+                pos++;
+            }
+            String number = input.substring(start, pos);
+            try {
+                Double.parseDouble(number);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a numeric or quoted value at position " + start + " of constraint: " + input);
+            }
+            return new Comparison(field, operator, number, true);
+        }
+
+        String parseIdentifier() {
+            skipWhitespace();
+            int start = pos;
+            while (pos < input.length() && (Character.isLetterOrDigit(input.charAt(pos)) || input.charAt(pos) == '_' || input.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("Expected an attribute name at position " + start + " of constraint: " + input);
+            }
+
+            // attributes may be qualified by the entity, e.g. P.year
+            String identifier = input.substring(start, pos);
+            int dot = identifier.lastIndexOf('.');
+            return dot >= 0 ? identifier.substring(dot + 1) : identifier;
+        }
+
+        Operator parseOperator() {
+            skipWhitespace();
+            String[] symbols = { ">=", "<=", "!=", "<>", "=", ">", "<" };
+            Operator[] operators = { Operator.GE, Operator.LE, Operator.NE, Operator.NE, Operator.EQ, Operator.GT, Operator.LT };
+            for (int i = 0; i < symbols.length; i++) {
+                if (input.startsWith(symbols[i], pos)) {
+                    pos += symbols[i].length();
+                    return operators[i];
+                }
+            }
+            throw new IllegalArgumentException("Expected a comparison operator at position " + pos + " of constraint: " + input);
+        }
+
+        boolean acceptKeyword(String keyword) {
+            skipWhitespace();
+            int end = pos + keyword.length();
+            if (input.regionMatches(true, pos, keyword, 0, keyword.length())
+                && (end == input.length() || !Character.isLetterOrDigit(input.charAt(end)))) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (pos >= input.length() || input.charAt(pos) != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at position " + pos + " of constraint: " + input);
+            }
+            pos++;
+        }
+
+        void skipWhitespace() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package athenarc.imsi.sdl.service.hin;
+
+/**
+ * Row-wise read access to a matrix in compressed sparse row (CSR) format, either held
+ * on the heap ({@link SparseMatrix}) or memory-mapped from disk ({@link CsrRelation}).
+ */
+public interface CsrMatrix {
+
+    int rows();
+
+    int cols();
+
+    long nnz();
+
+    /**
+     * Position of the first entry of a row.
+     */
+    int rowStart(int row);
+
+    /**
+     * Position after the last entry of a row.
+     */
+    int rowEnd(int row);
+
+    int colAt(int pos);
+
+    double valueAt(int pos);
+
+    default int rowNnz(int row) {
+        return rowEnd(row) - rowStart(row);
+    }
+}
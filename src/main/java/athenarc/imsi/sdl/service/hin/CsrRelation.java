@@ -0,0 +1,120 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Relation between two entity types, memory-mapped read-only from a binary CSR file
+ * written by {@link CsrStore}.
+ * <p>
+ * Layout (native byte order): a {@value #HEADER_SIZE}-byte header holding magic, version, rows, cols,
+ * nnz and the size and modification time of the source relation file, followed by
+ * {@code rows + 1} int32 row offsets and {@code nnz} int32 neighbour ids.
+ */
+public class CsrRelation implements CsrMatrix {
+
+    static final int MAGIC = 0x43535231;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    // neighbours are mapped in chunks, as a single mapping cannot exceed 2GB
+    static final int CHUNK_BITS = 28;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final int rows;
+    private final int cols;
+    private final long nnz;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final IntBuffer offsets;
+    private final IntBuffer[] neighbours;
+
+    private CsrRelation(int rows, int cols, long nnz, long sourceLength, long sourceModified, IntBuffer offsets, IntBuffer[] neighbours) {
+        this.rows = rows;
+        this.cols = cols;
+        this.nnz = nnz;
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    public static CsrRelation open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a CSR relation file: " + file);
+            }
+            int rows = header.getInt();
+            int cols = header.getInt();
+            long nnz = header.getLong();
+            long sourceLength = header.getLong();
+            long sourceModified = header.getLong();
+
+            long offsetsBytes = (rows + 1L) * Integer.BYTES;
+            IntBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, offsetsBytes)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+
+            int chunks = (int) ((nnz + CHUNK_MASK) >>> CHUNK_BITS);
+            IntBuffer[] neighbours = new IntBuffer[Math.max(chunks, 1)];
+            long position = HEADER_SIZE + offsetsBytes;
+            for (int c = 0; c < neighbours.length; c++) {
+                long count = Math.min(1L << CHUNK_BITS, nnz - ((long) c << CHUNK_BITS));
+                neighbours[c] = channel.map(FileChannel.MapMode.READ_ONLY, position, count * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+                position += count * Integer.BYTES;
+            }
+
+            // mappings remain valid after the channel is closed
+            return new CsrRelation(rows, cols, nnz, sourceLength, sourceModified, offsets, neighbours);
+        }
+    }
+
+    /**
+     * Whether this file was built from the current version of the given relation file.
+     */
+    public boolean isBuiltFrom(File source) {
+        return source.length() == sourceLength && source.lastModified() == sourceModified;
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public long nnz() {
+        return nnz;
+    }
+
+    @Override
+    public int rowStart(int row) {
+        return offsets.get(row);
+    }
+
+    @Override
+    public int rowEnd(int row) {
+        return offsets.get(row + 1);
+    }
+
+    @Override
+    public int colAt(int pos) {
+        return neighbours[pos >>> CHUNK_BITS].get(pos & CHUNK_MASK);
+    }
+
+    @Override
+    public double valueAt(int pos) {
+        return 1.0;
+    }
+}
@@ -0,0 +1,258 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary CSR representation of the relations of a dataset, kept under {@code DATA_DIR/<dataset>/csr/}.
+ * <p>
+ * Every tab-separated relation file {@code relations/<ST>.csv} is converted once into
+ * {@code csr/<ST>.csr} and its reverse {@code csr/<TS>.csr}, which are then memory-mapped
+ * read-only by the analyses instead of re-parsing the text files.
+ */
+public final class CsrStore {
+
+    public static final String DIR = "csr";
+    public static final String EXTENSION = ".csr";
+
+    private static final Logger log = LoggerFactory.getLogger(CsrStore.class);
+
+    private static final Map<String, CsrRelation> OPEN_RELATIONS = new ConcurrentHashMap<>();
+
+    private CsrStore() {
+    }
+
+    public static String getDir(String dataset) {
+        return getDir(new HinDataset(dataset));
+    }
+
+    private static String getDir(HinDataset dataset) {
+        return dataset.getDir() + DIR + "/";
+    }
+
+    /**
+     * Converts all relation files of a dataset.
+     */
+    public static void build(HinDataset dataset) throws IOException {
+        File[] files = new File(dataset.getDir() + "relations/").listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".csv") && name.length() == "ST.csv".length()) {
+                String source = name.substring(0, 1);
+                String target = name.substring(1, 2);
+                build(dataset, source, target);
+            }
+        }
+    }
+
+    /**
+     * Drops the relations of a dataset that are currently mapped, e.g. after it has been re-uploaded.
+     */
+    public static void invalidate(String dataset) {
+        invalidate(new HinDataset(dataset));
+    }
+
+    static void invalidate(HinDataset dataset) {
+        OPEN_RELATIONS.keySet().removeIf(path -> path.startsWith(getDir(dataset)));
+    }
+
+    /**
+     * Returns the memory-mapped relation between two entity types, converting the relation file if needed.
+     */
+    public static CsrRelation relation(HinDataset dataset, String source, String target) throws IOException {
+        String forward = dataset.getRelationsFile(source, target);
+        File tsv = new File(forward).exists() ? new File(forward) : new File(dataset.getRelationsFile(target, source));
+        File csr = new File(getDir(dataset) + source + target + EXTENSION);
+
+        CsrRelation relation = OPEN_RELATIONS.get(csr.getPath());
+        if (relation != null && relation.isBuiltFrom(tsv)) {
+            return relation;
+        }
+
+        synchronized (CsrStore.class) {
+            if (csr.exists()) {
+                relation = CsrRelation.open(csr);
+            }
+            if (relation == null || !relation.isBuiltFrom(tsv)) {
+                if (tsv.getPath().equals(forward)) {
+                    build(dataset, source, target);
+                } else {
+                    build(dataset, target, source);
+                }
+                relation = CsrRelation.open(csr);
+            }
+            OPEN_RELATIONS.put(csr.getPath(), relation);
+        }
+        return relation;
+    }
+
+    /**
+     * Converts {@code relations/<ST>.csv} into {@code <ST>.csr} and, unless a {@code <TS>.csv}
+     * file exists as well, into the reverse {@code <TS>.csr}.
+     */
+    private static synchronized void build(HinDataset dataset, String source, String target) throws IOException {
+        File tsv = new File(dataset.getRelationsFile(source, target));
+        boolean withReverse = !source.equals(target) && !new File(dataset.getRelationsFile(target, source)).exists();
+        int rows = dataset.nodeCount(source);
+        int cols = dataset.nodeCount(target);
+
+        // first pass: node degrees in both directions
+        int[] outOffsets = new int[rows + 1];
+        int[] inOffsets = new int[cols + 1];
+        long[] edges = { 0, 0 };
+        scan(tsv, rows, cols, (src, dst) -> {
+            outOffsets[src + 1]++;
+            inOffsets[dst + 1]++;
+            edges[0]++;
+        }, edges);
+
+        if (edges[0] >= Integer.MAX_VALUE) {
+            throw new IOException("Relation " + tsv + " has too many edges for a CSR file");
+        }
+        if (edges[1] > 0) {
+            log.warn("Skipped " + edges[1] + " edges with unknown node ids in " + tsv);
+        }
+        for (int i = 0; i < rows; i++) {
+            outOffsets[i + 1] += outOffsets[i];
+        }
+        for (int j = 0; j < cols; j++) {
+            inOffsets[j + 1] += inOffsets[j];
+        }
+
+        File dir = new File(getDir(dataset));
+        dir.mkdirs();
+        File forward = new File(dir, source + target + EXTENSION);
+        File reverse = new File(dir, target + source + EXTENSION);
+
+        // second pass: neighbour ids, written straight into the mapped files
+        try (CsrFileWriter out = new CsrFileWriter(forward, rows, cols, outOffsets, tsv);
+             CsrFileWriter in = withReverse ? new CsrFileWriter(reverse, cols, rows, inOffsets, tsv) : null) {
+            scan(tsv, rows, cols, (src, dst) -> {
+                out.add(src, dst);
+                if (in != null) {
+                    in.add(dst, src);
+                }
+            }, new long[2]);
+        }
+        log.debug("Built CSR relation " + forward + " with " + edges[0] + " edges");
+    }
+
+    private interface EdgeConsumer {
+        void accept(int src, int dst) throws IOException;
+    }
+
+    /**
+     * Parses the id pairs of a relation file, skipping its header and counting edges
+     * with out-of-range ids in {@code edges[1]}.
+     */
+    private static void scan(File tsv, int rows, int cols, EdgeConsumer consumer, long[] edges) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(tsv.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int length = line.length();
+                int pos = 0;
+                int src = 0;
+                int dst = 0;
+                boolean digits = false;
+
+                while (pos < length && Character.isDigit(line.charAt(pos))) {
+                    src = src * 10 + (line.charAt(pos++) - '0');
+                    digits = true;
+                }
+                if (!digits || pos >= length || line.charAt(pos) != '\t') {
+                    // header line
+                    continue;
+                }
+                pos++;
+                digits = false;
+                while (pos < length && Character.isDigit(line.charAt(pos))) {
+                    dst = dst * 10 + (line.charAt(pos++) - '0');
+                    digits = true;
+                }
+                if (!digits) {
+                    continue;
+                }
+
+                if (src >= rows || dst >= cols) {
+                    edges[1]++;
+                    continue;
+                }
+                consumer.accept(src, dst);
+            }
+        }
+    }
+
+    /**
+     * Writes a CSR file through read-write mappings, filling the neighbours of each row in arrival order.
+     */
+    private static final class CsrFileWriter implements AutoCloseable {
+        private final File file;
+        private final File tmp;
+        private final FileChannel channel;
+        private final int[] next;
+        private final IntBuffer[] neighbours;
+
+        CsrFileWriter(File file, int rows, int cols, int[] offsets, File source) throws IOException {
+            this.file = file;
+            this.tmp = new File(file.getPath() + ".tmp");
+            this.channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            long nnz = offsets[rows];
+            long offsetsBytes = (rows + 1L) * Integer.BYTES;
+
+            java.nio.ByteBuffer head = channel.map(FileChannel.MapMode.READ_WRITE, 0, CsrRelation.HEADER_SIZE + offsetsBytes)
+                .order(ByteOrder.nativeOrder());
+            head.putInt(CsrRelation.MAGIC);
+            head.putInt(CsrRelation.VERSION);
+            head.putInt(rows);
+            head.putInt(cols);
+            head.putLong(nnz);
+            head.putLong(source.length());
+            head.putLong(source.lastModified());
+            for (int i = 0; i <= rows; i++) {
+                head.putInt(offsets[i]);
+            }
+
+            int chunks = (int) ((nnz + (1L << CsrRelation.CHUNK_BITS) - 1) >>> CsrRelation.CHUNK_BITS);
+            this.neighbours = new IntBuffer[Math.max(chunks, 1)];
+            long position = CsrRelation.HEADER_SIZE + offsetsBytes;
+            for (int c = 0; c < neighbours.length; c++) {
+                long count = Math.min(1L << CsrRelation.CHUNK_BITS, nnz - ((long) c << CsrRelation.CHUNK_BITS));
+                neighbours[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, count * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+                position += count * Integer.BYTES;
+            }
+            this.next = java.util.Arrays.copyOf(offsets, rows);
+        }
+
+        void add(int row, int neighbour) {
+            int pos = next[row]++;
+            neighbours[pos >>> CsrRelation.CHUNK_BITS].put(pos & ((1 << CsrRelation.CHUNK_BITS) - 1), neighbour);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.force(true);
+            channel.close();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
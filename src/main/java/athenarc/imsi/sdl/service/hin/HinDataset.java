@@ -0,0 +1,142 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.util.TsvCursor;
+
+/**
+ * Read access to the node and relation files of a dataset under {@link Constants#DATA_DIR}.
+ * <p>
+ * Node files {@code nodes/<E>.csv} are tab-separated with a header line and an incremental
+ * integer id in the first column; relation files {@code relations/<ST>.csv} hold
+ * {@code src} / {@code dst} id pairs.
+ */
+public class HinDataset {
+
+    private final String name;
+    private final String dir;
+    private final Map<String, Integer> nodeCounts = new HashMap<>();
+
+    public HinDataset(String name) {
+        this(name, Constants.DATA_DIR + name + "/");
+    }
+
+    /**
+     * A dataset stored under the given directory instead of {@link Constants#DATA_DIR}.
+     */
+    public HinDataset(String name, String dir) {
+        this.name = name;
+        this.dir = dir;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public String getNodesFile(String entity) {
+        return dir + "nodes/" + entity + ".csv";
+    }
+
+    public String getRelationsFile(String source, String target) {
+        return dir + "relations/" + source + target + ".csv";
+    }
+
+    /**
+     * Total size in bytes of the relation files of the dataset.
+     */
+    public long relationsSize() {
+        File[] files = new File(dir + "relations/").listFiles();
+        long size = 0;
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    public boolean hasRelation(String source, String target) {
+        return new File(getRelationsFile(source, target)).exists()
+            || new File(getRelationsFile(target, source)).exists();
+    }
+
+    public String[] getHeaders(String entity) throws IOException {
+        try (TsvCursor cursor = TsvCursor.open(new File(getNodesFile(entity)))) {
+            return cursor.next() ? cursor.getStrings() : new String[0];
+        }
+    }
+
+    /**
+     * Returns the index of the column whose name starts with the given field, or -1.
+     */
+    public static int findColumn(String[] headers, String field) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].startsWith(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Number of nodes of an entity type, i.e. the largest node id plus one.
+     */
+    public synchronized int nodeCount(String entity) throws IOException {
+        Integer count = nodeCounts.get(entity);
+        if (count == null) {
+            int maxId = -1;
+            try (TsvCursor cursor = TsvCursor.open(new File(getNodesFile(entity)))) {
+                cursor.next();
+                while (cursor.next()) {
+                    if (cursor.field(0).length() > 0) {
+                        maxId = Math.max(maxId, cursor.getInt(0));
+                    }
+                }
+            }
+            count = maxId + 1;
+            nodeCounts.put(entity, count);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the values of a node attribute, indexed by node id.
+     */
+    public String[] column(String entity, String field) throws IOException {
+        String[] values = new String[nodeCount(entity)];
+        try (TsvCursor cursor = TsvCursor.open(new File(getNodesFile(entity)))) {
+            String[] headers = cursor.next() ? cursor.getStrings() : new String[0];
+            int column = findColumn(headers, field);
+            if (column < 0) {
+                throw new IllegalArgumentException("Unknown field " + field + " of entity " + entity);
+            }
+
+            while (cursor.next()) {
+                if (column < cursor.getFieldCount() && cursor.field(0).length() > 0) {
+                    values[cursor.getInt(0)] = cursor.getString(column);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the adjacency matrix between two entity types, memory-mapped from the
+     * CSR files of the dataset (which are built from the relation files on first use).
+     */
+    public CsrMatrix relation(String source, String target) throws IOException {
+        if (!hasRelation(source, target)) {
+            throw new FileNotFoundException("No relation between " + source + " and " + target + " in dataset " + name);
+        }
+        return CsrStore.relation(this, source, target);
+    }
+}
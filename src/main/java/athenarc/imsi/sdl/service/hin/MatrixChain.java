@@ -0,0 +1,122 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.util.List;
+
+/**
+ * Chooses the multiplication order of a chain of sparse matrices, like the classic matrix-chain
+ * dynamic program but with a cost model based on the estimated number of non-zeros.
+ * <p>
+ * The product of an {@code r x k} matrix with {@code a} non-zeros and a {@code k x c} matrix with
+ * {@code b} non-zeros is assumed to take {@code a * b / k} multiply-adds and, with entries spread
+ * uniformly, to hold {@code r * c * (1 - exp(-flops / (r * c)))} non-zeros. The cost of an order
+ * is the sum of multiply-adds and non-zeros of all intermediate products.
+ */
+public class MatrixChain {
+
+    /**
+     * Shape and (estimated) number of non-zeros of a matrix.
+     */
+    public static final class Estimate {
+        private final int rows;
+        private final int cols;
+        private final double nnz;
+
+        public Estimate(int rows, int cols, double nnz) {
+            this.rows = rows;
+            this.cols = cols;
+            this.nnz = nnz;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public double getNnz() {
+            return nnz;
+        }
+    }
+
+    private final int size;
+    private final double[][] cost;
+    private final int[][] split;
+
+    public MatrixChain(List<Estimate> operands) {
+        this.size = operands.size();
+        this.cost = new double[size][size];
+        this.split = new int[size][size];
+
+        // the estimated result of each subchain does not depend on its order
+        Estimate[][] results = new Estimate[size][size];
+        for (int i = 0; i < size; i++) {
+            results[i][i] = operands.get(i);
+        }
+        for (int length = 2; length <= size; length++) {
+            for (int from = 0; from + length - 1 < size; from++) {
+                int to = from + length - 1;
+                results[from][to] = product(results[from][to - 1], operands.get(to));
+
+                cost[from][to] = Double.MAX_VALUE;
+                for (int k = from; k < to; k++) {
+                    double c = cost[from][k] + cost[k + 1][to] + flops(results[from][k], results[k + 1][to]) + results[from][to].nnz;
+                    if (c < cost[from][to]) {
+                        cost[from][to] = c;
+                        split[from][to] = k;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Estimated number of multiply-adds of the product of two matrices.
+     */
+    public static double flops(Estimate left, Estimate right) {
+        return left.cols == 0 ? 0.0 : left.nnz * right.nnz / left.cols;
+    }
+
+    /**
+     * Estimated shape and non-zeros of the product of two matrices.
+     */
+    public static Estimate product(Estimate left, Estimate right) {
+        double cells = (double) left.rows * right.cols;
+        double nnz = cells == 0 ? 0.0 : cells * -Math.expm1(-flops(left, right) / cells);
+        return new Estimate(left.rows, right.cols, nnz);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The position of the last operand of the left factor in the best order of the operands {@code [from, to]}.
+     */
+    public int split(int from, int to) {
+        return split[from][to];
+    }
+
+    /**
+     * Estimated cost of the best order of the whole chain.
+     */
+    public double cost() {
+        return size == 0 ? 0.0 : cost[0][size - 1];
+    }
+
+    /**
+     * Renders the best order using the given operand names, e.g. {@code ((AP PV) (VP PA))}.
+     */
+    public String toString(List<String> names) {
+        return size == 0 ? "" : toString(names, 0, size - 1);
+    }
+
+    private String toString(List<String> names, int from, int to) {
+        if (from == to) {
+            return names.get(from);
+        }
+        int k = split[from][to];
+        return "(" + toString(names, from, k) + " " + toString(names, k + 1, to) + ")";
+    }
+}
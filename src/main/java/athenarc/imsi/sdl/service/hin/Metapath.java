@@ -0,0 +1,40 @@
+package athenarc.imsi.sdl.service.hin;
+
+/**
+ * Helpers for metapaths given in their abbreviated form, i.e. one letter per entity type (e.g. {@code APVPA}).
+ */
+public final class Metapath {
+
+    private Metapath() {
+    }
+
+    public static String entity(String metapath, int position) {
+        return metapath.substring(position, position + 1);
+    }
+
+    public static int length(String metapath) {
+        return metapath.length();
+    }
+
+    /**
+     * Whether the metapath reads the same in both directions, e.g. {@code APVPA}.
+     */
+    public static boolean isSymmetric(String metapath) {
+        return new StringBuilder(metapath).reverse().toString().equals(metapath);
+    }
+
+    /**
+     * Whether the commuting matrix of the metapath equals {@code M * M^T}, where {@code M} is the commuting
+     * matrix of its {@link #joinpath(String) first half}, i.e. it is symmetric around a middle entity.
+     */
+    public static boolean isFactorable(String metapath) {
+        return metapath.length() >= 3 && metapath.length() % 2 == 1 && isSymmetric(metapath);
+    }
+
+    /**
+     * The first half of a metapath, including its middle entity, used by the similarity analyses.
+     */
+    public static String joinpath(String metapath) {
+        return metapath.substring(0, metapath.length() / 2 + 1);
+    }
+}
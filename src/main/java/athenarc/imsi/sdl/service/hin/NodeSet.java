@@ -0,0 +1,481 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Compressed set of node ids, such as the nodes of a HIN view that are ranked and written out.
+ * <p>
+ * Ids are partitioned by their upper 16 bits, in the manner of roaring bitmaps: each partition
+ * holds its lower 16 bits either as a sorted array (up to {@value #ARRAY_MAX} ids) or as a
+ * 65536-bit bitmap, so both sparse and dense sets take little memory. Binary operations return
+ * new sets and leave their operands unchanged.
+ */
+public final class NodeSet {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1 << 10;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public NodeSet() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private NodeSet(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    public static NodeSet of(int... ids) {
+        NodeSet set = new NodeSet();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    public static NodeSet fromBitSet(BitSet bits) {
+        NodeSet set = new NodeSet();
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * Adds a (non-negative) node id; adding ids in ascending order is the fastest.
+     */
+    public void add(int id) {
+        char high = (char) (id >>> 16);
+        int index = (size > 0 && keys[size - 1] == high) ? size - 1 : find(high);
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, high, new ArrayContainer());
+        }
+        containers[index] = containers[index].add((char) id);
+    }
+
+    public boolean contains(int id) {
+        int index = find((char) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public NodeSet and(NodeSet other) {
+        NodeSet result = new NodeSet();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container left = containers[i];
+                Container right = other.containers[j];
+                Container container;
+                if (left instanceof ArrayContainer) {
+                    container = ((ArrayContainer) left).filter(low -> right.contains((char) low));
+                } else if (right instanceof ArrayContainer) {
+                    container = ((ArrayContainer) right).filter(low -> left.contains((char) low));
+                } else {
+                    long[] words = left.toWords();
+                    long[] otherWords = right.toWords();
+                    for (int w = 0; w < WORDS; w++) {
+                        words[w] &= otherWords[w];
+                    }
+                    container = Container.fromWords(words);
+                }
+                result.append(keys[i], container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public NodeSet or(NodeSet other) {
+        NodeSet result = new NodeSet();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                long[] words = containers[i].toWords();
+                long[] otherWords = other.containers[j].toWords();
+                for (int w = 0; w < WORDS; w++) {
+                    words[w] |= otherWords[w];
+                }
+                result.append(keys[i], Container.fromWords(words));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public NodeSet andNot(NodeSet other) {
+        NodeSet result = new NodeSet();
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j == other.size || other.keys[j] != keys[i]) {
+                result.append(keys[i], containers[i].copy());
+            } else if (containers[i] instanceof ArrayContainer) {
+                Container right = other.containers[j];
+                result.append(keys[i], ((ArrayContainer) containers[i]).filter(low -> !right.contains((char) low)));
+            } else {
+                long[] words = containers[i].toWords();
+                long[] otherWords = other.containers[j].toWords();
+                for (int w = 0; w < WORDS; w++) {
+                    words[w] &= ~otherWords[w];
+                }
+                result.append(keys[i], Container.fromWords(words));
+            }
+        }
+        return result;
+    }
+
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * The ids of the set in ascending order.
+     */
+    public int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int[] count = { 0 };
+        forEach(id -> ids[count[0]++] = id);
+        return ids;
+    }
+
+    public BitSet toBitSet() {
+        BitSet bits = new BitSet();
+        forEach(bits::set);
+        return bits;
+    }
+
+    /**
+     * Approximate memory held by the set, in bytes.
+     */
+    public long sizeInBytes() {
+        long bytes = 16L + keys.length * 2L + containers.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public void serialize(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeChar(keys[i]);
+            containers[i].serialize(out);
+        }
+    }
+
+    public static NodeSet deserialize(DataInput in) throws IOException {
+        int size = in.readInt();
+        char[] keys = new char[Math.max(size, 4)];
+        Container[] containers = new Container[keys.length];
+        for (int i = 0; i < size; i++) {
+            keys[i] = in.readChar();
+            containers[i] = Container.deserialize(in);
+        }
+        return new NodeSet(keys, containers, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NodeSet && Arrays.equals(toArray(), ((NodeSet) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public String toString() {
+        return "NodeSet{cardinality=" + cardinality() + "}";
+    }
+
+    private int find(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private void insert(int index, char high, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = container;
+        size++;
+    }
+
+    // appends a partition with a key greater than all others, skipping empty ones
+    private void append(char high, Container container) {
+        if (container != null) {
+            insert(size, high, container);
+        }
+    }
+
+    /**
+     * The lower 16 bits of the ids of one partition.
+     */
+    private abstract static class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        /**
+         * Adds a value, returning the container to use from now on.
+         */
+        abstract Container add(char low);
+
+        /**
+         * The values as a fresh 65536-bit bitmap.
+         */
+        abstract long[] toWords();
+
+        abstract void forEach(int base, IntConsumer consumer);
+
+        abstract Container copy();
+
+        abstract long sizeInBytes();
+
+        abstract void serialize(DataOutput out) throws IOException;
+
+        /**
+         * The most compact container holding the bits of a bitmap, or null if it is empty.
+         */
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality == 0) {
+                return null;
+            } else if (cardinality > ARRAY_MAX) {
+                return new BitmapContainer(words, cardinality);
+            }
+
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[count++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        static Container deserialize(DataInput in) throws IOException {
+            if (in.readBoolean()) {
+                long[] words = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    words[w] = in.readLong();
+                }
+                return fromWords(words);
+            }
+
+            char[] values = new char[in.readChar() + 1];
+            for (int v = 0; v < values.length; v++) {
+                values[v] = in.readChar();
+            }
+            return new ArrayContainer(values, values.length);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            int index = (cardinality > 0 && values[cardinality - 1] < low) ? -cardinality - 1 : Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return new BitmapContainer(toWords(), cardinality).add(low);
+            }
+
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return this;
+        }
+
+        /**
+         * The values accepted by the predicate, or null if there are none.
+         */
+        Container filter(IntPredicate predicate) {
+            char[] kept = new char[cardinality];
+            int count = 0;
+            for (int v = 0; v < cardinality; v++) {
+                if (predicate.test(values[v])) {
+                    kept[count++] = values[v];
+                }
+            }
+            return count == 0 ? null : new ArrayContainer(kept, count);
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[WORDS];
+            for (int v = 0; v < cardinality; v++) {
+                words[values[v] >>> 6] |= 1L << values[v];
+            }
+            return words;
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int v = 0; v < cardinality; v++) {
+                consumer.accept(base | values[v]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24L + values.length * 2L;
+        }
+
+        @Override
+        void serialize(DataOutput out) throws IOException {
+            out.writeBoolean(false);
+            out.writeChar(cardinality - 1);
+            for (int v = 0; v < cardinality; v++) {
+                out.writeChar(values[v]);
+            }
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            if (!contains(low)) {
+                words[low >>> 6] |= 1L << low;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+
+        @Override
+        void forEach(int base, IntConsumer consumer) {
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    consumer.accept(base | ((w << 6) + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24L + WORDS * 8L;
+        }
+
+        @Override
+        void serialize(DataOutput out) throws IOException {
+            out.writeBoolean(true);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        }
+    }
+}
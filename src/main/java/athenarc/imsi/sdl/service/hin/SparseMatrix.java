@@ -0,0 +1,502 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Sparse matrix in compressed sparse row (CSR) format.
+ * <p>
+ * Row {@code i} holds the entries {@code [rowPtr[i], rowPtr[i + 1])} of the
+ * {@code colIdx} and {@code values} arrays. Columns inside a row are not necessarily sorted.
+ */
+public class SparseMatrix implements CsrMatrix {
+
+    // rows are split into a few blocks per thread, as the work per row is uneven
+    private static final int BLOCKS_PER_THREAD = 4;
+    private static final long MIN_BLOCK_NNZ = 4096;
+
+    private static final int MAGIC = 0x53504d31;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+
+    private final int rows;
+    private final int cols;
+    private final int[] rowPtr;
+    private final int[] colIdx;
+    private final double[] values;
+
+    public SparseMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /**
+     * Builds a 0/1 adjacency matrix from an edge list; duplicate edges are summed.
+     */
+    public static SparseMatrix fromEdges(int rows, int cols, int[] src, int[] dst, int edges) {
+        int[] rowPtr = new int[rows + 1];
+        for (int e = 0; e < edges; e++) {
+            rowPtr[src[e] + 1]++;
+        }
+        for (int i = 0; i < rows; i++) {
+            rowPtr[i + 1] += rowPtr[i];
+        }
+
+        int[] colIdx = new int[edges];
+        double[] values = new double[edges];
+        int[] next = Arrays.copyOf(rowPtr, rows);
+        for (int e = 0; e < edges; e++) {
+            int pos = next[src[e]]++;
+            colIdx[pos] = dst[e];
+            values[pos] = 1.0;
+        }
+
+        return new SparseMatrix(rows, cols, rowPtr, colIdx, values).sumDuplicates();
+    }
+
+    @Override
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public int cols() {
+        return cols;
+    }
+
+    @Override
+    public long nnz() {
+        return rowPtr[rows];
+    }
+
+    @Override
+    public int rowStart(int row) {
+        return rowPtr[row];
+    }
+
+    @Override
+    public int rowEnd(int row) {
+        return rowPtr[row + 1];
+    }
+
+    @Override
+    public int rowNnz(int row) {
+        return rowPtr[row + 1] - rowPtr[row];
+    }
+
+    @Override
+    public int colAt(int pos) {
+        return colIdx[pos];
+    }
+
+    @Override
+    public double valueAt(int pos) {
+        return values[pos];
+    }
+
+    /**
+     * Returns the entry at the given position, scanning the row.
+     */
+    public double get(int row, int col) {
+        for (int pos = rowPtr[row]; pos < rowPtr[row + 1]; pos++) {
+            if (colIdx[pos] == col) {
+                return values[pos];
+            }
+        }
+        return 0.0;
+    }
+
+    public double[] rowSums() {
+        double[] sums = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            double sum = 0.0;
+            for (int pos = rowPtr[i]; pos < rowPtr[i + 1]; pos++) {
+                sum += values[pos];
+            }
+            sums[i] = sum;
+        }
+        return sums;
+    }
+
+    /**
+     * Sparse matrix product {@code this * other}.
+     */
+    public SparseMatrix multiply(CsrMatrix other) {
+        return multiply(this, other, null);
+    }
+
+    /**
+     * Sparse matrix product {@code left * right} using Gustavson's row-wise algorithm,
+     * keeping only the columns set in {@code colMask} (if given).
+     */
+    public static SparseMatrix multiply(CsrMatrix left, CsrMatrix right, BitSet colMask) {
+        return multiply(left, null, null, right, colMask, null);
+    }
+
+    /**
+     * Sparse matrix product {@code left * right} using Gustavson's row-wise algorithm.
+     * <p>
+     * Only the rows of {@code left} set in {@code rowMask}, the entries of {@code left} whose column is set in
+     * {@code innerMask} and the columns of the result set in {@code colMask} are considered (each if given),
+     * so that masked relations can be multiplied without copying them first. With a pool, the rows are split
+     * into blocks of similar work that are multiplied in parallel.
+     */
+    public static SparseMatrix multiply(CsrMatrix left, BitSet rowMask, BitSet innerMask, CsrMatrix right, BitSet colMask,
+                                        ForkJoinPool pool) {
+        if (left.cols() != right.rows()) {
+            throw new IllegalArgumentException("Dimension mismatch: " + left.rows() + "x" + left.cols() + " * " + right.rows() + "x" + right.cols());
+        }
+
+        int rows = left.rows();
+        List<int[]> ranges = rowBlocks(left, pool);
+
+        List<ProductBlock> blocks;
+        if (ranges.size() == 1) {
+            blocks = Collections.singletonList(multiplyRows(left, rowMask, innerMask, right, colMask, 0, rows));
+        } else {
+            List<Callable<ProductBlock>> tasks = new ArrayList<>();
+            for (int[] range : ranges) {
+                tasks.add(() -> multiplyRows(left, rowMask, innerMask, right, colMask, range[0], range[1]));
+            }
+            blocks = new ArrayList<>();
+            for (Future<ProductBlock> future : pool.invokeAll(tasks)) {
+                try {
+                    blocks.add(future.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while multiplying matrices", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Matrix multiplication failed", e.getCause());
+                }
+            }
+        }
+
+        // stitch the blocks together
+        long total = 0;
+        for (ProductBlock block : blocks) {
+            total += block.nnz;
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Matrix product has too many entries: " + total);
+        }
+
+        int[] resultPtr = new int[rows + 1];
+        int[] resultCols = new int[(int) total];
+        double[] resultValues = new double[(int) total];
+        int offset = 0;
+        for (ProductBlock block : blocks) {
+            for (int i = block.from; i < block.to; i++) {
+                resultPtr[i + 1] = offset + block.rowEnds[i - block.from];
+            }
+            System.arraycopy(block.cols, 0, resultCols, offset, block.nnz);
+            System.arraycopy(block.values, 0, resultValues, offset, block.nnz);
+            offset += block.nnz;
+        }
+
+        return new SparseMatrix(rows, right.cols(), resultPtr, resultCols, resultValues);
+    }
+
+    /**
+     * Splits the rows of a matrix into a few consecutive ranges per thread of a pool, holding a similar number
+     * of entries; without a pool, all the rows are a single range.
+     */
+    public static List<int[]> rowBlocks(CsrMatrix matrix, ForkJoinPool pool) {
+        if (pool == null) {
+            return Collections.singletonList(new int[] { 0, matrix.rows() });
+        }
+        return rowBlocks(matrix, BLOCKS_PER_THREAD * pool.getParallelism());
+    }
+
+    /**
+     * Splits the rows of a matrix into at most the given number of consecutive ranges holding a similar number of entries.
+     */
+    private static List<int[]> rowBlocks(CsrMatrix matrix, int count) {
+        List<int[]> ranges = new ArrayList<>();
+        long target = Math.max(MIN_BLOCK_NNZ, matrix.nnz() / Math.max(count, 1));
+        int from = 0;
+        long work = 0;
+        for (int i = 0; i < matrix.rows(); i++) {
+            work += matrix.rowNnz(i);
+            if (work >= target) {
+                ranges.add(new int[] { from, i + 1 });
+                from = i + 1;
+                work = 0;
+            }
+        }
+        if (from < matrix.rows() || ranges.isEmpty()) {
+            ranges.add(new int[] { from, matrix.rows() });
+        }
+        return ranges;
+    }
+
+    private static ProductBlock multiplyRows(CsrMatrix left, BitSet rowMask, BitSet innerMask, CsrMatrix right, BitSet colMask,
+                                             int from, int to) {
+        long estimate = 0;
+        for (int i = from; i < to; i++) {
+            estimate += left.rowNnz(i);
+        }
+        int[] blockCols = new int[(int) Math.max(16, Math.min(Integer.MAX_VALUE - 8, estimate))];
+        double[] blockValues = new double[blockCols.length];
+        int[] rowEnds = new int[to - from];
+
+        int[] marker = new int[right.cols()];
+        Arrays.fill(marker, -1);
+
+        int nnz = 0;
+        for (int i = from; i < to; i++) {
+            int rowStart = nnz;
+            if (rowMask == null || rowMask.get(i)) {
+                for (int pos = left.rowStart(i); pos < left.rowEnd(i); pos++) {
+                    int k = left.colAt(pos);
+                    if (innerMask != null && !innerMask.get(k)) {
+                        continue;
+                    }
+                    double a = left.valueAt(pos);
+                    for (int rpos = right.rowStart(k); rpos < right.rowEnd(k); rpos++) {
+                        int j = right.colAt(rpos);
+                        if (colMask != null && !colMask.get(j)) {
+                            continue;
+                        }
+                        if (marker[j] < rowStart) {
+                            if (nnz == blockCols.length) {
+                                int capacity = blockCols.length + (blockCols.length >> 1);
+                                blockCols = Arrays.copyOf(blockCols, capacity);
+                                blockValues = Arrays.copyOf(blockValues, capacity);
+                            }
+                            marker[j] = nnz;
+                            blockCols[nnz] = j;
+                            blockValues[nnz] = a * right.valueAt(rpos);
+                            nnz++;
+                        } else {
+                            blockValues[marker[j]] += a * right.valueAt(rpos);
+                        }
+                    }
+                }
+            }
+            rowEnds[i - from] = nnz;
+        }
+        return new ProductBlock(from, to, rowEnds, blockCols, blockValues, nnz);
+    }
+
+    /**
+     * Entries of a range of rows of a matrix product, with row ends relative to the block.
+     */
+    private static final class ProductBlock {
+        final int from;
+        final int to;
+        final int[] rowEnds;
+        final int[] cols;
+        final double[] values;
+        final int nnz;
+
+        ProductBlock(int from, int to, int[] rowEnds, int[] cols, double[] values, int nnz) {
+            this.from = from;
+            this.to = to;
+            this.rowEnds = rowEnds;
+            this.cols = cols;
+            this.values = values;
+            this.nnz = nnz;
+        }
+    }
+
+    /**
+     * Copies a matrix to the heap, keeping only the entries whose row is set in {@code rowMask} (if given)
+     * and whose column is set in {@code colMask} (if given); duplicate entries are summed.
+     */
+    public static SparseMatrix copyOf(CsrMatrix matrix, BitSet rowMask, BitSet colMask) {
+        int rows = matrix.rows();
+        int[] resultPtr = new int[rows + 1];
+        int[] resultCols = new int[(int) matrix.nnz()];
+        double[] resultValues = new double[resultCols.length];
+        int nnz = 0;
+        for (int i = 0; i < rows; i++) {
+            if (rowMask == null || rowMask.get(i)) {
+                for (int pos = matrix.rowStart(i); pos < matrix.rowEnd(i); pos++) {
+                    if (colMask == null || colMask.get(matrix.colAt(pos))) {
+                        resultCols[nnz] = matrix.colAt(pos);
+                        resultValues[nnz] = matrix.valueAt(pos);
+                        nnz++;
+                    }
+                }
+            }
+            resultPtr[i + 1] = nnz;
+        }
+        return new SparseMatrix(rows, matrix.cols(), resultPtr, resultCols, resultValues).sumDuplicates();
+    }
+
+    public SparseMatrix transpose() {
+        int[] tPtr = new int[cols + 1];
+        for (int pos = 0; pos < rowPtr[rows]; pos++) {
+            tPtr[colIdx[pos] + 1]++;
+        }
+        for (int j = 0; j < cols; j++) {
+            tPtr[j + 1] += tPtr[j];
+        }
+
+        int nnz = rowPtr[rows];
+        int[] tCols = new int[nnz];
+        double[] tValues = new double[nnz];
+        int[] next = Arrays.copyOf(tPtr, cols);
+        for (int i = 0; i < rows; i++) {
+            for (int pos = rowPtr[i]; pos < rowPtr[i + 1]; pos++) {
+                int dest = next[colIdx[pos]]++;
+                tCols[dest] = i;
+                tValues[dest] = values[pos];
+            }
+        }
+        return new SparseMatrix(cols, rows, tPtr, tCols, tValues);
+    }
+
+    /**
+     * Keeps only the entries whose row is set in {@code rowMask} (if given)
+     * and whose column is set in {@code colMask} (if given).
+     */
+    public SparseMatrix mask(BitSet rowMask, BitSet colMask) {
+        if (rowMask == null && colMask == null) {
+            return this;
+        }
+        return copyOf(this, rowMask, colMask);
+    }
+
+    /**
+     * Drops the entries with a value lower than the given threshold.
+     */
+    public SparseMatrix threshold(double minValue) {
+        int[] resultPtr = new int[rows + 1];
+        int[] resultCols = new int[rowPtr[rows]];
+        double[] resultValues = new double[rowPtr[rows]];
+        int nnz = 0;
+        for (int i = 0; i < rows; i++) {
+            for (int pos = rowPtr[i]; pos < rowPtr[i + 1]; pos++) {
+                if (values[pos] >= minValue) {
+                    resultCols[nnz] = colIdx[pos];
+                    resultValues[nnz] = values[pos];
+                    nnz++;
+                }
+            }
+            resultPtr[i + 1] = nnz;
+        }
+        return new SparseMatrix(rows, cols, resultPtr, Arrays.copyOf(resultCols, nnz), Arrays.copyOf(resultValues, nnz));
+    }
+
+    private SparseMatrix sumDuplicates() {
+        int[] marker = new int[cols];
+        Arrays.fill(marker, -1);
+
+        int[] resultPtr = new int[rows + 1];
+        int nnz = 0;
+        for (int i = 0; i < rows; i++) {
+            int rowStart = nnz;
+            for (int pos = rowPtr[i]; pos < rowPtr[i + 1]; pos++) {
+                int j = colIdx[pos];
+                if (marker[j] < rowStart) {
+                    marker[j] = nnz;
+                    colIdx[nnz] = j;
+                    values[nnz] = values[pos];
+                    nnz++;
+                } else {
+                    values[marker[j]] += values[pos];
+                }
+            }
+            resultPtr[i + 1] = nnz;
+        }
+        return new SparseMatrix(rows, cols, resultPtr, Arrays.copyOf(colIdx, nnz), Arrays.copyOf(values, nnz));
+    }
+
+    /**
+     * Writes the matrix to a binary file: a header with the shape, then the row offsets, the columns
+     * and the values. The file is written to a temporary file first and moved in place.
+     */
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+            buffer.putInt(MAGIC).putInt(rows).putInt(cols).putInt(rowPtr[rows]);
+            for (int i = 0; i <= rows; i++) {
+                flushIfFull(channel, buffer, Integer.BYTES).putInt(rowPtr[i]);
+            }
+            for (int pos = 0; pos < rowPtr[rows]; pos++) {
+                flushIfFull(channel, buffer, Integer.BYTES).putInt(colIdx[pos]);
+            }
+            for (int pos = 0; pos < rowPtr[rows]; pos++) {
+                flushIfFull(channel, buffer, Double.BYTES).putDouble(values[pos]);
+            }
+            flushIfFull(channel, buffer, IO_BUFFER_SIZE);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer flushIfFull(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads a matrix written by {@link #write(File)}.
+     */
+    public static SparseMatrix read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE).order(ByteOrder.nativeOrder());
+            buffer.flip();
+            fill(channel, buffer, 4 * Integer.BYTES);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a matrix file: " + file);
+            }
+            int rows = buffer.getInt();
+            int cols = buffer.getInt();
+            int nnz = buffer.getInt();
+
+            int[] rowPtr = new int[rows + 1];
+            for (int i = 0; i <= rows; i++) {
+                rowPtr[i] = fill(channel, buffer, Integer.BYTES).getInt();
+            }
+            int[] colIdx = new int[nnz];
+            for (int pos = 0; pos < nnz; pos++) {
+                colIdx[pos] = fill(channel, buffer, Integer.BYTES).getInt();
+            }
+            double[] values = new double[nnz];
+            for (int pos = 0; pos < nnz; pos++) {
+                values[pos] = fill(channel, buffer, Double.BYTES).getDouble();
+            }
+            return new SparseMatrix(rows, cols, rowPtr, colIdx, values);
+        }
+    }
+
+    private static ByteBuffer fill(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            buffer.compact();
+            while (buffer.position() < needed) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Heterogeneous information network (HIN) data structures.
+ */
+package athenarc.imsi.sdl.service.hin;
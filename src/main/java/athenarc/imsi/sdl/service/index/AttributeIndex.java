@@ -0,0 +1,447 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.hin.ConstraintExpression;
+import athenarc.imsi.sdl.service.hin.HinDataset;
+import athenarc.imsi.sdl.service.util.TsvCursor;
+
+/**
+ * Columnar index over the attributes of the nodes of an entity type, used to evaluate
+ * constraints without scanning the node file.
+ * <p>
+ * Every column is dictionary-encoded: its distinct values are kept sorted, each with the posting
+ * list of the nodes holding it, so that a string comparison maps to a range of the dictionary.
+ * The values that parse as numbers are additionally kept in numeric order for numeric
+ * comparisons. The index is stored under {@code DATA_DIR/<dataset>/index/} and rebuilt whenever
+ * the size or the modification time of the node file changes.
+ */
+public final class AttributeIndex {
+
+    public static final String DIR = "index";
+    public static final String EXTENSION = ".attr";
+
+    private static final int MAGIC = 0x41545452;
+    private static final int VERSION = 2;
+
+    private static final Map<String, AttributeIndex> LOADED = new ConcurrentHashMap<>();
+
+    private final long sourceLength;
+    private final long sourceModified;
+    private final int nodeCount;
+    private final String[] headers;
+    private final Column[] columns;
+
+    private AttributeIndex(long sourceLength, long sourceModified, int nodeCount, String[] headers, Column[] columns) {
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.nodeCount = nodeCount;
+        this.headers = headers;
+        this.columns = columns;
+    }
+
+    /**
+     * A dictionary-encoded column.
+     */
+    private static final class Column {
+        // distinct values, sorted, and the nodes holding each of them
+        final String[] dictionary;
+        final int[] postingOffsets;
+        final int[] postings;
+        // the dictionary entries that parse as numbers, in numeric order
+        final double[] numbers;
+        final int[] numberCodes;
+
+        Column(String[] dictionary, int[] postingOffsets, int[] postings, double[] numbers, int[] numberCodes) {
+            this.dictionary = dictionary;
+            this.postingOffsets = postingOffsets;
+            this.postings = postings;
+            this.numbers = numbers;
+            this.numberCodes = numberCodes;
+        }
+    }
+
+    public static File getIndexFile(HinDataset dataset, String entity) {
+        return new File(dataset.getDir() + DIR + "/" + entity + EXTENSION);
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Loads the attribute index of an entity type, (re)building it if it is missing or stale.
+     */
+    public static AttributeIndex load(HinDataset dataset, String entity) throws IOException {
+        return load(new File(dataset.getNodesFile(entity)), getIndexFile(dataset, entity), dataset.nodeCount(entity));
+    }
+
+    static AttributeIndex load(File nodes, File indexFile, int nodeCount) throws IOException {
+        AttributeIndex index = LOADED.get(indexFile.getPath());
+        if (index != null && index.isBuiltFrom(nodes)) {
+            return index;
+        }
+
+        synchronized (AttributeIndex.class) {
+            index = indexFile.exists() ? read(indexFile) : null;
+            if (index == null || !index.isBuiltFrom(nodes)) {
+                index = build(nodes, nodeCount);
+                index.write(indexFile);
+            }
+            LOADED.put(indexFile.getPath(), index);
+        }
+        return index;
+    }
+
+    /**
+     * Drops the loaded indexes of a dataset, e.g. after it has been re-uploaded.
+     */
+    public static void invalidate(String dataset) {
+        String prefix = Constants.DATA_DIR + dataset + "/" + DIR + "/";
+        LOADED.keySet().removeIf(path -> path.startsWith(prefix));
+    }
+
+    private boolean isBuiltFrom(File nodes) {
+        return nodes.length() == sourceLength && nodes.lastModified() == sourceModified;
+    }
+
+    /**
+     * Ids of the nodes that satisfy the given constraint.
+     */
+    public BitSet evaluate(ConstraintExpression expression) {
+        if (expression instanceof ConstraintExpression.And) {
+            BitSet result = null;
+            for (ConstraintExpression operand : ((ConstraintExpression.And) expression).getOperands()) {
+                BitSet matching = evaluate(operand);
+                if (result == null) {
+                    result = matching;
+                } else {
+                    result.and(matching);
+                }
+            }
+            return result;
+        } else if (expression instanceof ConstraintExpression.Or) {
+            BitSet result = new BitSet(nodeCount);
+            for (ConstraintExpression operand : ((ConstraintExpression.Or) expression).getOperands()) {
+                result.or(evaluate(operand));
+            }
+            return result;
+        }
+        return compare((ConstraintExpression.Comparison) expression);
+    }
+
+    /**
+     * Ids of the nodes that satisfy a single comparison.
+     */
+    private BitSet compare(ConstraintExpression.Comparison comparison) {
+        BitSet result = new BitSet(nodeCount);
+        int column = HinDataset.findColumn(headers, comparison.getField());
+        if (column < 0) {
+            return result;
+        }
+        Column values = columns[column];
+
+        if (comparison.isNumeric()) {
+            double value = comparison.getNumericValue();
+            int lower = lowerBound(values.numbers, value, false);
+            int upper = lowerBound(values.numbers, value, true);
+            int[] range = range(comparison.getOperator(), lower, upper, values.numbers.length);
+            for (int r = 0; r < range.length; r += 2) {
+                for (int i = range[r]; i < range[r + 1]; i++) {
+                    addPostings(values, values.numberCodes[i], result);
+                }
+            }
+        } else {
+            String value = comparison.getValue();
+            int lower = lowerBound(values.dictionary, value, false);
+            int upper = lowerBound(values.dictionary, value, true);
+            int[] range = range(comparison.getOperator(), lower, upper, values.dictionary.length);
+            for (int r = 0; r < range.length; r += 2) {
+                for (int code = range[r]; code < range[r + 1]; code++) {
+                    addPostings(values, code, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addPostings(Column column, int code, BitSet result) {
+        for (int pos = column.postingOffsets[code]; pos < column.postingOffsets[code + 1]; pos++) {
+            result.set(column.postings[pos]);
+        }
+    }
+
+    /**
+     * The ranges {@code [from, to)} of sorted positions satisfying an operator, given the range
+     * {@code [lower, upper)} of the positions equal to the compared value.
+     */
+    private static int[] range(ConstraintExpression.Operator operator, int lower, int upper, int size) {
+        switch (operator) {
+            case EQ: return new int[] { lower, upper };
+            case NE: return new int[] { 0, lower, upper, size };
+            case GT: return new int[] { upper, size };
+            case GE: return new int[] { lower, size };
+            case LT: return new int[] { 0, lower };
+            default: return new int[] { 0, upper };
+        }
+    }
+
+    /**
+     * First position whose value is not lower than (or, if {@code strict}, greater than) the given value.
+     */
+    private static int lowerBound(double[] sorted, double value, boolean strict) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Double.compare(sorted[mid], value);
+            if (cmp < 0 || (strict && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(String[] sorted, String value, boolean strict) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = sorted[mid].compareTo(value);
+            if (cmp < 0 || (strict && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static AttributeIndex build(File nodes, int nodeCount) throws IOException {
+        long sourceLength = nodes.length();
+        long sourceModified = nodes.lastModified();
+
+        String[] headers;
+        List<Map<String, int[]>> values = new ArrayList<>();
+        try (TsvCursor cursor = TsvCursor.open(nodes)) {
+            headers = cursor.next() ? cursor.getStrings() : new String[0];
+            for (int c = 0; c < headers.length; c++) {
+                values.add(new HashMap<>());
+            }
+
+            while (cursor.next()) {
+                if (cursor.field(0).length() == 0) {
+                    continue;
+                }
+                int id = Integer.parseInt(cursor.getString(0).trim());
+                for (int c = 0; c < Math.min(cursor.getFieldCount(), headers.length); c++) {
+                    // node ids of each distinct value; the first slot holds their count
+                    String value = cursor.getString(c);
+                    int[] ids = values.get(c).get(value);
+                    if (ids == null) {
+                        ids = new int[2];
+                    } else if (ids[0] + 1 == ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
+                    ids[++ids[0]] = id;
+                    values.get(c).put(value, ids);
+                }
+            }
+        }
+
+        Column[] columns = new Column[headers.length];
+        for (int c = 0; c < headers.length; c++) {
+            columns[c] = buildColumn(values.get(c));
+            values.set(c, null);
+        }
+        return new AttributeIndex(sourceLength, sourceModified, nodeCount, headers, columns);
+    }
+
+    private static Column buildColumn(Map<String, int[]> values) {
+        String[] dictionary = values.keySet().toArray(new String[0]);
+        Arrays.sort(dictionary);
+
+        int[] postingOffsets = new int[dictionary.length + 1];
+        for (int code = 0; code < dictionary.length; code++) {
+            postingOffsets[code + 1] = postingOffsets[code] + values.get(dictionary[code])[0];
+        }
+        int[] postings = new int[postingOffsets[dictionary.length]];
+        int numberCount = 0;
+        double[] numbers = new double[dictionary.length];
+        int[] numberCodes = new int[dictionary.length];
+        for (int code = 0; code < dictionary.length; code++) {
+            int[] ids = values.get(dictionary[code]);
+            System.arraycopy(ids, 1, postings, postingOffsets[code], ids[0]);
+            try {
+                numbers[numberCount] = Double.parseDouble(dictionary[code].trim());
+                numberCodes[numberCount] = code;
+                numberCount++;
+            } catch (NumberFormatException e) {
+                // not a numeric value
+            }
+        }
+
+        numbers = Arrays.copyOf(numbers, numberCount);
+        numberCodes = Arrays.copyOf(numberCodes, numberCount);
+        sortByValue(numbers, numberCodes, 0, numberCount - 1);
+        return new Column(dictionary, postingOffsets, postings, numbers, numberCodes);
+    }
+
+    /**
+     * Sorts numeric values along with their dictionary codes (three-way quicksort, as columns such as years hold many duplicates).
+     */
+    private static void sortByValue(double[] values, int[] codes, int from, int to) {
+        while (from < to) {
+            double pivot = values[(from + to) >>> 1];
+            int lt = from;
+            int gt = to;
+            int i = from;
+            while (i <= gt) {
+                int cmp = Double.compare(values[i], pivot);
+                if (cmp < 0) {
+                    swap(values, codes, lt++, i++);
+                } else if (cmp > 0) {
+                    swap(values, codes, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            // recurse into the smaller part, loop over the larger one
+            if (lt - from < to - gt) {
+                sortByValue(values, codes, from, lt - 1);
+                from = gt + 1;
+            } else {
+                sortByValue(values, codes, gt + 1, to);
+                to = lt - 1;
+            }
+        }
+    }
+
+    private static void swap(double[] values, int[] codes, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        int code = codes[i];
+        codes[i] = codes[j];
+        codes[j] = code;
+    }
+
+    private void write(File indexFile) throws IOException {
+        indexFile.getParentFile().mkdirs();
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(nodeCount);
+            out.writeInt(headers.length);
+            for (String header : headers) {
+                writeString(out, header);
+            }
+
+            for (Column column : columns) {
+                out.writeInt(column.dictionary.length);
+                for (String value : column.dictionary) {
+                    writeString(out, value);
+                }
+                writeInts(out, column.postingOffsets);
+                writeInts(out, column.postings);
+                out.writeInt(column.numbers.length);
+                for (int i = 0; i < column.numbers.length; i++) {
+                    out.writeDouble(column.numbers[i]);
+                    out.writeInt(column.numberCodes[i]);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static AttributeIndex read(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long sourceLength = in.readLong();
+            long sourceModified = in.readLong();
+            int nodeCount = in.readInt();
+            String[] headers = new String[in.readInt()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = readString(in);
+            }
+
+            Column[] columns = new Column[headers.length];
+            for (int c = 0; c < columns.length; c++) {
+                String[] dictionary = new String[in.readInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = readString(in);
+                }
+                int[] postingOffsets = readInts(in);
+                int[] postings = readInts(in);
+                double[] numbers = new double[in.readInt()];
+                int[] numberCodes = new int[numbers.length];
+                for (int i = 0; i < numbers.length; i++) {
+                    numbers[i] = in.readDouble();
+                    numberCodes[i] = in.readInt();
+                }
+                columns[c] = new Column(dictionary, postingOffsets, postings, numbers, numberCodes);
+            }
+            return new AttributeIndex(sourceLength, sourceModified, nodeCount, headers, columns);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // values may exceed the 64KB limit of writeUTF
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
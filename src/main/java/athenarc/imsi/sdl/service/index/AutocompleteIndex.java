@@ -0,0 +1,315 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import athenarc.imsi.sdl.service.util.TsvCursor;
+
+/**
+ * In-memory index over the values of one field of a node or result file, answering the case-insensitive
+ * substring lookups of autocompletion without scanning the file.
+ * <p>
+ * The distinct lower-case values (terms) are kept sorted, each with the rows holding it, so that
+ * exact and prefix matches are ranges of the terms. Substring matches are found through a trigram
+ * index mapping every three-character sequence to the sorted codes of the terms containing it.
+ */
+public final class AutocompleteIndex {
+
+    private final long sourceLength;
+    private final long sourceModified;
+
+    // node id and original value of every row of the node file that holds the field
+    private final int[] ids;
+    private final String[] values;
+
+    // sorted distinct lower-case values, and the rows holding each of them
+    private final String[] terms;
+    private final int[] termOffsets;
+    private final int[] termRows;
+
+    // sorted trigram keys, and the term codes containing each of them
+    private final long[] grams;
+    private final int[] gramOffsets;
+    private final int[] gramTerms;
+
+    private AutocompleteIndex(long sourceLength, long sourceModified, int[] ids, String[] values, String[] terms,
+                              int[] termOffsets, int[] termRows, long[] grams, int[] gramOffsets, int[] gramTerms) {
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.ids = ids;
+        this.values = values;
+        this.terms = terms;
+        this.termOffsets = termOffsets;
+        this.termRows = termRows;
+        this.grams = grams;
+        this.gramOffsets = gramOffsets;
+        this.gramTerms = gramTerms;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public String getValue(int row) {
+        return values[row];
+    }
+
+    /**
+     * Whether the index was built from the current version of the given node file.
+     */
+    public boolean isBuiltFrom(File nodes) {
+        return nodes.length() == sourceLength && nodes.lastModified() == sourceModified;
+    }
+
+    /**
+     * Returns the rows whose value contains the given lower-case term: exact matches first, then values
+     * starting with the term and finally the remaining ones, each group in alphabetical order.
+     *
+     * @param uniqueValues whether to return a single row per distinct value
+     * @param limit the maximum number of rows to return, or a non-positive number for all of them
+     */
+    public int[] search(String term, boolean uniqueValues, int limit) {
+        Collector collector = new Collector(uniqueValues, limit > 0 ? limit : Integer.MAX_VALUE);
+
+        int from = lowerBound(term);
+        int to = lowerBound(term + Character.MAX_VALUE);
+        boolean exact = from < to && terms[from].equals(term);
+        if (exact) {
+            collector.addTerm(from);
+        }
+        for (int code = exact ? from + 1 : from; code < to && !collector.isFull(); code++) {
+            collector.addTerm(code);
+        }
+
+        if (term.length() >= 3) {
+            int[] candidates = candidates(term);
+            for (int i = 0; i < candidates.length && !collector.isFull(); i++) {
+                int code = candidates[i];
+                if (!terms[code].startsWith(term) && terms[code].contains(term)) {
+                    collector.addTerm(code);
+                }
+            }
+        } else {
+            // short terms match too many values to be worth indexing; the scan stops at the limit
+            for (int code = 0; code < terms.length && !collector.isFull(); code++) {
+                if (!terms[code].startsWith(term) && terms[code].contains(term)) {
+                    collector.addTerm(code);
+                }
+            }
+        }
+        return collector.toArray();
+    }
+
+    /**
+     * Codes of the terms containing all the trigrams of the given term, in ascending order.
+     */
+    private int[] candidates(String term) {
+        long[] keys = trigrams(term);
+        int[][] postings = new int[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            int index = Arrays.binarySearch(grams, keys[i]);
+            if (index < 0) {
+                return new int[0];
+            }
+            postings[i] = Arrays.copyOfRange(gramTerms, gramOffsets[index], gramOffsets[index + 1]);
+        }
+
+        // intersect starting from the shortest posting list
+        Arrays.sort(postings, (a, b) -> Integer.compare(a.length, b.length));
+        int[] result = postings[0];
+        for (int i = 1; i < postings.length && result.length > 0; i++) {
+            result = intersect(result, postings[i]);
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int lowerBound(String term) {
+        int index = Arrays.binarySearch(terms, term);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * The distinct trigrams of a term, sorted, each packed into a long.
+     */
+    private static long[] trigrams(String term) {
+        if (term.length() < 3) {
+            return new long[0];
+        }
+        long[] keys = new long[term.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ((long) term.charAt(i) << 32) | ((long) term.charAt(i + 1) << 16) | term.charAt(i + 2);
+        }
+        Arrays.sort(keys);
+
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                keys[count++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    /**
+     * Gathers the rows of matching terms, up to the limit.
+     */
+    private final class Collector {
+        private final boolean uniqueValues;
+        private final int limit;
+        private final Set<String> seen = new HashSet<>();
+        private int[] rows = new int[16];
+        private int count;
+
+        Collector(boolean uniqueValues, int limit) {
+            this.uniqueValues = uniqueValues;
+            this.limit = limit;
+        }
+
+        boolean isFull() {
+            return count >= limit;
+        }
+
+        void addTerm(int code) {
+            for (int pos = termOffsets[code]; pos < termOffsets[code + 1] && count < limit; pos++) {
+                int row = termRows[pos];
+                if (uniqueValues && !seen.add(values[row])) {
+                    continue;
+                }
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = row;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, count);
+        }
+    }
+
+    /**
+     * Builds the index of the column of a node file whose name starts with the given field.
+     */
+    public static AutocompleteIndex build(File nodes, String field) throws IOException {
+        long sourceLength = nodes.length();
+        long sourceModified = nodes.lastModified();
+
+        int[] ids = new int[1024];
+        String[] values = new String[1024];
+        int rows = 0;
+        Map<String, String> originals = new HashMap<>();
+
+        try (TsvCursor cursor = TsvCursor.open(nodes)) {
+            String[] columnNames = cursor.next() ? cursor.getStrings() : new String[0];
+            int column;
+            for (column = 0; column < columnNames.length; column++) {
+                if (columnNames[column].startsWith(field)) {
+                    break;
+                }
+            }
+
+            while (cursor.next()) {
+                if (column >= cursor.getFieldCount()) {
+                    continue;
+                }
+
+                if (rows == ids.length) {
+                    ids = Arrays.copyOf(ids, rows * 2);
+                    values = Arrays.copyOf(values, rows * 2);
+                }
+                ids[rows] = cursor.getInt(0);
+                // share the instances of repeated values
+                values[rows] = originals.computeIfAbsent(cursor.getString(column), v -> v);
+                rows++;
+            }
+        }
+
+        return index(sourceLength, sourceModified, Arrays.copyOf(ids, rows), Arrays.copyOf(values, rows));
+    }
+
+    /**
+     * Builds the index of the given values, each identified by the id at the same position.
+     */
+    public static AutocompleteIndex of(int[] ids, String[] values) {
+        return index(-1, -1, ids, values);
+    }
+
+    private static AutocompleteIndex index(long sourceLength, long sourceModified, int[] ids, String[] values) {
+        int rows = values.length;
+        int indexed = 0;
+        Map<String, List<Integer>> rowsByTerm = new HashMap<>();
+        for (int row = 0; row < rows; row++) {
+            if (values[row] != null) {
+                rowsByTerm.computeIfAbsent(values[row].toLowerCase(), t -> new ArrayList<>(1)).add(row);
+                indexed++;
+            }
+        }
+
+        String[] terms = rowsByTerm.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        int[] termOffsets = new int[terms.length + 1];
+        int[] termRows = new int[indexed];
+        for (int code = 0; code < terms.length; code++) {
+            List<Integer> termRowList = rowsByTerm.remove(terms[code]);
+            for (int r = 0; r < termRowList.size(); r++) {
+                termRows[termOffsets[code] + r] = termRowList.get(r);
+            }
+            termOffsets[code + 1] = termOffsets[code] + termRowList.size();
+        }
+
+        // trigram postings: count the terms of every trigram, then fill them in term order
+        Map<Long, int[]> gramCounts = new HashMap<>();
+        for (String term : terms) {
+            for (long key : trigrams(term)) {
+                gramCounts.computeIfAbsent(key, k -> new int[1])[0]++;
+            }
+        }
+        long[] grams = new long[gramCounts.size()];
+        int g = 0;
+        for (Long key : gramCounts.keySet()) {
+            grams[g++] = key;
+        }
+        Arrays.sort(grams);
+
+        int[] gramOffsets = new int[grams.length + 1];
+        for (int i = 0; i < grams.length; i++) {
+            gramOffsets[i + 1] = gramOffsets[i] + gramCounts.get(grams[i])[0];
+        }
+        int[] gramTerms = new int[gramOffsets[grams.length]];
+        int[] next = Arrays.copyOf(gramOffsets, grams.length);
+        for (int code = 0; code < terms.length; code++) {
+            for (long key : trigrams(terms[code])) {
+                gramTerms[next[Arrays.binarySearch(grams, key)]++] = code;
+            }
+        }
+
+        return new AutocompleteIndex(sourceLength, sourceModified, ids, values, terms, termOffsets, termRows, grams,
+            gramOffsets, gramTerms);
+    }
+}
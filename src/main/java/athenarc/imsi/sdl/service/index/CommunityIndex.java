@@ -0,0 +1,305 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.util.TsvCursor;
+
+/**
+ * Persistent summary of the communities of a tab-separated result file with a {@code Community} column.
+ * <p>
+ * The index holds, for every community in order of appearance, the byte offset and row of its first
+ * member, its number of members and its top members by score, in fixed-size records read through
+ * memory-mapping. When the members of every community are stored contiguously, as in community
+ * detection results, the first rows delimit the pages of communities. The communities are also listed
+ * in order of their ids, so that the summary of a community is found by binary search.
+ */
+public final class CommunityIndex {
+
+    public static final String EXTENSION = ".cidx";
+
+    private static final int MAGIC = 0x43494458;
+    private static final int VERSION = 1;
+
+    private static final SidecarCache<CommunityIndex> CACHE = new SidecarCache<>(Constants.MAX_CACHED_RESULT_TABLES);
+
+    private static final int HEADER_SIZE = Sidecar.HEADER_SIZE + 2 * Integer.BYTES;
+    // offset, first row, member count, position of the id and position of the top members
+    private static final int RECORD_SIZE = Long.BYTES + 4 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int topK;
+
+    private CommunityIndex(ByteBuffer buffer, int size, int topK) {
+        this.buffer = buffer;
+        this.size = size;
+        this.topK = topK;
+    }
+
+    /**
+     * Number of communities.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getTopK() {
+        return topK;
+    }
+
+    private int record(int community) {
+        return HEADER_SIZE + community * RECORD_SIZE;
+    }
+
+    /**
+     * Byte offset of the first member of the community at the given position.
+     */
+    public long getOffset(int community) {
+        return buffer.getLong(record(community));
+    }
+
+    /**
+     * Row of the first member of the community at the given position, counting from the first row after the headers.
+     */
+    public int getFirstRow(int community) {
+        return buffer.getInt(record(community) + Long.BYTES);
+    }
+
+    public int getCount(int community) {
+        return buffer.getInt(record(community) + Long.BYTES + Integer.BYTES);
+    }
+
+    public String getId(int community) {
+        int position = buffer.getInt(record(community) + Long.BYTES + 2 * Integer.BYTES);
+        byte[] id = new byte[buffer.getInt(position)];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position + Integer.BYTES);
+        slice.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rows of the members of the community at the given position with the highest scores, best first.
+     */
+    public int[] getTopRows(int community) {
+        int position = buffer.getInt(record(community) + Long.BYTES + 3 * Integer.BYTES);
+        int[] rows = new int[buffer.getInt(position)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = buffer.getInt(position + Integer.BYTES + i * Integer.BYTES);
+        }
+        return rows;
+    }
+
+    /**
+     * Position of the community with the given id, or -1 if there is none.
+     */
+    public int indexOf(String id) {
+        int sorted = HEADER_SIZE + size * RECORD_SIZE;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int community = buffer.getInt(sorted + middle * Integer.BYTES);
+            int cmp = getId(community).compareTo(id);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return community;
+            }
+        }
+        return -1;
+    }
+
+    public static File getIndexFile(String resultsFile) {
+        return new File(resultsFile + EXTENSION);
+    }
+
+    /**
+     * Loads the community index of the given result file, building it if needed.
+     *
+     * @param topK the number of top members to keep per community when building the index
+     */
+    public static CommunityIndex load(String resultsFile, int topK) throws IOException {
+        return CACHE.get(resultsFile, Integer.toString(topK), () -> readOrBuild(resultsFile, topK));
+    }
+
+    private static CommunityIndex readOrBuild(String resultsFile, int topK) throws IOException {
+        File csv = new File(resultsFile);
+        File indexFile = getIndexFile(resultsFile);
+
+        if (indexFile.exists()) {
+            CommunityIndex index = read(indexFile, csv, topK);
+            if (index != null) {
+                return index;
+            }
+        }
+
+        build(csv, indexFile, topK);
+        return read(indexFile, csv, topK);
+    }
+
+    private static CommunityIndex read(File indexFile, File csv, int topK) throws IOException {
+        ByteBuffer buffer = Sidecar.map(indexFile, MAGIC, VERSION, csv, HEADER_SIZE);
+        if (buffer == null) {
+            return null;
+        }
+
+        int size = buffer.getInt(Sidecar.HEADER_SIZE);
+        int indexTopK = buffer.getInt(Sidecar.HEADER_SIZE + Integer.BYTES);
+        if (indexTopK != topK) {
+            return null;
+        }
+        return new CommunityIndex(buffer, size, indexTopK);
+    }
+
+    /**
+     * A community being summarized.
+     */
+    private static final class Summary {
+        private final String id;
+        private final long offset;
+        private final int firstRow;
+        private int count;
+        // lowest score on top, so that it is the one replaced
+        private final PriorityQueue<double[]> top = new PriorityQueue<>(
+            Comparator.<double[]>comparingDouble(member -> member[0]).thenComparingDouble(member -> -member[1]));
+
+        Summary(String id, long offset, int firstRow) {
+            this.id = id;
+            this.offset = offset;
+            this.firstRow = firstRow;
+        }
+
+        void add(int row, double score, int topK) {
+            count++;
+            top.add(new double[] { score, row });
+            if (top.size() > topK) {
+                top.poll();
+            }
+        }
+
+        int[] topRows() {
+            List<double[]> members = new ArrayList<>(top);
+            // best first, and earlier rows first among equal scores
+            members.sort(Comparator.<double[]>comparingDouble(member -> -member[0]).thenComparingDouble(member -> member[1]));
+            int[] rows = new int[members.size()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = (int) members.get(i)[1];
+            }
+            return rows;
+        }
+    }
+
+    private static double score(TsvCursor cursor, int scoreColumn) {
+        if (scoreColumn < 0 || scoreColumn >= cursor.getFieldCount()) {
+            return 0.0;
+        }
+        try {
+            return cursor.getDouble(scoreColumn);
+        } catch (NumberFormatException e) {
+            return Double.NEGATIVE_INFINITY;
+        }
+    }
+
+    private static void build(File csv, File indexFile, int topK) throws IOException {
+        long csvLength = csv.length();
+        long csvModified = csv.lastModified();
+
+        Map<String, Summary> communities = new LinkedHashMap<>();
+        try (TsvCursor cursor = TsvCursor.open(csv)) {
+            int communityColumn = -1;
+            int scoreColumn = -1;
+            if (cursor.next()) {
+                for (int column = 0; column < cursor.getFieldCount(); column++) {
+                    if (cursor.fieldEquals(column, "Community")) {
+                        communityColumn = column;
+                    } else if (scoreColumn < 0 && cursor.getString(column).endsWith("Score")) {
+                        scoreColumn = column;
+                    }
+                }
+            }
+
+            Summary summary = null;
+            int row = 0;
+            while (cursor.next()) {
+                boolean hasCommunity = communityColumn >= 0 && communityColumn < cursor.getFieldCount();
+                // members of a community are mostly contiguous, so the id is only copied when it changes
+                if (summary == null || !(hasCommunity ? cursor.fieldEquals(communityColumn, summary.id) : summary.id.isEmpty())) {
+                    String id = hasCommunity ? cursor.getString(communityColumn) : "";
+                    summary = communities.get(id);
+                    if (summary == null) {
+                        summary = new Summary(id, cursor.getLineOffset(), row);
+                        communities.put(id, summary);
+                    }
+                }
+                summary.add(row, score(cursor, scoreColumn), topK);
+                row++;
+            }
+        }
+
+        List<Summary> summaries = new ArrayList<>(communities.values());
+        Integer[] sorted = new Integer[summaries.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, Comparator.comparing(i -> summaries.get(i).id));
+
+        // ids and top members follow the records and the sorted positions
+        byte[][] ids = new byte[summaries.size()][];
+        int[][] tops = new int[summaries.size()][];
+        int[] idPositions = new int[summaries.size()];
+        int[] topPositions = new int[summaries.size()];
+        long dataPosition = HEADER_SIZE + (long) summaries.size() * (RECORD_SIZE + Integer.BYTES);
+        for (int i = 0; i < summaries.size(); i++) {
+            ids[i] = summaries.get(i).id.getBytes(StandardCharsets.UTF_8);
+            tops[i] = summaries.get(i).topRows();
+            idPositions[i] = (int) dataPosition;
+            dataPosition += Integer.BYTES + ids[i].length;
+            topPositions[i] = (int) dataPosition;
+            dataPosition += Integer.BYTES + (long) tops[i].length * Integer.BYTES;
+        }
+        if (dataPosition > Integer.MAX_VALUE) {
+            throw new IOException("Too many communities in " + csv);
+        }
+
+        try (DataOutputStream out = Sidecar.create(indexFile, MAGIC, VERSION, csvLength, csvModified)) {
+            out.writeInt(summaries.size());
+            out.writeInt(topK);
+
+            for (int i = 0; i < summaries.size(); i++) {
+                Summary summary = summaries.get(i);
+                out.writeLong(summary.offset);
+                out.writeInt(summary.firstRow);
+                out.writeInt(summary.count);
+                out.writeInt(idPositions[i]);
+                out.writeInt(topPositions[i]);
+            }
+            for (Integer i : sorted) {
+                out.writeInt(i);
+            }
+            for (int i = 0; i < summaries.size(); i++) {
+                out.writeInt(ids[i].length);
+                out.write(ids[i]);
+                out.writeInt(tops[i].length);
+                for (int topRow : tops[i]) {
+                    out.writeInt(topRow);
+                }
+            }
+        }
+        Sidecar.publish(indexFile);
+    }
+}
@@ -0,0 +1,444 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.util.TsvCursor;
+
+/**
+ * Persistent tree of the hierarchical communities of a tab-separated HPIC result file, whose
+ * {@code Community} column holds the dash-separated path of every member from its leaf community up
+ * to the top level, e.g. {@code 4-1-0}.
+ * <p>
+ * Its nodes are the communities, in order of first appearance, each with its parent, its children,
+ * the number of members in its subtree and the first members of its subtree in file order. The rows
+ * of the file are stored in depth-first order, together with their byte offsets, so that the members
+ * of any subtree, and the direct members of a leaf, are a contiguous range of them. Nodes are also
+ * listed in order of their ids, so that a community is found by binary search.
+ */
+public final class CommunityTree {
+
+    public static final String EXTENSION = ".tree";
+
+    private static final int MAGIC = 0x54524545;
+    private static final int VERSION = 1;
+
+    private static final SidecarCache<CommunityTree> CACHE = new SidecarCache<>(Constants.MAX_CACHED_RESULT_TABLES);
+
+    private static final int HEADER_SIZE = Sidecar.HEADER_SIZE + 4 * Integer.BYTES;
+
+    // id position, level, parent, children range, subtree members range and end of the direct members
+    private static final int FIELDS = 8;
+    private static final int ID = 0;
+    private static final int LEVEL = 1;
+    private static final int PARENT = 2;
+    private static final int CHILDREN_FROM = 3;
+    private static final int CHILDREN_TO = 4;
+    private static final int ROWS_FROM = 5;
+    private static final int DIRECT_ROWS_TO = 6;
+    private static final int ROWS_TO = 7;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int rootCount;
+    private final int rowCount;
+    private final int recordSize;
+
+    private CommunityTree(ByteBuffer buffer, int size, int rootCount, int rowCount, int sampleSize) {
+        this.buffer = buffer;
+        this.size = size;
+        this.rootCount = rootCount;
+        this.rowCount = rowCount;
+        // the fields are followed by the number of sampled members and their positions
+        this.recordSize = (FIELDS + 1 + sampleSize) * Integer.BYTES;
+    }
+
+    /**
+     * Number of communities, at all levels.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    private int field(int node, int field) {
+        return buffer.getInt(HEADER_SIZE + node * recordSize + field * Integer.BYTES);
+    }
+
+    private int childrenPosition() {
+        return HEADER_SIZE + size * recordSize;
+    }
+
+    private int sortedPosition() {
+        return childrenPosition() + size * Integer.BYTES;
+    }
+
+    private int rowsPosition() {
+        return sortedPosition() + size * Integer.BYTES;
+    }
+
+    private int offsetsPosition() {
+        return rowsPosition() + rowCount * Integer.BYTES;
+    }
+
+    public String getId(int node) {
+        int position = field(node, ID);
+        byte[] id = new byte[buffer.getInt(position)];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position + Integer.BYTES);
+        slice.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Level of a community, counting from 0 for leaf communities.
+     */
+    public int getLevel(int node) {
+        return field(node, LEVEL);
+    }
+
+    /**
+     * Parent of a community, or -1 for top-level communities.
+     */
+    public int getParent(int node) {
+        return field(node, PARENT);
+    }
+
+    public int getChildCount(int node) {
+        return field(node, CHILDREN_TO) - field(node, CHILDREN_FROM);
+    }
+
+    /**
+     * The child of a community at the given position, in order of first appearance.
+     */
+    public int getChild(int node, int child) {
+        return buffer.getInt(childrenPosition() + (field(node, CHILDREN_FROM) + child) * Integer.BYTES);
+    }
+
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    /**
+     * The top-level community at the given position, in order of first appearance.
+     */
+    public int getRoot(int root) {
+        return buffer.getInt(childrenPosition() + root * Integer.BYTES);
+    }
+
+    /**
+     * Number of members in the subtree of a community.
+     */
+    public int getSubtreeSize(int node) {
+        return field(node, ROWS_TO) - field(node, ROWS_FROM);
+    }
+
+    /**
+     * Number of members whose leaf community is the given one.
+     */
+    public int getDirectSize(int node) {
+        return field(node, DIRECT_ROWS_TO) - field(node, ROWS_FROM);
+    }
+
+    /**
+     * Depth-first position of the member at the given position among the members whose leaf community is
+     * the given one, which are in file order.
+     */
+    public int getDirectMember(int node, int member) {
+        return field(node, ROWS_FROM) + member;
+    }
+
+    /**
+     * Depth-first positions of the first members of the subtree of a community, in file order.
+     */
+    public int[] getSample(int node) {
+        int[] members = new int[field(node, FIELDS)];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = field(node, FIELDS + 1 + i);
+        }
+        return members;
+    }
+
+    /**
+     * Row of the member at the given depth-first position, counting from the first row after the headers.
+     */
+    public int getRow(int member) {
+        return buffer.getInt(rowsPosition() + member * Integer.BYTES);
+    }
+
+    /**
+     * Byte offset of the member at the given depth-first position.
+     */
+    public long getOffset(int member) {
+        return buffer.getLong(offsetsPosition() + member * Long.BYTES);
+    }
+
+    /**
+     * The community with the given id, at the highest level if several have it, or -1 if there is none.
+     */
+    public int find(String id) {
+        int sorted = sortedPosition();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getId(buffer.getInt(sorted + middle * Integer.BYTES)).compareTo(id) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < size) {
+            int node = buffer.getInt(sorted + low * Integer.BYTES);
+            if (getId(node).equals(id)) {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    public static File getIndexFile(String resultsFile) {
+        return new File(resultsFile + EXTENSION);
+    }
+
+    /**
+     * Loads the community tree of the given result file, building it if needed.
+     *
+     * @param sampleSize the number of members to keep per community when building the tree
+     */
+    public static CommunityTree load(String resultsFile, int sampleSize) throws IOException {
+        return CACHE.get(resultsFile, Integer.toString(sampleSize), () -> readOrBuild(resultsFile, sampleSize));
+    }
+
+    private static CommunityTree readOrBuild(String resultsFile, int sampleSize) throws IOException {
+        File csv = new File(resultsFile);
+        File indexFile = getIndexFile(resultsFile);
+
+        if (indexFile.exists()) {
+            CommunityTree tree = read(indexFile, csv, sampleSize);
+            if (tree != null) {
+                return tree;
+            }
+        }
+
+        build(csv, indexFile, sampleSize);
+        return read(indexFile, csv, sampleSize);
+    }
+
+    private static CommunityTree read(File indexFile, File csv, int sampleSize) throws IOException {
+        ByteBuffer buffer = Sidecar.map(indexFile, MAGIC, VERSION, csv, HEADER_SIZE);
+        if (buffer == null) {
+            return null;
+        }
+
+        int position = Sidecar.HEADER_SIZE;
+        int size = buffer.getInt(position);
+        int rootCount = buffer.getInt(position + Integer.BYTES);
+        int rowCount = buffer.getInt(position + 2 * Integer.BYTES);
+        if (buffer.getInt(position + 3 * Integer.BYTES) != sampleSize) {
+            return null;
+        }
+        return new CommunityTree(buffer, size, rootCount, rowCount, sampleSize);
+    }
+
+    /**
+     * A community being added to the tree.
+     */
+    private static final class Node {
+        private final String id;
+        private final int level;
+        private final int parent;
+        private final List<Integer> children = new ArrayList<>();
+        private final Map<String, Integer> childrenById = new HashMap<>();
+        private final List<Integer> directRows = new ArrayList<>();
+        private final List<Long> directOffsets = new ArrayList<>();
+        private int subtreeSize;
+        private int[] sample;
+        private int rowsFrom;
+
+        Node(String id, int level, int parent) {
+            this.id = id;
+            this.level = level;
+            this.parent = parent;
+        }
+    }
+
+    private static int child(List<Node> nodes, List<Integer> roots, Map<String, Integer> rootsById, int parent, String id, int level) {
+        List<Integer> siblings = parent < 0 ? roots : nodes.get(parent).children;
+        Map<String, Integer> siblingsById = parent < 0 ? rootsById : nodes.get(parent).childrenById;
+        Integer node = siblingsById.get(id);
+        if (node == null) {
+            node = nodes.size();
+            nodes.add(new Node(id, level, parent));
+            siblings.add(node);
+            siblingsById.put(id, node);
+        }
+        return node;
+    }
+
+    /**
+     * The first rows of the given lists, up to the sample size.
+     */
+    private static int[] merge(List<int[]> samples, int sampleSize) {
+        return samples.stream().flatMapToInt(Arrays::stream).sorted().limit(sampleSize).toArray();
+    }
+
+    private static void build(File csv, File indexFile, int sampleSize) throws IOException {
+        long csvLength = csv.length();
+        long csvModified = csv.lastModified();
+
+        List<Node> nodes = new ArrayList<>();
+        List<Integer> roots = new ArrayList<>();
+        Map<String, Integer> rootsById = new HashMap<>();
+        int rowCount = 0;
+
+        try (TsvCursor cursor = TsvCursor.open(csv)) {
+            int communityColumn = cursor.next() ? Arrays.asList(cursor.getStrings()).indexOf("Community") : -1;
+            while (cursor.next()) {
+                if (communityColumn >= 0 && communityColumn < cursor.getFieldCount()) {
+                    // walk the path from the top level down to the leaf community
+                    String[] path = cursor.getString(communityColumn).split("-");
+                    int node = -1;
+                    for (int level = path.length - 1; level >= 0; level--) {
+                        node = child(nodes, roots, rootsById, node, path[level], level);
+                    }
+                    nodes.get(node).directRows.add(rowCount);
+                    nodes.get(node).directOffsets.add(cursor.getLineOffset());
+                }
+                rowCount++;
+            }
+        }
+
+        // parents are created before their children, so subtrees are summed in reverse order
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            List<int[]> samples = new ArrayList<>();
+            samples.add(node.directRows.stream().mapToInt(Integer::intValue).limit(sampleSize).toArray());
+            node.subtreeSize = node.directRows.size();
+            for (Integer child : node.children) {
+                node.subtreeSize += nodes.get(child).subtreeSize;
+                samples.add(nodes.get(child).sample);
+            }
+            node.sample = merge(samples, sampleSize);
+        }
+
+        // depth-first ranges: the direct members of a community come first, then the subtrees of its children
+        int next = 0;
+        for (Integer root : roots) {
+            next = assignRows(nodes, root, next);
+        }
+
+        int[] children = new int[nodes.size()];
+        int[] childrenFrom = new int[nodes.size()];
+        int c = 0;
+        for (Integer root : roots) {
+            children[c++] = root;
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            childrenFrom[i] = c;
+            for (Integer child : nodes.get(i).children) {
+                children[c++] = child;
+            }
+        }
+
+        Integer[] sorted = new Integer[nodes.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        // the highest level first among equal ids
+        Arrays.sort(sorted, Comparator.<Integer, String>comparing(i -> nodes.get(i).id).thenComparing(i -> -nodes.get(i).level));
+
+        int recordSize = (FIELDS + 1 + sampleSize) * Integer.BYTES;
+        long idPosition = HEADER_SIZE + (long) nodes.size() * (recordSize + 2 * Integer.BYTES) + (long) rowCount * (Integer.BYTES + Long.BYTES);
+        byte[][] ids = new byte[nodes.size()][];
+        int[] idPositions = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            ids[i] = nodes.get(i).id.getBytes(StandardCharsets.UTF_8);
+            idPositions[i] = (int) idPosition;
+            idPosition += Integer.BYTES + ids[i].length;
+        }
+        if (idPosition > Integer.MAX_VALUE) {
+            throw new IOException("Too many communities in " + csv);
+        }
+
+        int[] rows = new int[rowCount];
+        long[] offsets = new long[rowCount];
+        int[] positions = new int[rowCount];
+        for (Node node : nodes) {
+            for (int i = 0; i < node.directRows.size(); i++) {
+                rows[node.rowsFrom + i] = node.directRows.get(i);
+                offsets[node.rowsFrom + i] = node.directOffsets.get(i);
+                positions[node.directRows.get(i)] = node.rowsFrom + i;
+            }
+        }
+
+        try (DataOutputStream out = Sidecar.create(indexFile, MAGIC, VERSION, csvLength, csvModified)) {
+            out.writeInt(nodes.size());
+            out.writeInt(roots.size());
+            out.writeInt(rowCount);
+            out.writeInt(sampleSize);
+
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                out.writeInt(idPositions[i]);
+                out.writeInt(node.level);
+                out.writeInt(node.parent);
+                out.writeInt(childrenFrom[i]);
+                out.writeInt(childrenFrom[i] + node.children.size());
+                out.writeInt(node.rowsFrom);
+                out.writeInt(node.rowsFrom + node.directRows.size());
+                out.writeInt(node.rowsFrom + node.subtreeSize);
+                out.writeInt(node.sample.length);
+                for (int s = 0; s < sampleSize; s++) {
+                    out.writeInt(s < node.sample.length ? positions[node.sample[s]] : -1);
+                }
+            }
+            for (int child : children) {
+                out.writeInt(child);
+            }
+            for (Integer node : sorted) {
+                out.writeInt(node);
+            }
+            for (int row : rows) {
+                out.writeInt(row);
+            }
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+            for (byte[] id : ids) {
+                out.writeInt(id.length);
+                out.write(id);
+            }
+        }
+        Sidecar.publish(indexFile);
+    }
+
+    private static int assignRows(List<Node> nodes, int root, int from) {
+        // iterative, as hierarchies can be deep
+        List<Integer> stack = new ArrayList<>();
+        stack.add(root);
+        int next = from;
+        while (!stack.isEmpty()) {
+            Node node = nodes.get(stack.remove(stack.size() - 1));
+            node.rowsFrom = next;
+            next += node.directRows.size();
+            for (int i = node.children.size() - 1; i >= 0; i--) {
+                stack.add(node.children.get(i));
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,179 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import athenarc.imsi.sdl.config.Constants;
+
+/**
+ * Persistent page index of a tab-separated result file: the byte offset of every
+ * {@link Constants#PAGE_SIZE}-th record, together with the total number of records
+ * and the headers of the file.
+ */
+public final class PageIndex {
+
+    public static final String EXTENSION = ".pidx";
+
+    private static final int MAGIC = 0x50494458;
+    private static final int VERSION = 1;
+
+    private static final SidecarCache<PageIndex> CACHE = new SidecarCache<>(Constants.MAX_CACHED_RESULT_TABLES);
+
+    private final File indexFile;
+    private final String[] headers;
+    private final int totalRecords;
+    private final int pageSize;
+    private final long offsetsPosition;
+
+    private PageIndex(File indexFile, String[] headers, int totalRecords, int pageSize, long offsetsPosition) {
+        this.indexFile = indexFile;
+        this.headers = headers;
+        this.totalRecords = totalRecords;
+        this.pageSize = pageSize;
+        this.offsetsPosition = offsetsPosition;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public int getTotalRecords() {
+        return totalRecords;
+    }
+
+    public int getTotalPages() {
+        return (totalRecords + pageSize - 1) / pageSize;
+    }
+
+    /**
+     * Returns the byte offset of the first record of the given page,
+     * or -1 if the page is out of range.
+     */
+    public long getPageOffset(int page) throws IOException {
+        if (page < 1 || page > getTotalPages()) {
+            return -1;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+            raf.seek(offsetsPosition + (long) (page - 1) * Long.BYTES);
+            return raf.readLong();
+        }
+    }
+
+    public static File getIndexFile(String resultsFile) {
+        return new File(resultsFile + EXTENSION);
+    }
+
+    /**
+     * Loads the page index of the given result file, building it if needed.
+     */
+    public static PageIndex load(String resultsFile) throws IOException {
+        return CACHE.get(resultsFile, "", () -> readOrBuild(resultsFile));
+    }
+
+    private static PageIndex readOrBuild(String resultsFile) throws IOException {
+        File csv = new File(resultsFile);
+        File indexFile = getIndexFile(resultsFile);
+
+        if (indexFile.exists()) {
+            PageIndex index = read(indexFile, csv);
+            if (index != null) {
+                return index;
+            }
+        }
+
+        build(csv, indexFile);
+        return read(indexFile, csv);
+    }
+
+    private static PageIndex read(File indexFile, File csv) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) {
+            if (!Sidecar.readHeader(raf, MAGIC, VERSION, csv)) {
+                return null;
+            }
+
+            int pageSize = raf.readInt();
+            if (pageSize != Constants.PAGE_SIZE) {
+                return null;
+            }
+            int totalRecords = raf.readInt();
+
+            String[] headers = new String[raf.readInt()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = raf.readUTF();
+            }
+
+            return new PageIndex(indexFile, headers, totalRecords, pageSize, raf.getFilePointer());
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void build(File csv, File indexFile) throws IOException {
+        long csvLength = csv.length();
+        long csvModified = csv.lastModified();
+
+        String[] headers = new String[0];
+        List<Long> offsets = new ArrayList<>();
+        int totalRecords = 0;
+
+        try (InputStream in = new FileInputStream(csv)) {
+            ByteArrayOutputStream headerLine = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            long position = 0;
+            boolean inHeader = true;
+            boolean lineStart = true;
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    if (inHeader) {
+                        if (b == '\n') {
+                            inHeader = false;
+                        } else if (b != '\r') {
+                            headerLine.write(b);
+                        }
+                        continue;
+                    }
+
+                    if (lineStart) {
+                        if (totalRecords % Constants.PAGE_SIZE == 0) {
+                            offsets.add(position);
+                        }
+                        totalRecords++;
+                    }
+                    lineStart = (b == '\n');
+                }
+            }
+
+            if (headerLine.size() > 0) {
+                headers = new String(headerLine.toByteArray(), StandardCharsets.UTF_8).split("\t");
+            }
+        }
+
+        try (DataOutputStream out = Sidecar.create(indexFile, MAGIC, VERSION, csvLength, csvModified)) {
+            out.writeInt(Constants.PAGE_SIZE);
+            out.writeInt(totalRecords);
+
+            out.writeInt(headers.length);
+            for (String header : headers) {
+                out.writeUTF(header);
+            }
+
+            for (Long offset : offsets) {
+                out.writeLong(offset);
+            }
+        }
+        Sidecar.publish(indexFile);
+    }
+}
@@ -0,0 +1,364 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index over a {@link ResultTable}, answering the sorted and filtered queries of the
+ * results of an analysis without scanning them.
+ * <p>
+ * Every column is given a numeric key per row: its value for numeric columns, and for text columns
+ * either the parsed value, when all of them are numbers, or the rank of the value in alphabetical
+ * order. The rows sorted by key are kept per column, so that sorting is a walk over them and range
+ * or equality filters are binary searches. Text filters use an {@link AutocompleteIndex} of the
+ * column. All structures are built on first use.
+ */
+public final class ResultIndex {
+
+    private final ResultTable table;
+    private final long sourceLength;
+    private final long sourceModified;
+
+    private final Map<Integer, Boolean> numeric = new ConcurrentHashMap<>();
+    private final Map<Integer, double[]> dictionaryKeys = new ConcurrentHashMap<>();
+    private final Map<Integer, double[]> keys = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> orders = new ConcurrentHashMap<>();
+    private final Map<Integer, AutocompleteIndex> textIndexes = new ConcurrentHashMap<>();
+
+    private ResultIndex(ResultTable table, long sourceLength, long sourceModified) {
+        this.table = table;
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+    }
+
+    /**
+     * Loads the index of the given result file.
+     *
+     * @return the index, or {@code null} if the result file cannot be stored in columns
+     */
+    public static ResultIndex load(String resultsFile) throws IOException {
+        File csv = new File(resultsFile);
+        long sourceLength = csv.length();
+        long sourceModified = csv.lastModified();
+        ResultTable table = ResultTable.load(resultsFile);
+        return table == null ? null : new ResultIndex(table, sourceLength, sourceModified);
+    }
+
+    public ResultTable getTable() {
+        return table;
+    }
+
+    /**
+     * Whether the index was built from the current version of the given result file.
+     */
+    public boolean isBuiltFrom(File results) {
+        return results.length() == sourceLength && results.lastModified() == sourceModified;
+    }
+
+    /**
+     * The rows whose value of a column contains the given term, ignoring case.
+     *
+     * @param prefix whether the value must start with the term
+     */
+    public BitSet matching(int column, String term, boolean prefix) {
+        String lowerCaseTerm = term.toLowerCase();
+        AutocompleteIndex index = textIndexes.computeIfAbsent(column, this::buildTextIndex);
+
+        BitSet rows = new BitSet(table.getRowCount());
+        for (int row : index.search(lowerCaseTerm, false, 0)) {
+            // prefix matches come first, so the remaining ones can be skipped
+            if (prefix && !index.getValue(row).toLowerCase().startsWith(lowerCaseTerm)) {
+                break;
+            }
+            rows.set(index.getId(row));
+        }
+        return rows;
+    }
+
+    /**
+     * The rows whose value of a numeric column lies in the given range.
+     *
+     * @param min the smallest value, or {@code null} for no lower bound
+     * @param max the largest value, or {@code null} for no upper bound
+     */
+    public BitSet range(int column, Double min, Double max) {
+        BitSet rows = new BitSet(table.getRowCount());
+        if (!isNumeric(column)) {
+            return rows;
+        }
+        double[] columnKeys = getKeys(column);
+        int[] order = getOrder(column);
+        int from = lowerBound(order, columnKeys, min == null ? Double.NEGATIVE_INFINITY : min);
+        int to = upperBound(order, columnKeys, max == null ? Double.POSITIVE_INFINITY : max);
+        for (int i = from; i < to; i++) {
+            rows.set(order[i]);
+        }
+        return rows;
+    }
+
+    /**
+     * The rows whose value of a column is the given one.
+     */
+    public BitSet equalTo(int column, String value) {
+        BitSet rows = new BitSet(table.getRowCount());
+        double key = getKey(column, value);
+        if (Double.isNaN(key)) {
+            return rows;
+        }
+        double[] columnKeys = getKeys(column);
+        int[] order = getOrder(column);
+        int to = upperBound(order, columnKeys, key);
+        for (int i = lowerBound(order, columnKeys, key); i < to; i++) {
+            rows.set(order[i]);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns a page of the selected rows, in file order or sorted by a column. Rows with equal values
+     * keep their file order in both directions, and rows without a value come last in both directions.
+     *
+     * @param rows the selected rows, or {@code null} for all of them
+     * @param sortColumn the column to sort by, or -1 to keep the file order
+     * @param offset the position of the first row of the page among the selected ones
+     * @param limit the maximum number of rows of the page
+     */
+    public int[] select(BitSet rows, int sortColumn, boolean descending, int offset, int limit) {
+        int[] page = new int[Math.max(0, limit)];
+        int count = 0;
+        int skipped = 0;
+
+        if (sortColumn < 0) {
+            for (int row = rows == null ? 0 : rows.nextSetBit(0); row >= 0 && row < table.getRowCount() && count < limit;
+                 row = rows == null ? row + 1 : rows.nextSetBit(row + 1)) {
+                if (skipped++ >= offset) {
+                    page[count++] = row;
+                }
+            }
+            return Arrays.copyOf(page, count);
+        }
+
+        double[] columnKeys = getKeys(sortColumn);
+        int[] order;
+        if (rows != null && (long) rows.cardinality() * 16 < table.getRowCount()) {
+            // few selected rows are sorted on their own, instead of walking the order of all the rows
+            order = rows.stream().toArray();
+            sort(order, columnKeys);
+        } else {
+            order = getOrder(sortColumn);
+        }
+
+        // missing values have NaN keys, which sort after all others
+        int missing = lowerBound(order, columnKeys, Double.NaN);
+        int i = descending ? missing - 1 : 0;
+        while (i >= 0 && i < missing && count < limit) {
+            // walk groups of equal values in reverse, and the rows of each group in file order
+            int groupStart = i;
+            int groupEnd = i + 1;
+            if (descending) {
+                while (groupStart > 0 && Double.compare(columnKeys[order[groupStart - 1]], columnKeys[order[i]]) == 0) {
+                    groupStart--;
+                }
+                groupEnd = i + 1;
+                i = groupStart - 1;
+            } else {
+                i = groupEnd;
+            }
+
+            for (int g = groupStart; g < groupEnd && count < limit; g++) {
+                int row = order[g];
+                if ((rows == null || rows.get(row)) && skipped++ >= offset) {
+                    page[count++] = row;
+                }
+            }
+        }
+        for (int g = missing; g < order.length && count < limit; g++) {
+            int row = order[g];
+            if ((rows == null || rows.get(row)) && skipped++ >= offset) {
+                page[count++] = row;
+            }
+        }
+        return Arrays.copyOf(page, count);
+    }
+
+    private AutocompleteIndex buildTextIndex(int column) {
+        int[] ids = new int[table.getRowCount()];
+        String[] values = new String[ids.length];
+        String[] dictionary = table.getType(column) == ResultTable.DICTIONARY ? getDictionary(column) : null;
+        for (int row = 0; row < ids.length; row++) {
+            ids[row] = row;
+            if (dictionary == null) {
+                values[row] = table.getString(row, column);
+            } else {
+                int code = table.getCode(row, column);
+                values[row] = code < 0 ? null : dictionary[code];
+            }
+        }
+        return AutocompleteIndex.of(ids, values);
+    }
+
+    private String[] getDictionary(int column) {
+        String[] dictionary = new String[table.getDictionarySize(column)];
+        for (int code = 0; code < dictionary.length; code++) {
+            dictionary[code] = table.getDictionaryValue(column, code);
+        }
+        return dictionary;
+    }
+
+    private boolean isNumeric(int column) {
+        if (table.getType(column) != ResultTable.DICTIONARY) {
+            return true;
+        }
+        return numeric.computeIfAbsent(column, c -> {
+            for (int code = 0; code < table.getDictionarySize(c); code++) {
+                if (parse(table.getDictionaryValue(c, code)) == null) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private static Double parse(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The key of a value of a column, or NaN if no row can hold it.
+     */
+    private double getKey(int column, String value) {
+        if (table.getType(column) != ResultTable.DICTIONARY || isNumeric(column)) {
+            Double parsed = parse(value);
+            return parsed == null ? Double.NaN : parsed;
+        }
+        for (int code = 0; code < table.getDictionarySize(column); code++) {
+            if (table.getDictionaryValue(column, code).equals(value)) {
+                return getDictionaryKeys(column)[code];
+            }
+        }
+        return Double.NaN;
+    }
+
+    private double[] getKeys(int column) {
+        return keys.computeIfAbsent(column, c -> {
+            double[] columnKeys = new double[table.getRowCount()];
+            double[] codeKeys = table.getType(c) == ResultTable.DICTIONARY ? getDictionaryKeys(c) : null;
+            for (int row = 0; row < columnKeys.length; row++) {
+                if (table.getType(c) == ResultTable.INT) {
+                    columnKeys[row] = table.getInt(row, c);
+                } else if (table.getType(c) == ResultTable.DOUBLE) {
+                    columnKeys[row] = table.getDouble(row, c);
+                } else {
+                    int code = table.getCode(row, c);
+                    // missing values are kept last by select
+                    columnKeys[row] = code < 0 ? Double.NaN : codeKeys[code];
+                }
+            }
+            return columnKeys;
+        });
+    }
+
+    /**
+     * Keys of the values of a text column: the values themselves if they are all numbers, their
+     * alphabetical ranks otherwise.
+     */
+    private double[] getDictionaryKeys(int column) {
+        return dictionaryKeys.computeIfAbsent(column, c -> {
+            String[] dictionary = getDictionary(c);
+            double[] codeKeys = new double[dictionary.length];
+            if (isNumeric(c)) {
+                for (int code = 0; code < dictionary.length; code++) {
+                    codeKeys[code] = Double.parseDouble(dictionary[code]);
+                }
+                return codeKeys;
+            }
+
+            Integer[] codes = new Integer[dictionary.length];
+            for (int code = 0; code < codes.length; code++) {
+                codes[code] = code;
+            }
+            Arrays.sort(codes, (a, b) -> dictionary[a].compareTo(dictionary[b]));
+            for (int rank = 0; rank < codes.length; rank++) {
+                codeKeys[codes[rank]] = rank;
+            }
+            return codeKeys;
+        });
+    }
+
+    private int[] getOrder(int column) {
+        return orders.computeIfAbsent(column, c -> {
+            int[] order = new int[table.getRowCount()];
+            for (int row = 0; row < order.length; row++) {
+                order[row] = row;
+            }
+            sort(order, getKeys(c));
+            return order;
+        });
+    }
+
+    /**
+     * Stable merge sort of rows by their keys.
+     */
+    private static void sort(int[] rows, double[] keys) {
+        int[] buffer = new int[rows.length];
+        int[] from = rows;
+        int[] to = buffer;
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int start = 0; start < rows.length; start += 2 * width) {
+                int middle = Math.min(start + width, rows.length);
+                int end = Math.min(start + 2 * width, rows.length);
+                int i = start;
+                int j = middle;
+                for (int k = start; k < end; k++) {
+                    if (i < middle && (j >= end || Double.compare(keys[from[i]], keys[from[j]]) <= 0)) {
+                        to[k] = from[i++];
+                    } else {
+                        to[k] = from[j++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != rows) {
+            System.arraycopy(from, 0, rows, 0, rows.length);
+        }
+    }
+
+    private static int lowerBound(int[] order, double[] keys, double key) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(keys[order[middle]], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(int[] order, double[] keys, double key) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(keys[order[middle]], key) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,368 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+
+import athenarc.imsi.sdl.config.Constants;
+
+/**
+ * Columnar binary copy of a tab-separated result file, read through memory-mapping.
+ * <p>
+ * Every column is stored in one of three ways: as 32-bit integers or 64-bit doubles when all its
+ * values print back exactly as in the result file, or otherwise as 32-bit codes into a dictionary of
+ * its distinct values, in order of first appearance. A footer at the end of the file holds the number
+ * of rows, the headers and the position of every column; the last eight bytes point to the footer.
+ */
+public final class ResultTable {
+
+    public static final String EXTENSION = ".col";
+
+    public static final byte INT = 1;
+    public static final byte DOUBLE = 2;
+    public static final byte DICTIONARY = 3;
+
+    private static final int MAGIC = 0x52544231;
+    private static final int VERSION = 1;
+
+    private static final SidecarCache<ResultTable> CACHE = new SidecarCache<>(Constants.MAX_CACHED_RESULT_TABLES);
+
+    // code of a missing value in dictionary columns
+    private static final int MISSING = -1;
+
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final String[] headers;
+    private final byte[] types;
+    private final int[] dataPositions;
+    private final int[] dictionaryPositions;
+    private final int[] dictionarySizes;
+
+    private ResultTable(ByteBuffer buffer, int rowCount, String[] headers, byte[] types, int[] dataPositions,
+                        int[] dictionaryPositions, int[] dictionarySizes) {
+        this.buffer = buffer;
+        this.rowCount = rowCount;
+        this.headers = headers;
+        this.types = types;
+        this.dataPositions = dataPositions;
+        this.dictionaryPositions = dictionaryPositions;
+        this.dictionarySizes = dictionarySizes;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public int getColumnCount() {
+        return headers.length;
+    }
+
+    /**
+     * Index of the column with the given header, or -1 if there is none.
+     */
+    public int getColumn(String header) {
+        for (int column = 0; column < headers.length; column++) {
+            if (headers[column].equals(header)) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    public byte getType(int column) {
+        return types[column];
+    }
+
+    public int getInt(int row, int column) {
+        return buffer.getInt(dataPositions[column] + row * Integer.BYTES);
+    }
+
+    public double getDouble(int row, int column) {
+        return buffer.getDouble(dataPositions[column] + row * Double.BYTES);
+    }
+
+    /**
+     * Dictionary code of a value of a dictionary column, or -1 if the row has no such value.
+     */
+    public int getCode(int row, int column) {
+        return buffer.getInt(dataPositions[column] + row * Integer.BYTES);
+    }
+
+    /**
+     * Number of distinct values of a dictionary column.
+     */
+    public int getDictionarySize(int column) {
+        return dictionarySizes[column];
+    }
+
+    public String getDictionaryValue(int column, int code) {
+        int offsets = dictionaryPositions[column];
+        int bytes = offsets + (dictionarySizes[column] + 1) * Integer.BYTES;
+        int from = buffer.getInt(offsets + code * Integer.BYTES);
+        int to = buffer.getInt(offsets + (code + 1) * Integer.BYTES);
+
+        byte[] value = new byte[to - from];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(bytes + from);
+        slice.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a key of a value that is equal for two rows of the column exactly when their values are.
+     */
+    public long getKey(int row, int column) {
+        return types[column] == DOUBLE ? Double.doubleToLongBits(getDouble(row, column)) : getInt(row, column);
+    }
+
+    /**
+     * Returns a value as it is written in the result file, or {@code null} if the row has no such value.
+     */
+    public String getString(int row, int column) {
+        switch (types[column]) {
+            case INT:
+                return Integer.toString(getInt(row, column));
+            case DOUBLE:
+                return Double.toString(getDouble(row, column));
+            default:
+                int code = getCode(row, column);
+                return code == MISSING ? null : getDictionaryValue(column, code);
+        }
+    }
+
+    public static File getTableFile(String resultsFile) {
+        return new File(resultsFile + EXTENSION);
+    }
+
+    /**
+     * Loads the table of the given result file, building it if needed.
+     *
+     * @return the table, or {@code null} if the result file cannot be stored in columns
+     */
+    public static ResultTable load(String resultsFile) throws IOException {
+        return CACHE.get(resultsFile, "", () -> readOrBuild(resultsFile));
+    }
+
+    private static ResultTable readOrBuild(String resultsFile) throws IOException {
+        File csv = new File(resultsFile);
+        File tableFile = getTableFile(resultsFile);
+
+        if (tableFile.exists()) {
+            ResultTable table = read(tableFile, csv);
+            if (table != null) {
+                return table;
+            }
+        }
+
+        if (!build(csv, tableFile)) {
+            return null;
+        }
+        return read(tableFile, csv);
+    }
+
+    private static ResultTable read(File tableFile, File csv) throws IOException {
+        ByteBuffer buffer = Sidecar.map(tableFile, MAGIC, VERSION, csv, Sidecar.HEADER_SIZE + Long.BYTES);
+        if (buffer == null) {
+            return null;
+        }
+
+        ByteBuffer footer = buffer.duplicate();
+        footer.position((int) buffer.getLong(buffer.limit() - Long.BYTES));
+        int rowCount = footer.getInt();
+        int columnCount = footer.getInt();
+
+        String[] headers = new String[columnCount];
+        byte[] types = new byte[columnCount];
+        int[] dataPositions = new int[columnCount];
+        int[] dictionaryPositions = new int[columnCount];
+        int[] dictionarySizes = new int[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            byte[] header = new byte[footer.getInt()];
+            footer.get(header);
+            headers[column] = new String(header, StandardCharsets.UTF_8);
+            types[column] = footer.get();
+            dataPositions[column] = footer.getInt();
+            dictionaryPositions[column] = footer.getInt();
+            dictionarySizes[column] = footer.getInt();
+        }
+
+        return new ResultTable(buffer, rowCount, headers, types, dataPositions, dictionaryPositions, dictionarySizes);
+    }
+
+    private static CSVReader open(File csv) throws IOException {
+        Reader reader = Files.newBufferedReader(csv.toPath(), StandardCharsets.UTF_8);
+        return new CSVReaderBuilder(reader)
+            .withCSVParser(new CSVParserBuilder().withSeparator('\t').build())
+            .build();
+    }
+
+    private static boolean isInt(String value) {
+        try {
+            return Integer.toString(Integer.parseInt(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isDouble(String value) {
+        try {
+            return Double.toString(Double.parseDouble(value)).equals(value);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the table of a result file in two passes: the first finds the number of rows and the
+     * type of every column, the second stores the values.
+     *
+     * @return false if the result file cannot be stored in columns
+     */
+    private static boolean build(File csv, File tableFile) throws IOException {
+        long csvLength = csv.length();
+        long csvModified = csv.lastModified();
+
+        String[] headers;
+        boolean[] ints;
+        boolean[] doubles;
+        int rowCount = 0;
+        try (CSVReader reader = open(csv)) {
+            headers = reader.readNext();
+            if (headers == null) {
+                headers = new String[0];
+            }
+            ints = new boolean[headers.length];
+            doubles = new boolean[headers.length];
+            Arrays.fill(ints, true);
+            Arrays.fill(doubles, true);
+
+            String[] attributes;
+            while ((attributes = reader.readNext()) != null) {
+                // rows with more values than headers cannot be paired with them
+                if (attributes.length > headers.length) {
+                    return false;
+                }
+                for (int column = 0; column < headers.length; column++) {
+                    String value = column < attributes.length ? attributes[column] : null;
+                    ints[column] &= value != null && isInt(value);
+                    doubles[column] &= value != null && isDouble(value);
+                }
+                rowCount++;
+            }
+        }
+
+        // the table is mapped as a whole, so it must fit in a single buffer
+        long estimatedSize = (long) rowCount * headers.length * Double.BYTES + csvLength;
+        if (estimatedSize > Integer.MAX_VALUE / 2) {
+            return false;
+        }
+
+        byte[] types = new byte[headers.length];
+        int[] intValues = new int[headers.length == 0 ? 0 : rowCount * headers.length];
+        double[][] doubleValues = new double[headers.length][];
+        List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        for (int column = 0; column < headers.length; column++) {
+            types[column] = ints[column] ? INT : doubles[column] ? DOUBLE : DICTIONARY;
+            if (types[column] == DOUBLE) {
+                doubleValues[column] = new double[rowCount];
+            }
+            dictionaries.add(types[column] == DICTIONARY ? new HashMap<>() : null);
+        }
+        List<List<String>> dictionaryValues = new ArrayList<>();
+        for (int column = 0; column < headers.length; column++) {
+            dictionaryValues.add(new ArrayList<>());
+        }
+
+        try (CSVReader reader = open(csv)) {
+            reader.readNext();
+            String[] attributes;
+            int row = 0;
+            while (row < rowCount && (attributes = reader.readNext()) != null) {
+                for (int column = 0; column < headers.length; column++) {
+                    String value = column < attributes.length ? attributes[column] : null;
+                    int cell = column * rowCount + row;
+                    if (types[column] == INT) {
+                        intValues[cell] = Integer.parseInt(value);
+                    } else if (types[column] == DOUBLE) {
+                        doubleValues[column][row] = Double.parseDouble(value);
+                    } else if (value == null) {
+                        intValues[cell] = MISSING;
+                    } else {
+                        List<String> values = dictionaryValues.get(column);
+                        intValues[cell] = dictionaries.get(column).computeIfAbsent(value, v -> {
+                            values.add(v);
+                            return values.size() - 1;
+                        });
+                    }
+                }
+                row++;
+            }
+        }
+
+        int[] dataPositions = new int[headers.length];
+        int[] dictionaryPositions = new int[headers.length];
+        try (DataOutputStream out = Sidecar.create(tableFile, MAGIC, VERSION, csvLength, csvModified)) {
+            for (int column = 0; column < headers.length; column++) {
+                dataPositions[column] = out.size();
+                if (types[column] == DOUBLE) {
+                    for (double value : doubleValues[column]) {
+                        out.writeDouble(value);
+                    }
+                    continue;
+                }
+                for (int row = 0; row < rowCount; row++) {
+                    out.writeInt(intValues[column * rowCount + row]);
+                }
+
+                if (types[column] == DICTIONARY) {
+                    List<String> values = dictionaryValues.get(column);
+                    byte[][] encoded = new byte[values.size()][];
+                    dictionaryPositions[column] = out.size();
+                    int offset = 0;
+                    out.writeInt(offset);
+                    for (int code = 0; code < encoded.length; code++) {
+                        encoded[code] = values.get(code).getBytes(StandardCharsets.UTF_8);
+                        offset += encoded[code].length;
+                        out.writeInt(offset);
+                    }
+                    for (byte[] value : encoded) {
+                        out.write(value);
+                    }
+                }
+            }
+
+            long footerPosition = out.size();
+            out.writeInt(rowCount);
+            out.writeInt(headers.length);
+            for (int column = 0; column < headers.length; column++) {
+                byte[] header = headers[column].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(header.length);
+                out.write(header);
+                out.writeByte(types[column]);
+                out.writeInt(dataPositions[column]);
+                out.writeInt(dictionaryPositions[column]);
+                out.writeInt(dictionaryValues.get(column).size());
+            }
+            out.writeLong(footerPosition);
+        }
+        Sidecar.publish(tableFile);
+        return true;
+    }
+}
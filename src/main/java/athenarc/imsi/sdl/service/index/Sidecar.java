@@ -0,0 +1,75 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Index files kept next to a result file. They start with a magic number, a format version and the
+ * length and modification time of the result file, so that an index is rebuilt once its result file
+ * is rewritten, and are written to a temporary file first, so that readers never see a partial index.
+ */
+final class Sidecar {
+
+    static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES;
+
+    private Sidecar() {
+    }
+
+    /**
+     * Maps an index, or returns null if it is smaller than {@code minSize}, of another format or stale.
+     */
+    static ByteBuffer map(File indexFile, int magic, int version, File source, int minSize) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Math.max(minSize, HEADER_SIZE) || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        boolean current = buffer.getInt(0) == magic && buffer.getInt(Integer.BYTES) == version
+            && buffer.getLong(2 * Integer.BYTES) == source.length()
+            && buffer.getLong(2 * Integer.BYTES + Long.BYTES) == source.lastModified();
+        return current ? buffer : null;
+    }
+
+    /**
+     * Reads the header of an index and returns whether it is of the given format and current.
+     */
+    static boolean readHeader(DataInput in, int magic, int version, File source) throws IOException {
+        return in.readInt() == magic && in.readInt() == version
+            && in.readLong() == source.length() && in.readLong() == source.lastModified();
+    }
+
+    /**
+     * Opens a temporary file for an index and writes its header, with the length and modification time
+     * of the result file taken before it was read; the index is put in place by {@link #publish}.
+     */
+    static DataOutputStream create(File indexFile, int magic, int version, long sourceLength, long sourceModified) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary(indexFile))));
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeLong(sourceLength);
+        out.writeLong(sourceModified);
+        return out;
+    }
+
+    static void publish(File indexFile) throws IOException {
+        Files.move(temporary(indexFile).toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static File temporary(File indexFile) {
+        return new File(indexFile.getPath() + ".tmp");
+    }
+}
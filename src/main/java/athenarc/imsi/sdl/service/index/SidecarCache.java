@@ -0,0 +1,57 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The loaded indexes of the most recently used result files. An index is loaded by one thread at a time
+ * per result file, without blocking the loads of other files, and loaded again once its result file changes.
+ */
+final class SidecarCache<T> {
+
+    interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private static final class Entry<T> {
+        private boolean loaded;
+        private long length;
+        private long modified;
+        private T value;
+    }
+
+    private final Map<String, Entry<T>> entries;
+
+    SidecarCache(int capacity) {
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Returns the index of a result file, loading it if it is not cached or its result file has changed.
+     *
+     * @param key identifies the index among those of the same result file
+     */
+    T get(String resultsFile, String key, Loader<T> loader) throws IOException {
+        File source = new File(resultsFile);
+        Entry<T> entry = entries.computeIfAbsent(resultsFile + "\t" + key, k -> new Entry<>());
+        synchronized (entry) {
+            long length = source.length();
+            long modified = source.lastModified();
+            if (!entry.loaded || entry.length != length || entry.modified != modified) {
+                entry.value = loader.load();
+                entry.loaded = true;
+                entry.length = length;
+                entry.modified = modified;
+            }
+            return entry.value;
+        }
+    }
+}
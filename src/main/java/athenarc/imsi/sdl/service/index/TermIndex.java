@@ -0,0 +1,202 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.util.TsvCursor;
+
+/**
+ * Membership index over the lower-case values of one column of a node file, used to validate
+ * batches of terms without scanning the file.
+ * <p>
+ * The index is the sorted array of the 64-bit hashes of the distinct values, so that looking up
+ * a term is a binary search. Two distinct values collide with a probability of about
+ * {@code n / 2^64}, small enough to be ignored for validation. The index is stored under
+ * {@code DATA_DIR/<dataset>/index/} and rebuilt whenever the node file changes.
+ */
+public final class TermIndex {
+
+    public static final String EXTENSION = ".terms";
+
+    private static final int MAGIC = 0x5445524d;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 32;
+
+    private static final Map<String, TermIndex> LOADED = new ConcurrentHashMap<>();
+
+    private final long sourceLength;
+    private final long sourceModified;
+    private final long[] hashes;
+
+    private TermIndex(long sourceLength, long sourceModified, long[] hashes) {
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Loads the index of the column of a node file whose name starts with the given field,
+     * (re)building it if it is missing or stale.
+     *
+     * @throws IllegalArgumentException if no column of the node file starts with the field
+     */
+    public static TermIndex load(String dataset, String entity, String field) throws IOException {
+        File nodes = new File(Constants.DATA_DIR + dataset + "/nodes/" + entity + ".csv");
+        return load(nodes, new File(Constants.DATA_DIR + dataset + "/" + AttributeIndex.DIR), entity, field);
+    }
+
+    static TermIndex load(File nodes, File indexDir, String entity, String field) throws IOException {
+        // loaded indexes are kept by field, so that a warm lookup does not read the header of the node file
+        String key = new File(indexDir, entity).getPath() + "\t" + field;
+        TermIndex index = LOADED.get(key);
+        if (index != null && index.isBuiltFrom(nodes)) {
+            return index;
+        }
+
+        synchronized (TermIndex.class) {
+            // files are named after the position of the column, which may not be a safe file name
+            int column = findColumn(nodes, field);
+            File indexFile = new File(indexDir, entity + "." + column + EXTENSION);
+            index = indexFile.exists() ? read(indexFile) : null;
+            if (index == null || !index.isBuiltFrom(nodes)) {
+                index = build(nodes, column);
+                index.write(indexFile);
+            }
+            LOADED.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Drops the loaded indexes of a dataset, e.g. after it has been re-uploaded.
+     */
+    public static void invalidate(String dataset) {
+        String prefix = Constants.DATA_DIR + dataset + "/" + AttributeIndex.DIR + "/";
+        LOADED.keySet().removeIf(path -> path.startsWith(prefix));
+    }
+
+    private boolean isBuiltFrom(File nodes) {
+        return nodes.length() == sourceLength && nodes.lastModified() == sourceModified;
+    }
+
+    public int size() {
+        return hashes.length;
+    }
+
+    /**
+     * Whether the column holds the given value, ignoring case.
+     */
+    public boolean contains(String term) {
+        return Arrays.binarySearch(hashes, hash(term)) >= 0;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a value lower-cased by {@link String#toLowerCase()}, followed by a final
+     * avalanche step. The whole value is lower-cased, as the validated terms are, since some letters
+     * depend on their context, e.g. the Greek sigma at the end of a word.
+     */
+    static long hash(String value) {
+        String lowerCase = value.toLowerCase();
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < lowerCase.length(); i++) {
+            h ^= lowerCase.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int findColumn(File nodes, String field) throws IOException {
+        try (TsvCursor cursor = TsvCursor.open(nodes)) {
+            String[] columnNames = cursor.next() ? cursor.getStrings() : new String[0];
+            for (int column = 0; column < columnNames.length; column++) {
+                if (columnNames[column].startsWith(field)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException("Unknown field: " + field);
+        }
+    }
+
+    private static TermIndex build(File nodes, int column) throws IOException {
+        long sourceLength = nodes.length();
+        long sourceModified = nodes.lastModified();
+
+        long[] hashes = new long[1024];
+        int count = 0;
+        try (TsvCursor cursor = TsvCursor.open(nodes)) {
+            cursor.next();
+            while (cursor.next()) {
+                if (column >= cursor.getFieldCount()) {
+                    continue;
+                }
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, count * 2);
+                }
+                hashes[count++] = hash(cursor.getString(column));
+            }
+        }
+
+        Arrays.sort(hashes, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || hashes[i] != hashes[i - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        return new TermIndex(sourceLength, sourceModified, Arrays.copyOf(hashes, distinct));
+    }
+
+    private void write(File indexFile) throws IOException {
+        indexFile.getParentFile().mkdirs();
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(hashes.length);
+            out.writeInt(0);
+            for (long hash : hashes) {
+                out.writeLong(hash);
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static TermIndex read(File indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long sourceLength = buffer.getLong();
+            long sourceModified = buffer.getLong();
+            int count = buffer.getInt();
+            buffer.getInt();
+            if (channel.size() != HEADER_BYTES + 8L * count) {
+                return null;
+            }
+            long[] hashes = new long[count];
+            buffer.asLongBuffer().get(hashes);
+            return new TermIndex(sourceLength, sourceModified, hashes);
+        }
+    }
+}
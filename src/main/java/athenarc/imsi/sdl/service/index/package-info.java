@@ -0,0 +1,4 @@
+/**
+ * Sidecar indexes over dataset and analysis result files.
+ */
+package athenarc.imsi.sdl.service.index;
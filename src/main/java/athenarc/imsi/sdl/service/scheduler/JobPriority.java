@@ -0,0 +1,15 @@
+package athenarc.imsi.sdl.service.scheduler;
+
+/**
+ * Priority classes of analysis jobs; queued jobs of a higher class are started first.
+ */
+public enum JobPriority {
+    HIGH, NORMAL, LOW;
+
+    /**
+     * Parses a priority case-insensitively, defaulting to {@link #NORMAL} when none is given.
+     */
+    public static JobPriority parse(String value) {
+        return value == null || value.isEmpty() ? NORMAL : valueOf(value.toUpperCase());
+    }
+}
@@ -0,0 +1,255 @@
+package athenarc.imsi.sdl.service.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.JobQueueFullException;
+
+/**
+ * Runs analysis jobs with bounded concurrency, globally and per dataset, queueing the rest.
+ * <p>
+ * Queued jobs are started by priority class and then in submission order, skipping the jobs
+ * whose dataset already runs its maximum number of jobs. When the queue is full, new jobs that
+ * cannot start right away are rejected with a {@link JobQueueFullException}. Every job carries an
+ * estimated cost, which is turned into a duration using the throughput observed on the jobs
+ * finished so far, so that queued and running jobs can report an estimated time of completion.
+ */
+@Service
+public class JobScheduler {
+
+    // weight of the most recent job in the moving average of the throughput
+    private static final double THROUGHPUT_SMOOTHING = 0.2;
+
+    private final Logger log = LoggerFactory.getLogger(JobScheduler.class);
+
+    private final int maxConcurrentJobs;
+    private final int maxJobsPerDataset;
+    private final int queueCapacity;
+
+    private final PriorityQueue<Job> queue = new PriorityQueue<>();
+    private final Map<String, Job> jobs = new HashMap<>();
+    private final Map<String, Integer> runningPerDataset = new HashMap<>();
+    private final List<Job> running = new ArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService executor;
+
+    // estimated cost processed per second
+    private double throughput;
+
+    public JobScheduler() {
+        this(Constants.MAX_CONCURRENT_JOBS, Constants.MAX_CONCURRENT_JOBS_PER_DATASET, Constants.JOB_QUEUE_CAPACITY,
+            Constants.JOB_INITIAL_THROUGHPUT);
+    }
+
+    JobScheduler(int maxConcurrentJobs, int maxJobsPerDataset, int queueCapacity, double throughput) {
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.maxJobsPerDataset = maxJobsPerDataset;
+        this.queueCapacity = queueCapacity;
+        this.throughput = throughput;
+
+        // jobs are only handed to the executor when a slot is free, so it never queues them itself
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "analysis-job-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newCachedThreadPool(factory);
+    }
+
+    /**
+     * Position and estimated completion of a job that is queued or running.
+     */
+    public static final class JobStatus {
+        private final boolean queued;
+        private final int queuePosition;
+        private final long etaSeconds;
+
+        JobStatus(boolean queued, int queuePosition, long etaSeconds) {
+            this.queued = queued;
+            this.queuePosition = queuePosition;
+            this.etaSeconds = etaSeconds;
+        }
+
+        public boolean isQueued() {
+            return queued;
+        }
+
+        /**
+         * Number of queued jobs that will be started before this one, or 0 for a running job.
+         */
+        public int getQueuePosition() {
+            return queuePosition;
+        }
+
+        /**
+         * Estimated seconds until the job completes.
+         */
+        public long getEtaSeconds() {
+            return etaSeconds;
+        }
+    }
+
+    private final class Job implements Comparable<Job> {
+        final String id;
+        final String dataset;
+        final JobPriority priority;
+        final double cost;
+        final long order;
+        final Runnable task;
+        long startedAt;
+
+        Job(String id, String dataset, JobPriority priority, double cost, Runnable task) {
+            this.id = id;
+            this.dataset = dataset;
+            this.priority = priority;
+            this.cost = cost;
+            this.order = sequence.getAndIncrement();
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int c = priority.compareTo(other.priority);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+
+        double estimatedSeconds() {
+            return cost / throughput;
+        }
+
+        double remainingSeconds(long now) {
+            return Math.max(0.0, estimatedSeconds() - (now - startedAt) / 1000.0);
+        }
+    }
+
+    /**
+     * Queues a job, starting it immediately if there is a free slot for its dataset.
+     *
+     * @param cost the estimated cost of the job, in the units of the throughput
+     * @throws JobQueueFullException if the job has to wait and the queue is full
+     */
+    public synchronized void submit(String id, String dataset, JobPriority priority, double cost, Runnable task) {
+        // the queued jobs are all waiting for a slot, so a job with a free slot starts right away and never queues
+        if (!hasFreeSlot(dataset) && queue.size() >= queueCapacity) {
+            throw new JobQueueFullException();
+        }
+        Job job = new Job(id, dataset, priority, cost, task);
+        jobs.put(id, job);
+        queue.add(job);
+        log.debug("Queued analysis task " + id + " on " + dataset + " with " + priority + " priority and cost " + cost);
+        dispatch();
+    }
+
+    /**
+     * The status of a queued or running job, or null if the scheduler does not know it (any more).
+     */
+    public synchronized JobStatus getStatus(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (running.contains(job)) {
+            return new JobStatus(false, 0, Math.round(job.remainingSeconds(now)));
+        }
+
+        // the work ahead of the job is shared by all slots; ignoring the per-dataset limits is good enough here
+        double ahead = 0.0;
+        for (Job other : running) {
+            ahead += other.remainingSeconds(now);
+        }
+        int position = 0;
+        for (Job other : queue) {
+            if (other.compareTo(job) < 0) {
+                ahead += other.estimatedSeconds();
+                position++;
+            }
+        }
+        return new JobStatus(true, position, Math.round(ahead / maxConcurrentJobs + job.estimatedSeconds()));
+    }
+
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningJobs() {
+        return running.size();
+    }
+
+    private boolean hasFreeSlot(String dataset) {
+        return running.size() < maxConcurrentJobs && runningPerDataset.getOrDefault(dataset, 0) < maxJobsPerDataset;
+    }
+
+    /**
+     * Starts queued jobs while there are free slots, in priority order.
+     */
+    private void dispatch() {
+        if (running.size() >= maxConcurrentJobs) {
+            return;
+        }
+
+        List<Job> candidates = new ArrayList<>(queue);
+        candidates.sort(null);
+        Iterator<Job> iter = candidates.iterator();
+        while (running.size() < maxConcurrentJobs && iter.hasNext()) {
+            Job job = iter.next();
+            int datasetJobs = runningPerDataset.getOrDefault(job.dataset, 0);
+            if (datasetJobs >= maxJobsPerDataset) {
+                continue;
+            }
+
+            queue.remove(job);
+            running.add(job);
+            runningPerDataset.put(job.dataset, datasetJobs + 1);
+            job.startedAt = System.currentTimeMillis();
+            executor.execute(() -> execute(job));
+        }
+    }
+
+    private void execute(Job job) {
+        try {
+            log.debug("Starting analysis task " + job.id);
+            job.task.run();
+        } catch (RuntimeException e) {
+            log.error("Analysis task " + job.id + " failed", e);
+        } finally {
+            finished(job);
+        }
+    }
+
+    private synchronized void finished(Job job) {
+        running.remove(job);
+        jobs.remove(job.id);
+        runningPerDataset.merge(job.dataset, -1, Integer::sum);
+        runningPerDataset.remove(job.dataset, 0);
+
+        double seconds = (System.currentTimeMillis() - job.startedAt) / 1000.0;
+        if (job.cost > 0 && seconds > 0) {
+            throughput = (1 - THROUGHPUT_SMOOTHING) * throughput + THROUGHPUT_SMOOTHING * (job.cost / seconds);
+        }
+        dispatch();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Admission control and scheduling of analysis jobs.
+ */
+package athenarc.imsi.sdl.service.scheduler;
@@ -0,0 +1,222 @@
+package athenarc.imsi.sdl.service.status;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PreDestroy;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import athenarc.imsi.sdl.config.Constants;
+
+/**
+ * Follows the log files of jobs, reading only the bytes appended since the previous read.
+ * <p>
+ * For every tracked job the offset up to which its {@code log.out} was read is kept with the
+ * state parsed so far. The directory of the job is watched with a {@link WatchService}, so the log
+ * is only read again after it has been modified; if a directory cannot be watched its log is
+ * checked for new bytes on every request instead. The least recently used jobs stop being tracked
+ * once {@link Constants#MAX_TRACKED_JOB_LOGS} are.
+ */
+@Service
+public class JobLogTracker {
+
+    private static final String LOGFILE = "log.out";
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final Logger log = LoggerFactory.getLogger(JobLogTracker.class);
+
+    private final File baseDir;
+    private final Map<String, TrackedLog> logs;
+    private final WatchService watcher;
+
+    public JobLogTracker() {
+        this(new File(Constants.BASE_PATH), Constants.MAX_TRACKED_JOB_LOGS);
+    }
+
+    public JobLogTracker(File baseDir, int maxTracked) {
+        this.baseDir = baseDir;
+        this.logs = Collections.synchronizedMap(new LinkedHashMap<String, TrackedLog>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TrackedLog> eldest) {
+                if (size() > maxTracked) {
+                    eldest.getValue().stopWatching();
+                    return true;
+                }
+                return false;
+            }
+        });
+        this.watcher = newWatcher();
+    }
+
+    private WatchService newWatcher() {
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(() -> watch(service), "job-log-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            return service;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Job logs cannot be watched, they will be checked on every request: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Progress of a job's log and the offset up to which it was read.
+     */
+    private final class TrackedLog {
+        final String id;
+        final File file;
+        JobState state;
+        long offset;
+        // bytes of a line that was not terminated yet, e.g. the final exit code
+        byte[] pending;
+        volatile boolean modified = true;
+        WatchKey key;
+
+        TrackedLog(String id, File file) {
+            this.id = id;
+            this.file = file;
+            reset();
+        }
+
+        void reset() {
+            state = new JobState(id, null, null);
+            offset = 0;
+            pending = new byte[0];
+        }
+
+        void stopWatching() {
+            if (key != null) {
+                key.cancel();
+            }
+        }
+    }
+
+    /**
+     * The last line, the number of stages and the completed stages of a job's log, as returned by
+     * {@link JobState#getLogInfo()}.
+     */
+    public Document getLogInfo(String id) throws IOException {
+        TrackedLog tracked;
+        synchronized (logs) {
+            tracked = logs.get(id);
+            if (tracked == null) {
+                tracked = new TrackedLog(id, new File(new File(baseDir, id), LOGFILE));
+                if (watcher != null) {
+                    try {
+                        tracked.key = tracked.file.getParentFile().toPath().register(watcher,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+                    } catch (IOException e) {
+                        log.debug("Cannot watch the log of " + id + ": " + e.getMessage());
+                    }
+                }
+                logs.put(id, tracked);
+            }
+        }
+
+        synchronized (tracked) {
+            if (tracked.modified || tracked.key == null) {
+                tracked.modified = false;
+                readAppended(tracked);
+            }
+
+            Document info = tracked.state.getLogInfo();
+            if (tracked.pending.length > 0) {
+                info.put("lastLine", new String(tracked.pending, StandardCharsets.UTF_8));
+            }
+            return info;
+        }
+    }
+
+    /**
+     * Offset up to which the log of a job has been read, or -1 if it is not tracked.
+     */
+    long getOffset(String id) {
+        TrackedLog tracked = logs.get(id);
+        return tracked == null ? -1 : tracked.offset;
+    }
+
+    private void readAppended(TrackedLog tracked) throws IOException {
+        try (FileChannel channel = FileChannel.open(tracked.file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < tracked.offset) {
+                // the log was replaced, start over
+                tracked.reset();
+            }
+            channel.position(tracked.offset);
+
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            line.write(tracked.pending);
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            while (channel.read(buffer) > 0) {
+                byte[] bytes = buffer.array();
+                int start = 0;
+                for (int i = 0; i < buffer.position(); i++) {
+                    if (bytes[i] == '\n') {
+                        line.write(bytes, start, i - start);
+                        tracked.state.append(toLine(line));
+                        line.reset();
+                        start = i + 1;
+                    }
+                }
+                line.write(bytes, start, buffer.position() - start);
+                buffer.clear();
+            }
+            tracked.offset = channel.position();
+            tracked.pending = line.toByteArray();
+        }
+    }
+
+    private static String toLine(ByteArrayOutputStream bytes) throws IOException {
+        String line = bytes.toString(StandardCharsets.UTF_8.name());
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || (context instanceof Path && ((Path) context).toString().equals(LOGFILE))) {
+                        TrackedLog tracked = logs.get(dir.getFileName().toString());
+                        if (tracked != null) {
+                            tracked.modified = true;
+                        }
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package athenarc.imsi.sdl.service.status;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+
+/**
+ * Progress of a job, updated line by line as its log is written.
+ * <p>
+ * Every line of the form {@code stage \t step \t message} whose stage differs from the previous one
+ * starts a new stage, and a stage is completed by a {@code Completed} message; the exit code line only
+ * becomes the last line. {@link #getLogInfo()} returns these without reading the log file.
+ */
+public final class JobState {
+
+    private final String id;
+    private final List<String> analyses;
+    private final String description;
+
+    private String lastLine = "";
+    private int stageNum;
+    private String prevStage = "";
+    private final List<String> completedStages = new ArrayList<>();
+    private boolean finished;
+    private long updatedAt = System.currentTimeMillis();
+
+    public JobState(String id, List<String> analyses, String description) {
+        this.id = id;
+        this.analyses = analyses;
+        this.description = description;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<String> getAnalyses() {
+        return analyses;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    synchronized void append(String line) {
+        lastLine = line;
+        updatedAt = System.currentTimeMillis();
+
+        String[] tokens = line.split("\\t");
+        if (tokens.length != 3) {
+            // the exit code is the last line of the log
+            finished |= tokens[0].equals("Exit Code");
+            return;
+        }
+        if (!tokens[0].equals(prevStage)) {
+            prevStage = tokens[0];
+            stageNum++;
+        }
+        if (tokens[2].equals("Completed")) {
+            completedStages.add(tokens[0]);
+        }
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    synchronized long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * The last line, the number of stages and the completed stages of the log.
+     */
+    public synchronized Document getLogInfo() {
+        return new Document()
+            .append("lastLine", lastLine)
+            .append("stageNum", stageNum)
+            .append("completedStages", new ArrayList<>(completedStages));
+    }
+}
@@ -0,0 +1,178 @@
+package athenarc.imsi.sdl.service.status;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import athenarc.imsi.sdl.config.Constants;
+
+/**
+ * Keeps the state of the jobs submitted to this instance in memory, so that their status is answered
+ * without reading their files, and notifies the subscribers of a job whenever its log advances.
+ * <p>
+ * Jobs are registered when submitted and fed the lines their engine writes to the log. Finished jobs
+ * are dropped after {@link Constants#JOB_STATUS_RETENTION_MS}; the status of jobs that are not known
+ * is read from their files.
+ * <p>
+ * Subscribers are notified on their own threads, so that slow ones never hold up the job; updates that
+ * arrive while a subscriber is still being notified are coalesced into a single call with the latest state.
+ */
+@Service
+public class JobStatusRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(JobStatusRegistry.class);
+
+    private final Map<String, JobState> states = new ConcurrentHashMap<>();
+    private final Map<String, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    public JobStatusRegistry() {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "job-status-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = Executors.newCachedThreadPool(factory);
+    }
+
+    JobStatusRegistry(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void register(String id, List<String> analyses, String description) {
+        states.put(id, new JobState(id, analyses, description));
+    }
+
+    public void remove(String id) {
+        states.remove(id);
+        subscribers.remove(id);
+    }
+
+    /**
+     * The state of a job, or null if it is not known to this instance (any more).
+     */
+    public JobState get(String id) {
+        return states.get(id);
+    }
+
+    /**
+     * Records a line written to the log of a job and schedules the notification of its subscribers;
+     * never waits for them.
+     */
+    public void append(String id, String line) {
+        JobState state = states.get(id);
+        if (state == null) {
+            return;
+        }
+        state.append(line);
+
+        List<Subscriber> listeners = subscribers.get(id);
+        if (listeners != null) {
+            for (Subscriber listener : listeners) {
+                listener.signal();
+            }
+        }
+        if (state.isFinished()) {
+            subscribers.remove(id);
+        }
+    }
+
+    /**
+     * Calls the listener on updates of a running job, up to the one that finishes it.
+     *
+     * @return whether the job is known and running; listeners of other jobs are never called
+     */
+    public boolean subscribe(String id, Consumer<JobState> listener) {
+        JobState state = states.get(id);
+        if (state == null || state.isFinished()) {
+            return false;
+        }
+        subscribers.computeIfAbsent(id, key -> new CopyOnWriteArrayList<>()).add(new Subscriber(id, state, listener));
+
+        // the job may have finished in the meantime
+        if (state.isFinished()) {
+            unsubscribe(id, listener);
+            return false;
+        }
+        return true;
+    }
+
+    public void unsubscribe(String id, Consumer<JobState> listener) {
+        List<Subscriber> listeners = subscribers.get(id);
+        if (listeners != null) {
+            listeners.removeIf(subscriber -> subscriber.listener.equals(listener));
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void removeFinishedJobs() {
+        long threshold = System.currentTimeMillis() - Constants.JOB_STATUS_RETENTION_MS;
+        states.values().removeIf(state -> state.isFinished() && state.getUpdatedAt() < threshold);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService) {
+            ((ExecutorService) executor).shutdownNow();
+        }
+    }
+
+    /**
+     * A listener that is called on the executor, at most once at a time, with the latest state of its job.
+     */
+    private final class Subscriber {
+        private final String id;
+        private final JobState state;
+        private final Consumer<JobState> listener;
+
+        // updates not yet passed to the listener; a notification is running while it is positive
+        private final AtomicInteger pending = new AtomicInteger();
+
+        Subscriber(String id, JobState state, Consumer<JobState> listener) {
+            this.id = id;
+            this.state = state;
+            this.listener = listener;
+        }
+
+        void signal() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::notifyListener);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                }
+            }
+        }
+
+        private void notifyListener() {
+            int updates;
+            do {
+                updates = pending.get();
+                try {
+                    listener.accept(state);
+                } catch (RuntimeException e) {
+                    // pending stays positive, so the listener is never called again
+                    log.debug("Dropping subscriber of job " + id + ": " + e.getMessage());
+                    unsubscribe(id, listener);
+                    return;
+                }
+            } while (pending.addAndGet(-updates) > 0);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * In-memory state of the running analysis jobs.
+ */
+package athenarc.imsi.sdl.service.status;
@@ -4,19 +4,27 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.LineNumberReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.bson.Document;
 
 import athenarc.imsi.sdl.config.Constants;
@@ -26,6 +34,8 @@ import athenarc.imsi.sdl.config.Constants;
  */
 public final class FileUtil {
 
+    // gzip copies being built, by the path of the copy
+    private static final ConcurrentHashMap<String, CompletableFuture<File>> GZIP_BUILDS = new ConcurrentHashMap<>();
 
     private FileUtil() {
     }
@@ -46,11 +56,11 @@ public final class FileUtil {
     }
 
     public static String getLogfile(String uuid) {
-        return Constants.BASE_PATH + "/" + uuid + "/log.out";
+        return Constants.BASE_PATH + "/" + uuid + "/" + Constants.LOG_OUT;
     }
 
     public static String getErrorLog(String uuid) {
-        return Constants.BASE_PATH + "/" + uuid + "/log.err";
+        return Constants.BASE_PATH + "/" + uuid + "/" + Constants.LOG_ERR;
     }
 
     public static String getConfFile(String uuid) {
@@ -77,43 +87,73 @@ public final class FileUtil {
         return resultsFile;
     }
 
-    public static String getCommunityDetailsFile(String uuid) {
-        return Constants.BASE_PATH + "/" + uuid + "/" + Constants.COMMUNITY_DETAILS;
+    /**
+     * The results of a ranking with one of the damping factors of a job, next to its main ranking results.
+     */
+    public static String getRankingFile(String rankingFile, double alpha) {
+        return rankingFile.replaceFirst("\\.csv$", "_" + alpha + ".csv");
     }
 
+    /**
+     * The damping factors of a job ranking several of them, or null for a single one.
+     */
+    public static List<Double> getRankingAlphas(Document config) {
+        List<?> values = config.get("pr_alphas", List.class);
+        if (values == null) {
+            return null;
+        }
+        List<Double> alphas = new ArrayList<>(values.size());
+        for (Object value : values) {
+            alphas.add(((Number) value).doubleValue());
+        }
+        return alphas;
+    }
 
-    public static Document parseLogfile(String logfile) throws IOException {
-        String lastLine = "";
-        Integer stageNum = 0;
-        String prevAnalysis = "";
-        String sCurrentLine;
-        ArrayList<String> completedStages = new ArrayList<>();
-
-        BufferedReader br = new BufferedReader(new FileReader(logfile));
-
-        while ((sCurrentLine = br.readLine()) != null) {
-            String[] tokens = sCurrentLine.split("\\t");
-            lastLine = sCurrentLine;
+    public static String getCommunityDetailsFile(String uuid) {
+        return Constants.BASE_PATH + "/" + uuid + "/" + Constants.COMMUNITY_DETAILS;
+    }
 
-            if (tokens.length != 3) // in case of last line with exit code
-                continue;
+    /**
+     * Returns the gzip-compressed copy of a file, next to it with a {@code .gz} suffix, building it
+     * if it is missing or older than the file. Concurrent requests for the same file wait for a single build.
+     */
+    public static File getGzipFile(File file) throws IOException {
+        File gzip = new File(file.getPath() + ".gz");
+        if (gzip.exists() && gzip.lastModified() >= file.lastModified()) {
+            return gzip;
+        }
 
-            if (!tokens[0].equals(prevAnalysis)) {
-                prevAnalysis = tokens[0];
-                stageNum++;
+        CompletableFuture<File> build = new CompletableFuture<>();
+        CompletableFuture<File> running = GZIP_BUILDS.putIfAbsent(gzip.getPath(), build);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing " + file);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not compress " + file, e.getCause());
             }
+        }
 
-            // return stages that have been completed
-            if (tokens[2].equals("Completed")) {
-                completedStages.add(tokens[0]);
+        try {
+            // another request may have built it in the meantime
+            if (!gzip.exists() || gzip.lastModified() < file.lastModified()) {
+                File tmp = new File(gzip.getPath() + ".tmp");
+                try (InputStream in = new FileInputStream(file);
+                     OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), 1 << 16)) {
+                    IOUtils.copy(in, out);
+                }
+                Files.move(tmp.toPath(), gzip.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
             }
+            build.complete(gzip);
+            return gzip;
+        } catch (IOException | RuntimeException e) {
+            build.completeExceptionally(e);
+            throw e;
+        } finally {
+            GZIP_BUILDS.remove(gzip.getPath(), build);
         }
-
-        br.close();
-        return new Document()
-            .append("lastLine", lastLine)
-            .append("stageNum", stageNum)
-            .append("completedStages", completedStages);
     }
 
     public static String writeConfig(
@@ -129,8 +169,11 @@ public final class FileUtil {
         String selectField,
         int edgesThreshold,
         double prAlpha,
+        List<Double> prAlphas,
         double prTol,
         int simMinValues,
+        Integer simLshBands,
+        Integer simLshRows,
         String commAlgorithm, 
         double commThreshold, 
         int commStopCriterion, 
@@ -163,6 +206,7 @@ public final class FileUtil {
         config.put("final_communities_out", outputDir + "/" + Constants.FINAL_COMMUNITY_OUT);
         config.put("final_sim_search_out", outputDir + "/" + Constants.FINAL_SIM_SEARCH_OUT);
         config.put("final_sim_join_out", outputDir + "/" + Constants.FINAL_SIM_JOIN_OUT);
+        config.put("sim_join_stats", outputDir + "/" + Constants.SIM_JOIN_STATS);
 
         config.put("final_ranking_community_out", outputDir + "/" + Constants.RANKING_COMMUNITY_OUT);
         config.put("final_community_ranking_out", outputDir + "/" + Constants.COMMUNITY_RANKING_OUT);
@@ -174,6 +218,10 @@ public final class FileUtil {
         // Ranking params
         config.put("analyses", analyses);
         config.put("pr_alpha", prAlpha);
+        if (prAlphas != null && prAlphas.size() > 1) {
+            // each damping factor of a sweep has its own result file, see getRankingFile
+            config.put("pr_alphas", prAlphas);
+        }
         config.put("pr_tol", prTol);
         config.put("edgesThreshold", edgesThreshold);
 
@@ -183,6 +231,11 @@ public final class FileUtil {
 
         config.put("t", t);
         config.put("sim_min_values", simMinValues);
+        if (simLshBands != null) {
+            // the local engine joins approximately, over the pairs that share an LSH bucket
+            config.put("sim_lsh_bands", simLshBands);
+            config.put("sim_lsh_rows", simLshRows);
+        }
 
 	    // Community detection params
 	    config.put("inputCSVDelimiter", "\t");
@@ -280,33 +333,4 @@ public final class FileUtil {
         fis.close();
         return new String(data, "UTF-8");
     }
-
-    public static List<Long> getCommunityPositions(String file) throws IOException {
-        Set<String> communityIdsSet = new HashSet<>();
-        List<Long> communityPositions = new ArrayList<>();
-        RandomAccessFile communityFile = new RandomAccessFile(file, "r");
-        String[] headers = communityFile.readLine().split("\t");
-        int communityColumnIndex;
-        for (communityColumnIndex = 0; communityColumnIndex < headers.length; communityColumnIndex++) {
-            if (headers[communityColumnIndex].equals("Community")) break;
-        }
-
-        String line;
-        do {
-            long linePosition = communityFile.getFilePointer();
-            line = communityFile.readLine();
-            if (line != null) {
-                String communityId = line.split("\t")[communityColumnIndex];
-
-                if (!communityIdsSet.contains(communityId)) {
-                    communityIdsSet.add(communityId);
-                    communityPositions.add(linePosition);
-                }
-            }
-        } while (line!=null);
-        
-        communityFile.close();
-
-        return communityPositions;
-    }
 }
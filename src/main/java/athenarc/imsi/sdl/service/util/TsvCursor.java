@@ -0,0 +1,400 @@
+package athenarc.imsi.sdl.service.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Forward-only cursor over the lines of a tab-separated UTF-8 file, read through a large buffer.
+ * <p>
+ * Every line is decoded once into a reusable character buffer, and its fields are exposed as
+ * {@link CharSequence} views over it that stay valid until the cursor moves. Numbers are parsed from
+ * the views directly, so reading a line allocates nothing: only the fields a caller turns into
+ * strings are copied. Carriage returns at the end of lines are ignored.
+ */
+public final class TsvCursor implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // file position of the first byte of the buffer
+    private long bufferPosition;
+    private boolean endOfFile;
+
+    private long lineOffset = -1;
+    private char[] chars = new char[256];
+    private int length;
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int fieldCount;
+    private Field[] fields = new Field[0];
+
+    private TsvCursor(FileChannel channel, long offset) throws IOException {
+        this.channel = channel;
+        this.bufferPosition = offset;
+        channel.position(offset);
+        buffer.limit(0);
+    }
+
+    public static TsvCursor open(File file) throws IOException {
+        return open(file, 0);
+    }
+
+    /**
+     * Opens a cursor on the line starting at the given byte offset of a file.
+     */
+    public static TsvCursor open(File file, long offset) throws IOException {
+        return new TsvCursor(FileChannel.open(file.toPath(), StandardOpenOption.READ), offset);
+    }
+
+    /**
+     * Moves the cursor before the line starting at the given byte offset, reusing the buffered bytes
+     * when they already cover it.
+     */
+    public void seek(long offset) throws IOException {
+        if (offset >= bufferPosition && offset < bufferPosition + buffer.limit()) {
+            buffer.position((int) (offset - bufferPosition));
+            return;
+        }
+        channel.position(offset);
+        bufferPosition = offset;
+        buffer.clear();
+        buffer.limit(0);
+        endOfFile = false;
+    }
+
+    /**
+     * Moves to the next line.
+     *
+     * @return false if there are no more lines
+     */
+    public boolean next() throws IOException {
+        int end = findNewline(buffer.position());
+        while (end < 0 && !endOfFile) {
+            // the bytes already searched are moved to the start of the buffer
+            int searched = buffer.remaining();
+            fill();
+            end = findNewline(searched);
+        }
+
+        int start = buffer.position();
+        if (end < 0) {
+            if (start == buffer.limit()) {
+                fieldCount = 0;
+                length = 0;
+                return false;
+            }
+            end = buffer.limit();
+        }
+
+        lineOffset = bufferPosition + start;
+        int contentEnd = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+        decode(start, contentEnd);
+        buffer.position(Math.min(end + 1, buffer.limit()));
+        split();
+        return true;
+    }
+
+    private int findNewline(int from) {
+        byte[] bytes = buffer.array();
+        for (int i = from; i < buffer.limit(); i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps the unread bytes at the start of the buffer, growing it if they fill it, and reads more after them.
+     */
+    private void fill() throws IOException {
+        int remaining = buffer.remaining();
+        if (remaining == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            bufferPosition += buffer.position();
+            buffer.compact();
+        }
+
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                endOfFile = true;
+                break;
+            }
+            if (read == 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Decodes the UTF-8 bytes of a line into the character buffer, replacing malformed sequences.
+     */
+    private void decode(int from, int to) {
+        if (chars.length < to - from) {
+            chars = new char[Math.max(to - from, chars.length * 2)];
+        }
+        byte[] bytes = buffer.array();
+        int n = 0;
+        int i = from;
+        while (i < to) {
+            int b = bytes[i];
+            if (b >= 0) {
+                chars[n++] = (char) b;
+                i++;
+                continue;
+            }
+
+            int extra;
+            int codePoint;
+            if ((b & 0xe0) == 0xc0) {
+                extra = 1;
+                codePoint = b & 0x1f;
+            } else if ((b & 0xf0) == 0xe0) {
+                extra = 2;
+                codePoint = b & 0x0f;
+            } else if ((b & 0xf8) == 0xf0) {
+                extra = 3;
+                codePoint = b & 0x07;
+            } else {
+                chars[n++] = '\uFFFD';
+                i++;
+                continue;
+            }
+
+            int j = 1;
+            for (; j <= extra && i + j < to && (bytes[i + j] & 0xc0) == 0x80; j++) {
+                codePoint = (codePoint << 6) | (bytes[i + j] & 0x3f);
+            }
+            if (j <= extra) {
+                chars[n++] = '\uFFFD';
+                i += j;
+                continue;
+            }
+            i += j;
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[n++] = Character.highSurrogate(codePoint);
+                chars[n++] = Character.lowSurrogate(codePoint);
+            } else {
+                chars[n++] = (char) codePoint;
+            }
+        }
+        length = n;
+    }
+
+    private void split() {
+        fieldCount = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || chars[i] == '\t') {
+                if (fieldCount == fieldStarts.length) {
+                    fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                    fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+                }
+                fieldStarts[fieldCount] = start;
+                fieldEnds[fieldCount] = i;
+                fieldCount++;
+                start = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Byte offset of the current line in the file.
+     */
+    public long getLineOffset() {
+        return lineOffset;
+    }
+
+    /**
+     * Number of fields of the current line; an empty line has a single empty field.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * A view of a field of the current line, valid until the cursor moves.
+     */
+    public CharSequence field(int column) {
+        if (column < 0 || column >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + column + " of " + fieldCount);
+        }
+        if (fields.length <= column) {
+            Field[] grown = Arrays.copyOf(fields, Math.max(column + 1, fields.length * 2));
+            for (int i = fields.length; i < grown.length; i++) {
+                grown[i] = new Field(i);
+            }
+            fields = grown;
+        }
+        return fields[column];
+    }
+
+    public String getString(int column) {
+        field(column);
+        return new String(chars, fieldStarts[column], fieldEnds[column] - fieldStarts[column]);
+    }
+
+    /**
+     * All the fields of the current line.
+     */
+    public String[] getStrings() {
+        String[] values = new String[fieldCount];
+        for (int column = 0; column < fieldCount; column++) {
+            values[column] = getString(column);
+        }
+        return values;
+    }
+
+    /**
+     * The current line, without its line terminator.
+     */
+    public String getLine() {
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Parses a field as a decimal integer.
+     *
+     * @throws NumberFormatException if the field is not an integer
+     */
+    public int getInt(int column) {
+        field(column);
+        int from = fieldStarts[column];
+        int to = fieldEnds[column];
+        boolean negative = from < to && chars[from] == '-';
+        int i = negative || (from < to && chars[from] == '+') ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException("Not an integer: " + getString(column));
+        }
+
+        // accumulate negatively, so that Integer.MIN_VALUE fits
+        int value = 0;
+        for (; i < to; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9 || value < (Integer.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException("Not an integer: " + getString(column));
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Integer.MIN_VALUE) {
+            throw new NumberFormatException("Not an integer: " + getString(column));
+        }
+        return negative ? value : -value;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Parses a field as a double, with the same result as {@link Double#parseDouble(String)}.
+     *
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double getDouble(int column) {
+        field(column);
+        int from = fieldStarts[column];
+        int to = fieldEnds[column];
+
+        // plain decimals whose digits and power of ten are exact doubles are divided once, which rounds
+        // correctly; anything else is left to the JDK
+        boolean negative = from < to && chars[from] == '-';
+        int digitsFrom = negative ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        int i = digitsFrom;
+        for (; i < to && digits <= 15; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                if (mantissa > 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (point) {
+                    scale++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        boolean plain = i == to && digits <= 15 && scale < POWERS_OF_TEN.length && to - digitsFrom > (point ? 1 : 0);
+        if (plain) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(getString(column));
+    }
+
+    /**
+     * Whether a field of the current line is the given text.
+     */
+    public boolean fieldEquals(int column, CharSequence text) {
+        field(column);
+        int from = fieldStarts[column];
+        int fieldLength = fieldEnds[column] - from;
+        if (fieldLength != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < fieldLength; i++) {
+            if (chars[from + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A field of the current line.
+     */
+    private final class Field implements CharSequence {
+        private final int column;
+
+        Field(int column) {
+            this.column = column;
+        }
+
+        @Override
+        public int length() {
+            return fieldEnds[column] - fieldStarts[column];
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + length());
+            }
+            return chars[fieldStarts[column] + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return getString(column);
+        }
+    }
+}
@@ -2,10 +2,13 @@ package athenarc.imsi.sdl.web.rest;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import javax.validation.Valid;
 
@@ -21,10 +24,16 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import athenarc.imsi.sdl.config.Constants;
 import athenarc.imsi.sdl.service.AnalysisService;
+import athenarc.imsi.sdl.service.JobExpiredException;
+import athenarc.imsi.sdl.service.cache.ResultCache;
+import athenarc.imsi.sdl.service.dto.ResultQueryDTO;
 import athenarc.imsi.sdl.service.util.FileUtil;
 import athenarc.imsi.sdl.service.util.RandomUtil;
+import athenarc.imsi.sdl.web.rest.errors.BadRequestAlertException;
 import athenarc.imsi.sdl.web.rest.vm.QueryConfigVM;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -52,7 +61,8 @@ public class AnalysisResource {
     @ApiResponses(value =
         {
             @ApiResponse(code = 200, message = "The analysis was successfully submitted"),
-            @ApiResponse(code = 400, message = "Bad request")
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 503, message = "Too many analyses are waiting to run")
         }
     )
     @PostMapping(value = "/submit", produces = "application/json;charset=UTF-8")
@@ -67,17 +77,36 @@ public class AnalysisResource {
             config.setAnalysis(analyses);
         }
 
-        try {
-
-            // update predefined metapaths
-            for (QueryConfigVM.Query query : config.getQueries()) {
-                analysisService.updatePredifinedMetapaths(
-                    config.getDataset(),
-                    query.getMetapath(),
-                    config.getSelectField(),
-                    query.getEntities()
-                );
+        // a sweep of damping factors is ranked in a single job, with the first one as the main ranking
+        List<Double> prAlphas = config.getPrAlphas() != null ? new ArrayList<>(new LinkedHashSet<>(config.getPrAlphas())) : null;
+        if (prAlphas != null && !prAlphas.isEmpty()) {
+            if (prAlphas.size() > Constants.PAGERANK_MAX_ALPHAS) {
+                throw new BadRequestAlertException("At most " + Constants.PAGERANK_MAX_ALPHAS + " damping factors can be ranked at once",
+                    "analysis", "toomanyalphas");
+            }
+            for (Double alpha : prAlphas) {
+                if (alpha == null || !(alpha > 0.0 && alpha < 1.0)) {
+                    throw new BadRequestAlertException("Invalid damping factor: " + alpha, "analysis", "invalidalpha");
+                }
             }
+            config.setPrAlpha(prAlphas.get(0));
+        }
+
+        Integer simLshRows = config.getSimLshBands() != null && config.getSimLshRows() == null
+            ? Constants.SIM_LSH_DEFAULT_ROWS : config.getSimLshRows();
+        if (config.getSimLshBands() != null && (config.getSimLshBands() < 1 || config.getSimLshBands() > Constants.SIM_LSH_MAX_BANDS
+            || simLshRows < 1 || simLshRows > Constants.SIM_LSH_MAX_ROWS)) {
+            throw new BadRequestAlertException("LSH bands must be between 1 and " + Constants.SIM_LSH_MAX_BANDS
+                + " and rows between 1 and " + Constants.SIM_LSH_MAX_ROWS, "analysis", "invalidlsh");
+        }
+        if (config.getSimLshBands() == null && config.getSimLshRows() != null) {
+            throw new BadRequestAlertException("LSH rows require a number of LSH bands", "analysis", "invalidlsh");
+        }
+        if (config.getSimLshBands() != null && !analyses.contains("Similarity Join")) {
+            throw new BadRequestAlertException("LSH bands only apply to a Similarity Join", "analysis", "invalidlsh");
+        }
+
+        try {
 
             // INFO: copy query data; needed as services should not depend on web resources like QueryConfigVM
             List<Document> queries = new ArrayList<>();
@@ -104,8 +133,11 @@ public class AnalysisResource {
                 config.getSelectField(),
                 config.getEdgesThreshold(),
                 config.getPrAlpha(),
+                prAlphas,
                 config.getPrTol(),
                 config.getSimMinValues(),
+                config.getSimLshBands(),
+                simLshRows,
                 config.getCommAlgorithm(),
                 config.getCommThreshold(),
                 config.getCommStopCriterion(),
@@ -114,8 +146,22 @@ public class AnalysisResource {
                 config.getCommRatio()
             );
 
-            // submit async job
-            analysisService.submitJob(id, configPath);
+            // queue the job; rejected jobs do not count as uses of their metapaths
+            try {
+                analysisService.submitJob(id, configPath, config.getPriority());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestAlertException(e.getMessage(), "analysis", "unsupportedoption");
+            }
+
+            // update predefined metapaths
+            for (QueryConfigVM.Query query : config.getQueries()) {
+                analysisService.updatePredifinedMetapaths(
+                    config.getDataset(),
+                    query.getMetapath(),
+                    config.getSelectField(),
+                    query.getEntities()
+                );
+            }
 
         } catch (java.io.IOException | InterruptedException e) {
             throw new RuntimeException("Error running ranking task: " + id);
@@ -127,7 +173,8 @@ public class AnalysisResource {
     @ApiResponses(value =
         {
             @ApiResponse(code = 200, message = "The analysis was found and its status was successfully retrieved", examples = @Example(@ExampleProperty(value = "da", mediaType = "dadwad"))),
-            @ApiResponse(code = 400, message = "Bad request")
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 410, message = "The results of the analysis have expired")
         }
     )
     @GetMapping(value = "/status", produces = "application/json;charset=UTF-8")
@@ -135,67 +182,54 @@ public class AnalysisResource {
         @ApiParam(value = "The ID that was assigned on the analysis in question, during submission", required = true) @RequestParam  String id) {
         log.debug("analysis/status : {}", id);
 
-        Document response = new Document();
-        response.append("id", id);
-
         try {
-            // parse config file
-            String conf = FileUtil.readJsonFile(FileUtil.getConfFile(id));
-            Document config = Document.parse(conf);
-            ArrayList<String> analyses = (ArrayList<String>) config.get("analyses");
-
-            // parse log file
-            String logfile = FileUtil.getLogfile(id);
-            Document logInfo = FileUtil.parseLogfile(logfile);
-            String lastLine = (String) logInfo.get("lastLine");
-
-            ArrayList<String> completedStages = (ArrayList<String>) logInfo.get("completedStages");
-
-            // determine analyses that have been completed
-            Document completed = new Document();
-            for (String analysis : analyses) {
-                completed.append(analysis, completedStages.contains(analysis));
-            }
-            response.append("completed", completed);
-
-            // form description of analysis
-            String description = RandomUtil.getAnalysisDescription(config, false);
-            response.append("description", description);
-
-            String[] tokens = lastLine.split("\t");
+            return analysisService.getStatus(id);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading status from logfile");
+        }
+    }
 
-            if (tokens[0].equals("Exit Code") && !tokens[1].equals("0")) {
+    @ApiOperation(value = "Streams the status of a running analysis as server-sent events, until it completes")
+    @GetMapping(value = "/status/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter statusStream(
+        @ApiParam(value = "The ID that was assigned on the analysis in question, during submission", required = true) @RequestParam String id) {
+        log.debug("analysis/status/stream : {}", id);
 
-                // set all analyses as completed, in order to stop loading on frontend
-                Document comp = new Document();
-                for (String analysis : analyses) {
-                    completed.append(analysis, true);
-                }
-                response.append("completed", comp);
-                if (tokens[1].equals("100")) {
-                    response.append("description", "Warning: The produced HIN view does not contain any entities; please try again with more loose constrains.");
-                } else if (tokens[1].equals("200")) {
-                    response.append("description", "Warning: Due to limited resources the analysis was aborted as a large HIN view was created; please try again with more strict constraints.");
-                } else {
-                    throw new RuntimeException("Error in analysis task: " + id);
+        SseEmitter emitter = new SseEmitter(Constants.STATUS_STREAM_TIMEOUT_MS);
+        Consumer<Document> listener = status -> {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(status, MediaType.APPLICATION_JSON));
+                if (status.containsKey("error") || isFinished(status)) {
+                    emitter.complete();
                 }
-            } else if (tokens.length == 3) {
-                response.append("stage", tokens[0])
-                    .append("step", tokens[2])
-                    .append("progress", analysisService.getProgress(analyses, (Integer) logInfo.get("stageNum"), Float.parseFloat(tokens[1])));
-
-            // in case logfile is still empty
-            } else {
-                response.append("stage", "HIN Transformation")
-                    .append("step", "Initializing")
-                    .append("progress", 0);
+            } catch (IOException e) {
+                // the client went away
+                emitter.completeWithError(e);
+                throw new UncheckedIOException(e);
             }
+        };
+        emitter.onCompletion(() -> analysisService.unsubscribeStatus(id, listener));
+        emitter.onTimeout(() -> analysisService.unsubscribeStatus(id, listener));
 
-        } catch (IOException e) {
-            throw new RuntimeException("Error reading status from logfile");
+        // the current status is sent first; jobs that are not running end the stream right away
+        boolean running = analysisService.subscribeStatus(id, listener);
+        Document status;
+        try {
+            status = analysisService.getStatus(id);
+        } catch (IOException | RuntimeException e) {
+            status = new Document("id", id).append("error", e.getMessage());
         }
-        return response;
+        listener.accept(status);
+        if (!running) {
+            emitter.complete();
+        }
+        return emitter;
+    }
 
+    private static boolean isFinished(Document status) {
+        Document completed = (Document) status.get("completed");
+        return completed != null && !completed.isEmpty() && !completed.containsValue(false)
+            || ((String) status.getOrDefault("description", "")).startsWith("Warning");
     }
 
     /**
@@ -205,7 +239,8 @@ public class AnalysisResource {
     @ApiResponses(value =
         {
             @ApiResponse(code = 200, message = "The analysis was found and the results were successfully retrieved"),
-            @ApiResponse(code = 400, message = "Bad request")
+            @ApiResponse(code = 400, message = "Bad request"),
+            @ApiResponse(code = 410, message = "The results of the analysis have expired")
         }
     )
     @GetMapping(value = "/get", produces = "application/json;charset=UTF-8")
@@ -213,14 +248,35 @@ public class AnalysisResource {
         @ApiParam(value = "The ID that was assigned on the analysis in question, during submission", required = true) @RequestParam String id,
         @ApiParam(value = "The type of the analysis", required = true) @RequestParam String analysis,
         @ApiParam(value = "A value N greater or equal to 1 that is used to retrieve the [(N-1)*50,N*50) results") @RequestParam(required = false, defaultValue = "1") Integer page, 
-        @ApiParam(value = "Applies hierarchical results: indicates the community for which its members are requested") @RequestParam(required = false) String communityId
+        @ApiParam(value = "Applies hierarchical results: indicates the community for which its members are requested") @RequestParam(required = false) String communityId,
+        @ApiParam(value = "The column to sort the results by, e.g. \"Ranking Score\"") @RequestParam(required = false) String sort,
+        @ApiParam(value = "The direction of the sorting", allowableValues = "asc,desc") @RequestParam(required = false, defaultValue = "asc") String order,
+        @ApiParam(value = "Returns only the results whose selected field (or either entity of a pair) contains this text, ignoring case") @RequestParam(required = false) String filter,
+        @ApiParam(value = "Whether the filter text must be contained in or start the selected field", allowableValues = "substring,prefix") @RequestParam(required = false, defaultValue = "substring") String filterMode,
+        @ApiParam(value = "Returns only the results with at least this score") @RequestParam(required = false) Double minScore,
+        @ApiParam(value = "Returns only the results with at most this score") @RequestParam(required = false) Double maxScore,
+        @ApiParam(value = "Returns only the members of this community") @RequestParam(required = false) String community,
+        @ApiParam(value = "Applies to rankings of several damping factors: the damping factor whose ranking is requested") @RequestParam(required = false) Double alpha
     ) {
         log.debug("analysis/get : {}", id, analysis, page);
 
-        String logfile = FileUtil.getLogfile(id);
+        if (!order.equals("asc") && !order.equals("desc")) {
+            throw new BadRequestAlertException("Invalid sort order: " + order, "analysis", "invalidorder");
+        }
+        if (!filterMode.equals("substring") && !filterMode.equals("prefix")) {
+            throw new BadRequestAlertException("Invalid filter mode: " + filterMode, "analysis", "invalidfiltermode");
+        }
+        ResultQueryDTO query = new ResultQueryDTO();
+        query.setSort(sort);
+        query.setDescending(order.equals("desc"));
+        query.setFilter(filter);
+        query.setPrefix(filterMode.equals("prefix"));
+        query.setMinScore(minScore);
+        query.setMaxScore(maxScore);
+        query.setCommunity(community);
 
         try {
-            Document logInfo = FileUtil.parseLogfile(logfile);
+            Document logInfo = analysisService.getLogInfo(id);
             String lastLine = (String) logInfo.get("lastLine");
 
             // throw error if analaysis was aborted with an error code
@@ -229,6 +285,9 @@ public class AnalysisResource {
             if (index >= 0) {
                 int exitCode = Integer.parseInt(lastLine.split("\t")[1]);
 
+                if (exitCode == ResultCache.EXIT_EXPIRED) {
+                    throw new JobExpiredException(id);
+                }
                 // error occurred in ranking script
                 if (exitCode != 0) {
                     throw new RuntimeException("Error in analysis task: " + id);
@@ -241,9 +300,30 @@ public class AnalysisResource {
                 String configurationFilePath = FileUtil.getConfFile(id);
                 Document configuration = Document.parse(FileUtil.readJsonFile(configurationFilePath));
 
+                List<Double> alphas = FileUtil.getRankingAlphas(configuration);
+                if (alpha != null && analysis.equals("Ranking")) {
+                    if (alphas == null || !alphas.contains(alpha)) {
+                        throw new BadRequestAlertException("No ranking with damping factor " + alpha, "analysis", "invalidalpha");
+                    }
+                    resultsFile = FileUtil.getRankingFile(resultsFile, alpha);
+                }
+
+                String selectField = (String) configuration.get("select_field");
                 Document meta = new Document();
                 List<Document> docs;
-                if (analysis.startsWith("Community Detection")) {
+                // hierarchical communities are only navigated through their tree
+                boolean hierarchical = analysis.startsWith("Community Detection") && "HPIC".equals(configuration.get("community_algorithm"));
+                if (hierarchical && !query.isEmpty()) {
+                    throw new BadRequestAlertException("Hierarchical community results cannot be sorted or filtered",
+                        "analysis", "invalidquery");
+                }
+                if (!query.isEmpty()) {
+                    try {
+                        docs = analysisService.queryResults(resultsFile, selectField, query, page, meta);
+                    } catch (IllegalArgumentException e) {
+                        throw new BadRequestAlertException(e.getMessage(), "analysis", "invalidquery");
+                    }
+                } else if (analysis.startsWith("Community Detection")) {
                     String communityAlgorithm = (String) configuration.get("community_algorithm");
                     String[] headers = FileUtil.getHeaders(resultsFile);
 
@@ -255,14 +335,20 @@ public class AnalysisResource {
                     
                 } else {
                     docs = analysisService.getResults(resultsFile, page, meta);
-                    // if (analysis.contains("Community")) {
-                    //     String communityDetailsFile = FileUtil.getCommunityDetailsFile(id);
-                    //     Document communityCounts = analysisService.getCommunityCounts(communityDetailsFile, docs);
-                    //     meta.append("community_counts", communityCounts);
-                    // }
                 }
 
-                String selectField = (String) configuration.get("select_field");
+                // ranked entities are enriched with the sizes and top members of their communities
+                if (analysis.contains("Community") && !analysis.startsWith("Community Detection")) {
+                    meta.append("community_counts", analysisService.getCommunityCounts(resultsFile, docs));
+                    meta.append("community_top_members", analysisService.getCommunityTopMembers(resultsFile, docs));
+                }
+
+                // approximate joins report how many candidate pairs they scored
+                String joinStatsFile = (String) configuration.get("sim_join_stats");
+                if (analysis.equals("Similarity Join") && joinStatsFile != null && new File(joinStatsFile).exists()) {
+                    meta.append("approximate", Document.parse(FileUtil.readJsonFile(joinStatsFile)));
+                }
+
                 String dataset = (String) configuration.get("dataset");
                 String primaryEntiry = (String) configuration.get("primary_entity");
                 Document analysisDomain = new Document();
@@ -274,6 +360,10 @@ public class AnalysisResource {
 
                 Document hin = null;
                 if (analysis.equals("Ranking")) {
+                    if (alphas != null && !alphas.isEmpty()) {
+                        meta.append("alphas", alphas);
+                        meta.append("alpha", alpha != null ? alpha : configuration.get("pr_alpha"));
+                    }
                     String fileName = "RANKING_HIN_SCHEMA.json";
                     String targetHinJsonFilePath = Paths.get((String) configuration.get("local_out_dir"), fileName).toString();
                     // check if hin json exists
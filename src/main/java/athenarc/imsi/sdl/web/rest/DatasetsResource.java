@@ -1,21 +1,17 @@
 package athenarc.imsi.sdl.web.rest;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -25,6 +21,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import athenarc.imsi.sdl.service.DatasetsService;
 import athenarc.imsi.sdl.service.util.FileUtil;
+import athenarc.imsi.sdl.web.rest.errors.BadRequestAlertException;
+import athenarc.imsi.sdl.web.rest.util.FileDownload;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
@@ -77,6 +75,8 @@ public class DatasetsResource {
                 throw new RuntimeException("Error copying to HDFS " + zipFile);
             }
 
+            datasetsService.buildIndexes(newDataset);
+
             if (!FileUtil.remove(zipFile)) {
                 throw new RuntimeException("Error removing zip  " + zipFile);
             }
@@ -123,10 +123,11 @@ public class DatasetsResource {
                                        @ApiParam(value = "The target entity", required = true) @RequestParam String entity,
                                        @ApiParam(value = "The field of interest of the target entity", required = true) @RequestParam String field,
                                        @ApiParam(value = "The literal that will be matched to the entity values", required = true) @RequestParam String term,
-                                       @ApiParam(value = "Whether the returned values are distinct or not") @RequestParam(required = false) Boolean uniqueValues) {
+                                       @ApiParam(value = "Whether the returned values are distinct or not") @RequestParam(required = false) Boolean uniqueValues,
+                                       @ApiParam(value = "The maximum number of values to return; exact matches are returned first") @RequestParam(required = false) Integer limit) {
 
         try {
-            return datasetsService.autocomplete(dataset, entity.substring(0, 1), field, term.toLowerCase(), uniqueValues);
+            return datasetsService.autocomplete(dataset, entity.substring(0, 1), field, term.toLowerCase(), uniqueValues, limit);
         } catch (IOException e) {
             throw new RuntimeException("Error reading schema for datasets");
         }
@@ -160,6 +161,8 @@ public class DatasetsResource {
                 doc.append("result", true);
             }
             return doc;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), "datasets", "invalidfield");
         } catch (IOException e) {
             throw new RuntimeException("Error reading schema for datasets");
         }
@@ -170,25 +173,16 @@ public class DatasetsResource {
      */
     @ApiIgnore
     @GetMapping(value = "/download", produces = "text/csv; charset=utf-8")
-    public ResponseEntity<Resource> download(String analysisType, String id) {
+    public void download(String analysisType, String id, HttpServletRequest request, HttpServletResponse response) {
+
+        File fd = new File(FileUtil.getOutputFile(id, analysisType));
+        if (!fd.isFile()) {
+            throw new RuntimeException("Error downloading result file");
+        }
 
         try {
-            String downloadFile = FileUtil.getOutputFile(id, analysisType);
-            File fd = new File(downloadFile);
-            InputStreamResource resource = new InputStreamResource(new FileInputStream(fd));
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.add("Cache-Control", "no-cache, no-store, must-revalidate");
-            headers.add("Pragma", "no-cache");
-            headers.add("Expires", "0");
-
-            return ResponseEntity.ok()
-                .headers(headers)
-                .contentLength(fd.length())
-                .contentType(MediaType.parseMediaType("application/octet-stream"))
-                .body(resource);
-
-        } catch (FileNotFoundException e) {
+            FileDownload.serve(fd, "application/octet-stream", request, response);
+        } catch (IOException e) {
             throw new RuntimeException("Error downloading result file");
         }
     }
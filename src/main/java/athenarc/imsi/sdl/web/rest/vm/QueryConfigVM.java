@@ -1,10 +1,12 @@
 package athenarc.imsi.sdl.web.rest.vm;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
 
 import org.bson.Document;
@@ -91,8 +93,11 @@ public class QueryConfigVM {
     private int targetId;
     private int edgesThreshold;
     private double prAlpha;
+    private List<Double> prAlphas;
     private double prTol;
     private int simMinValues;
+    private Integer simLshBands;
+    private Integer simLshRows;
 
     private String commAlgorithm;
     private double commThreshold;
@@ -101,6 +106,10 @@ public class QueryConfigVM {
     private int commNumOfCommunities;
     private double commRatio;
 
+    // optional scheduling class of the job: high, normal (default) or low
+    @Pattern(regexp = "(?i)high|normal|low")
+    private String priority;
+
     public int getSimMinValues() {
         return this.simMinValues;
     }
@@ -109,6 +118,29 @@ public class QueryConfigVM {
         this.simMinValues = simMinValues;
     }
 
+    /**
+     * LSH bands of an approximate Similarity Join; more bands find more of the similar pairs, at the cost of
+     * scoring more candidates. The join is exact when missing.
+     */
+    public Integer getSimLshBands() {
+        return this.simLshBands;
+    }
+
+    public void setSimLshBands(Integer simLshBands) {
+        this.simLshBands = simLshBands;
+    }
+
+    /**
+     * MinHash values per LSH band of an approximate Similarity Join; more rows score fewer dissimilar pairs.
+     */
+    public Integer getSimLshRows() {
+        return this.simLshRows;
+    }
+
+    public void setSimLshRows(Integer simLshRows) {
+        this.simLshRows = simLshRows;
+    }
+
     public String getPrimaryEntity() {
         return primaryEntity;
     }
@@ -125,6 +157,17 @@ public class QueryConfigVM {
         this.prAlpha = prAlpha;
     }
 
+    /**
+     * Damping factors to rank with in a single job, in place of {@code prAlpha}.
+     */
+    public List<Double> getPrAlphas() {
+        return this.prAlphas;
+    }
+
+    public void setPrAlphas(List<Double> prAlphas) {
+        this.prAlphas = prAlphas;
+    }
+
     public double getPrTol() {
         return this.prTol;
     }
@@ -257,6 +300,14 @@ public class QueryConfigVM {
         this.commRatio = commRatio;
     }
 
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
     public ArrayList<Query> getQueries() {
         return queries;
     }
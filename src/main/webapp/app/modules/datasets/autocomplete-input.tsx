@@ -25,6 +25,9 @@ export interface IAutocompleteInputProps extends StateProps, DispatchProps {
     additionTriggerCallback: any
 };
 
+// maximum number of suggestions fetched per keystroke; exact matches are always returned first
+const AUTOCOMPLETE_LIMIT = 50;
+
 export class AutocompleteInput extends React.Component<IAutocompleteInputProps> {
 
     ref = null;
@@ -120,6 +123,7 @@ export class AutocompleteInput extends React.Component<IAutocompleteInputProps>
                 dataset: this.props.dataset,
                 term: query,
                 uniqueValues: this.props.uniqueValues,
+                limit: AUTOCOMPLETE_LIMIT
             }
         }).then((response) => {
             if (this.state.current === query) {
@@ -0,0 +1,88 @@
+package athenarc.imsi.sdl.service.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link HinViewCache}.
+ */
+public class HinViewCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static SparseMatrix matrix(int rows) {
+        int[] src = new int[rows];
+        int[] dst = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            src[i] = i;
+            dst[i] = (i * 7) % rows;
+        }
+        return SparseMatrix.fromEdges(rows, rows, src, dst, rows).threshold(0.5);
+    }
+
+    @Test
+    public void testKeyDependsOnViewDefinition() {
+        Document constraints = new Document("P", "year > 2010").append("V", "name = 'KDD'");
+        Document reordered = new Document("V", "name = 'KDD'").append("P", "year > 2010");
+
+        String key = HinViewCache.key("missing-dataset", "APVPA", constraints, 1);
+        assertThat(HinViewCache.key("missing-dataset", "APVPA", reordered, 1)).isEqualTo(key);
+        assertThat(HinViewCache.key("missing-dataset", "APVPA", constraints, 2)).isNotEqualTo(key);
+        assertThat(HinViewCache.key("missing-dataset", "APA", constraints, 1)).isNotEqualTo(key);
+        assertThat(HinViewCache.key("other-dataset", "APVPA", constraints, 1)).isNotEqualTo(key);
+    }
+
+    @Test
+    public void testStoresViewsAndEvictsLeastRecentlyUsed() throws IOException {
+        // room for about two views of 100 rows
+        HinViewCache cache = new HinViewCache(tempDir.toFile(), 4000);
+        assertThat(cache.get("a")).isNull();
+
+        SparseMatrix view = matrix(100);
+        cache.put("a", view);
+        SparseMatrix cached = cache.get("a");
+        assertThat(cached.rows()).isEqualTo(100);
+        assertThat(cached.nnz()).isEqualTo(view.nnz());
+        for (int i = 0; i < 100; i++) {
+            assertThat(cached.get(i, (i * 7) % 100)).isEqualTo(1.0);
+        }
+
+        cache.put("b", matrix(100));
+        tempDir.resolve("b" + HinViewCache.EXTENSION).toFile().setLastModified(System.currentTimeMillis() - 60_000);
+        cache.put("c", matrix(100));
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("c")).isNotNull();
+
+        // views larger than the whole budget are not stored
+        cache.put("d", matrix(1000));
+        assertThat(cache.get("d")).isNull();
+    }
+
+    @Test
+    public void testStoresRankVectorsPerMetapath() throws IOException {
+        Document constraints = new Document("P", "year > 2010");
+        assertThat(HinViewCache.ranksKey("missing-dataset", "APA", constraints))
+            .isEqualTo(HinViewCache.ranksKey("missing-dataset", "APA", new Document(constraints)))
+            .isNotEqualTo(HinViewCache.ranksKey("missing-dataset", "APVPA", constraints))
+            .isNotEqualTo(HinViewCache.key("missing-dataset", "APA", constraints, 0));
+
+        HinViewCache cache = new HinViewCache(tempDir.toFile(), 4000);
+        assertThat(cache.getRanks("r", 3)).isNull();
+
+        cache.putRanks("r", new double[] { 0.5, 0.25, 0.25 });
+        assertThat(cache.getRanks("r", 3)).containsExactly(0.5, 0.25, 0.25);
+        // vectors of views of another size are not used
+        assertThat(cache.getRanks("r", 4)).isNull();
+    }
+}
@@ -0,0 +1,131 @@
+package athenarc.imsi.sdl.service.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.status.JobLogTracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link ResultCache}.
+ */
+public class ResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static Document config(String id, String metapath, double prAlpha) {
+        return new Document("local_out_dir", Constants.BASE_PATH + "/" + id)
+            .append("hin_out", Constants.HDFS_BASE_PATH + "/" + id + "/HIN")
+            .append("dataset", "missing-dataset")
+            .append("pr_alpha", prAlpha)
+            .append("queries", Arrays.asList(new Document("metapath", metapath).append("constraints", new Document("P", "year > 2010"))));
+    }
+
+    private void writeJob(String id, int bytes) throws IOException {
+        File dir = tempDir.resolve(id).toFile();
+        dir.mkdirs();
+        Files.write(new File(dir, Constants.CONFIG_FILE).toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(dir, Constants.FINAL_RANKING_OUT).toPath(), new byte[bytes]);
+        Files.write(new File(dir, Constants.LOG_OUT).toPath(), "Ranking\t3\tCompleted\nExit Code\t0".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testKeyIgnoresJobPathsAndFieldOrder() throws IOException {
+        Document reordered = new Document("pr_alpha", 0.5)
+            .append("queries", Arrays.asList(new Document("constraints", new Document("P", "year > 2010")).append("metapath", "APA")))
+            .append("dataset", "missing-dataset")
+            .append("local_out_dir", Constants.BASE_PATH + "/other");
+
+        assertThat(ResultCache.key(config("a", "APA", 0.5))).isEqualTo(ResultCache.key(reordered));
+        assertThat(ResultCache.key(config("a", "APA", 0.5))).isNotEqualTo(ResultCache.key(config("a", "APA", 0.85)));
+        assertThat(ResultCache.key(config("a", "APA", 0.5))).isNotEqualTo(ResultCache.key(config("a", "APVPA", 0.5)));
+    }
+
+    @Test
+    public void testLinksCachedResultsAndEvictsLeastRecentlyUsed() throws IOException {
+        ResultCache cache = new ResultCache(tempDir.toFile(), 300);
+        assertThat(cache.link("k1", "new")).isNull();
+
+        writeJob("first", 100);
+        cache.put("k1", "first");
+        Files.createDirectories(tempDir.resolve("second"));
+        Files.write(tempDir.resolve("second").resolve(Constants.CONFIG_FILE), "{}".getBytes(StandardCharsets.UTF_8));
+        assertThat(cache.link("k1", "second")).isEqualTo("first");
+        Path linked = tempDir.resolve("second").resolve(Constants.FINAL_RANKING_OUT);
+        assertThat(Files.isSymbolicLink(linked)).isTrue();
+        assertThat(Files.size(linked)).isEqualTo(100);
+        assertThat(Files.readAllBytes(tempDir.resolve("second").resolve(Constants.CONFIG_FILE))).isEqualTo("{}".getBytes(StandardCharsets.UTF_8));
+
+        writeJob("third", 100);
+        cache.put("k2", "third");
+        tempDir.resolve(ResultCache.DIR).resolve("k1").toFile().setLastModified(System.currentTimeMillis() - 60_000);
+        writeJob("fourth", 100);
+        cache.put("k3", "fourth");
+
+        // k1 is the least recently used entry; its results are removed and the job linked to it loses its links
+        assertThat(tempDir.resolve("first").resolve(Constants.FINAL_RANKING_OUT)).doesNotExist();
+        assertThat(Files.exists(linked, LinkOption.NOFOLLOW_LINKS)).isFalse();
+        assertThat(tempDir.resolve("second").resolve(Constants.CONFIG_FILE)).exists();
+        assertThat(Files.isSymbolicLink(tempDir.resolve("second").resolve(Constants.LOG_OUT))).isFalse();
+        assertThat(cache.link("k1", "fifth")).isNull();
+        assertThat(cache.link("k2", "sixth")).isEqualTo("third");
+        assertThat(tempDir.resolve("fourth")).exists();
+    }
+
+    @Test
+    public void testMarksEvictedAndLinkedJobsAsExpired() throws IOException {
+        ResultCache cache = new ResultCache(tempDir.toFile(), 150);
+        writeJob("first", 100);
+        assertThat(cache.put("k1", "first")).isEmpty();
+        Files.createDirectories(tempDir.resolve("second"));
+        Files.write(tempDir.resolve("second").resolve(Constants.CONFIG_FILE), "{}".getBytes(StandardCharsets.UTF_8));
+        cache.link("k1", "second");
+
+        JobLogTracker tracker = new JobLogTracker(tempDir.toFile(), 10);
+        try {
+            assertThat(tracker.getLogInfo("second").get("lastLine")).isEqualTo("Exit Code\t0");
+
+            tempDir.resolve(ResultCache.DIR).resolve("k1").toFile().setLastModified(System.currentTimeMillis() - 60_000);
+            writeJob("third", 100);
+            assertThat(cache.put("k2", "third")).containsExactly("first", "second");
+
+            for (String id : Arrays.asList("first", "second")) {
+                assertThat(tempDir.resolve(id).toFile().list()).as(id).containsExactlyInAnyOrder(Constants.CONFIG_FILE, Constants.LOG_OUT);
+                Document logInfo = tracker.getLogInfo(id);
+                assertThat(logInfo.get("lastLine")).as(id).isEqualTo("Exit Code\t" + ResultCache.EXIT_EXPIRED);
+                assertThat((List<String>) logInfo.get("completedStages")).as(id).contains("Ranking");
+            }
+        } finally {
+            tracker.close();
+        }
+    }
+
+    @Test
+    public void testOnlyCachedResultsCountTowardTheBudget() throws IOException {
+        ResultCache cache = new ResultCache(tempDir.toFile(), 300);
+        // a failed job that was never cached
+        writeJob("failed", 1000);
+
+        writeJob("first", 100);
+        cache.put("k1", "first");
+        writeJob("second", 100);
+        cache.put("k2", "second");
+
+        assertThat(tempDir.resolve("failed")).exists();
+        assertThat(cache.link("k1", "third")).isEqualTo("first");
+        assertThat(cache.link("k2", "fourth")).isEqualTo("second");
+    }
+}
@@ -0,0 +1,178 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Test class for the {@link HinView} implementations of symmetric metapaths.
+ */
+public class HinViewTest {
+
+    private SparseMatrix half;
+    private SparseMatrix halfTransposed;
+    private SparseMatrix commuting;
+
+    @BeforeEach
+    public void setUp() {
+        // 50 authors x 20 venues, with author 0 left without papers
+        int edges = 200;
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        Random random = new Random(7);
+        for (int e = 0; e < edges; e++) {
+            src[e] = 1 + random.nextInt(49);
+            dst[e] = random.nextInt(20);
+        }
+        half = SparseMatrix.fromEdges(50, 20, src, dst, edges);
+        halfTransposed = half.transpose();
+        commuting = half.multiply(halfTransposed);
+    }
+
+    @Test
+    public void testFactoredViewMatchesCommutingMatrix() {
+        assertSameView(HinView.factored(half, halfTransposed), HinView.of(commuting));
+        assertThat(HinView.factored(half, halfTransposed).nodes().contains(0)).isFalse();
+    }
+
+    @Test
+    public void testUpperTriangleMatchesThresholdedMatrix() {
+        HinView upper = HinView.upperTriangle(half, halfTransposed, 3);
+        HinView full = HinView.of(commuting.threshold(3));
+
+        assertSameView(upper, full);
+        assertThat(upper.storedEntries()).isLessThan(full.storedEntries());
+    }
+
+    @Test
+    public void testPageRankOnFactoredView() {
+        double[] expected = PageRank.rank(HinView.of(commuting), 0.85, 1e-9, 100, null);
+        double[] actual = PageRank.rank(HinView.factored(half, halfTransposed), 0.85, 1e-9, 100, null);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual[i]).isCloseTo(expected[i], within(1e-12));
+        }
+    }
+
+    @Test
+    public void testParallelProductsSumLikeRowWiseProducts() {
+        // large enough to be split into several blocks of rows
+        int edges = 40_000;
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        Random random = new Random(11);
+        for (int e = 0; e < edges; e++) {
+            src[e] = random.nextInt(3000);
+            dst[e] = random.nextInt(400);
+        }
+        SparseMatrix largeHalf = SparseMatrix.fromEdges(3000, 400, src, dst, edges);
+        SparseMatrix largeHalfTransposed = largeHalf.transpose();
+        SparseMatrix largeCommuting = largeHalf.multiply(largeHalfTransposed);
+
+        double[] weights = new double[3000];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = random.nextDouble();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThat(propagate(HinView.of(largeCommuting), weights, pool)).isEqualTo(rowWise(largeCommuting, weights));
+            assertThat(propagate(HinView.factored(largeHalf, largeHalfTransposed), weights, pool))
+                .isEqualTo(rowWise(largeHalfTransposed, rowWise(largeHalf, weights)));
+
+            HinView upper = HinView.upperTriangle(largeHalf, largeHalfTransposed, 2);
+            assertThat(propagate(upper, weights, pool)).isEqualTo(propagate(upper, weights, null));
+
+            HinView view = HinView.factored(largeHalf, largeHalfTransposed);
+            assertThat(PageRank.rank(view, 0.85, 1e-9, 100, pool, null, null)).isEqualTo(PageRank.rank(view, 0.85, 1e-9, 100, null));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPageRankFromInitialRanks() {
+        HinView view = HinView.factored(half, halfTransposed);
+        int[] coldIterations = { 0 };
+        double[] cold = PageRank.rank(view, 0.85, 1e-9, 100, null, null, (iteration, error) -> coldIterations[0] = iteration);
+
+        // the converged ranks of a slightly different alpha are a close start
+        double[] initial = PageRank.rank(view, 0.8, 1e-9, 100, null);
+        int[] warmIterations = { 0 };
+        double[] warm = PageRank.rank(view, 0.85, 1e-9, 100, null, initial, (iteration, error) -> warmIterations[0] = iteration);
+
+        assertThat(warmIterations[0]).isLessThan(coldIterations[0]);
+        for (int i = 0; i < cold.length; i++) {
+            assertThat(warm[i]).isCloseTo(cold[i], within(1e-8));
+        }
+    }
+
+    @Test
+    public void testPageRankSweepMatchesSingleRuns() {
+        double[] alphas = { 0.85, 0.5, 0.99 };
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (HinView view : new HinView[] { HinView.of(commuting), HinView.factored(half, halfTransposed),
+                HinView.upperTriangle(half, halfTransposed, 1) }) {
+                double[][] sweep = PageRank.rank(view, alphas, 1e-9, 100, null, null);
+                assertThat(PageRank.rank(view, alphas, 1e-9, 100, pool, null)).isEqualTo(sweep);
+                for (int v = 0; v < alphas.length; v++) {
+                    assertThat(sweep[v]).isEqualTo(PageRank.rank(view, alphas[v], 1e-9, 100, null));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static double[] propagate(HinView view, double[] weights, ForkJoinPool pool) {
+        double[] out = new double[view.size()];
+        view.propagate(weights, out, pool);
+        return out;
+    }
+
+    /**
+     * {@code weights^T * matrix}, spreading the rows of the matrix in order.
+     */
+    private static double[] rowWise(SparseMatrix matrix, double[] weights) {
+        double[] out = new double[matrix.cols()];
+        for (int i = 0; i < matrix.rows(); i++) {
+            if (weights[i] != 0.0) {
+                for (int pos = matrix.rowStart(i); pos < matrix.rowEnd(i); pos++) {
+                    out[matrix.colAt(pos)] += weights[i] * matrix.valueAt(pos);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void assertSameView(HinView actual, HinView expected) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        assertThat(actual.nodes()).isEqualTo(expected.nodes());
+
+        double[] actualSums = actual.rowSums();
+        double[] expectedSums = expected.rowSums();
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actualSums[i]).isCloseTo(expectedSums[i], within(1e-9));
+        }
+
+        double[] weights = new double[expected.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = i % 3;
+        }
+        double[] actualOut = new double[weights.length];
+        double[] expectedOut = new double[weights.length];
+        actual.propagate(weights, actualOut);
+        expected.propagate(weights, expectedOut);
+        for (int i = 0; i < weights.length; i++) {
+            assertThat(actualOut[i]).isCloseTo(expectedOut[i], within(1e-9));
+        }
+    }
+}
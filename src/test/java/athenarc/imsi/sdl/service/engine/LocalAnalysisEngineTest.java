@@ -0,0 +1,169 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import athenarc.imsi.sdl.config.Constants;
+import athenarc.imsi.sdl.service.cache.HinViewCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Test class for the {@link LocalAnalysisEngine}, over a dataset of four authors and three papers.
+ */
+public class LocalAnalysisEngineTest {
+
+    private static final String JOB = "job";
+
+    @TempDir
+    Path tempDir;
+
+    private Path jobDir;
+    private LocalAnalysisEngine engine;
+    private List<String> progress;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path dataset = tempDir.resolve("data/dblp");
+        Files.createDirectories(dataset.resolve("nodes"));
+        Files.createDirectories(dataset.resolve("relations"));
+        // Joe has no papers, so he is left out of every view of APA
+        write(dataset.resolve("nodes/A.csv"), "id\tname\n0\tAnn\n1\tBob\n2\tEve\n3\tJoe\n");
+        write(dataset.resolve("nodes/P.csv"), "id\ttitle\tyear\n0\tp0\t2010\n1\tp1\t2015\n2\tp2\t2018\n");
+        write(dataset.resolve("relations/AP.csv"), "src\tdst\n0\t0\n0\t1\n1\t1\n1\t2\n2\t2\n");
+
+        jobDir = Files.createDirectories(tempDir.resolve("results/" + JOB));
+        engine = newEngine(Constants.LOCAL_ENGINE_MAX_VIEW_NNZ);
+        progress = new ArrayList<>();
+    }
+
+    private LocalAnalysisEngine newEngine(long maxViewNnz) {
+        HinViewCache viewCache = new HinViewCache(tempDir.resolve("cache").toFile(), 1 << 20);
+        return new LocalAnalysisEngine(viewCache, tempDir.resolve("data") + "/", tempDir.resolve("results").toString(), maxViewNnz);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Document config(String analysis, String metapath, Document constraints) {
+        return new Document("dataset", "dblp")
+            .append("analyses", new ArrayList<>(Collections.singletonList(analysis)))
+            .append("queries", Collections.singletonList(new Document("metapath", metapath).append("constraints", constraints)))
+            .append("select_field", "name")
+            .append("edgesThreshold", 1)
+            .append("pr_alpha", 0.5)
+            .append("pr_tol", 0.000001)
+            .append("searchK", 10)
+            .append("target_id", 0)
+            .append("sim_min_values", 0)
+            .append("final_ranking_out", jobDir.resolve(Constants.FINAL_RANKING_OUT).toString())
+            .append("final_sim_join_out", jobDir.resolve(Constants.FINAL_SIM_JOIN_OUT).toString())
+            .append("final_sim_search_out", jobDir.resolve(Constants.FINAL_SIM_SEARCH_OUT).toString());
+    }
+
+    private int run(Document config) throws IOException {
+        return engine.run(JOB, jobDir.resolve(Constants.CONFIG_FILE).toString(), config, progress::add);
+    }
+
+    private List<String[]> read(String file) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        for (String line : Files.readAllLines(jobDir.resolve(file), StandardCharsets.UTF_8)) {
+            rows.add(line.split("\t"));
+        }
+        return rows;
+    }
+
+    @Test
+    public void testSupportsSingleQueriesOverKnownRelations() {
+        assertThat(engine.supports(config("Ranking", "APA", new Document()))).isTrue();
+        assertThat(engine.supports(config("Similarity Join", "APA", new Document()))).isTrue();
+
+        assertThat(engine.supports(config("Community Detection", "APA", new Document()))).isFalse();
+        assertThat(engine.supports(config("Ranking", "AVA", new Document()))).isFalse();
+        assertThat(engine.supports(config("Ranking", "A", new Document()))).isFalse();
+
+        Document twoQueries = config("Ranking", "APA", new Document());
+        twoQueries.put("queries", Arrays.asList(new Document("metapath", "APA"), new Document("metapath", "PAP")));
+        assertThat(engine.supports(twoQueries)).isFalse();
+    }
+
+    @Test
+    public void testRanksNodesOfView() throws IOException {
+        assertThat(run(config("Ranking", "APA", new Document()))).isEqualTo(AnalysisEngine.EXIT_SUCCESS);
+
+        List<String[]> rows = read(Constants.FINAL_RANKING_OUT);
+        assertThat(rows.get(0)).containsExactly("id", "name", ResultWriter.RANKING_SCORE);
+        assertThat(rows).hasSize(4);
+        // Bob shares papers with both Ann and Eve
+        assertThat(rows.get(1)[1]).isEqualTo("Bob");
+        for (int i = 2; i < rows.size(); i++) {
+            assertThat(Double.parseDouble(rows.get(i)[2])).isLessThanOrEqualTo(Double.parseDouble(rows.get(i - 1)[2]));
+        }
+        assertThat(progress).contains(JobLog.HIN_TRANSFORMATION + "\t3\tCompleted", "Ranking\t3\tCompleted");
+        assertThat(Files.readAllLines(jobDir.resolve(Constants.LOG_OUT))).isEqualTo(progress);
+    }
+
+    @Test
+    public void testJoinsSimilarEntities() throws IOException {
+        assertThat(run(config("Similarity Join", "APA", new Document()))).isEqualTo(AnalysisEngine.EXIT_SUCCESS);
+
+        List<String[]> rows = read(Constants.FINAL_SIM_JOIN_OUT);
+        assertThat(rows.get(0)).containsExactly("Entity 1", "Entity 2", ResultWriter.SIMILARITY_SCORE);
+        // PathSim(Bob, Eve) = 2 * 1 / (2 + 1), PathSim(Ann, Bob) = 2 * 1 / (2 + 2)
+        assertThat(rows).hasSize(3);
+        assertThat(Arrays.asList(rows.get(1)[0], rows.get(1)[1])).containsExactlyInAnyOrder("Bob", "Eve");
+        assertThat(Double.parseDouble(rows.get(1)[2])).isCloseTo(2.0 / 3, within(1e-9));
+        assertThat(Arrays.asList(rows.get(2)[0], rows.get(2)[1])).containsExactlyInAnyOrder("Ann", "Bob");
+        assertThat(Double.parseDouble(rows.get(2)[2])).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    public void testSearchesEntitiesSimilarToTarget() throws IOException {
+        assertThat(run(config("Similarity Search", "APA", new Document()))).isEqualTo(AnalysisEngine.EXIT_SUCCESS);
+
+        List<String[]> rows = read(Constants.FINAL_SIM_SEARCH_OUT);
+        assertThat(rows.get(0)).containsExactly("Entity 1", "Entity 2", ResultWriter.SIMILARITY_SCORE);
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(1)[0]).isEqualTo("Ann");
+        assertThat(rows.get(1)[1]).isEqualTo("Bob");
+        assertThat(Double.parseDouble(rows.get(1)[2])).isCloseTo(0.5, within(1e-9));
+    }
+
+    @Test
+    public void testReportsEmptyView() throws IOException {
+        Document config = config("Ranking", "APA", new Document("P", "year > 2020"));
+
+        assertThat(run(config)).isEqualTo(AnalysisEngine.EXIT_EMPTY_VIEW);
+        assertThat(jobDir.resolve(Constants.FINAL_RANKING_OUT)).doesNotExist();
+    }
+
+    @Test
+    public void testReportsLargeView() throws IOException {
+        engine = newEngine(1);
+
+        assertThat(run(config("Ranking", "APA", new Document()))).isEqualTo(AnalysisEngine.EXIT_LARGE_VIEW);
+        assertThat(jobDir.resolve(Constants.FINAL_RANKING_OUT)).doesNotExist();
+    }
+
+    @Test
+    public void testFailsOnMalformedConstraint() throws IOException {
+        Document config = config("Ranking", "APA", new Document("P", "year >"));
+
+        assertThat(run(config)).isEqualTo(AnalysisEngine.EXIT_FAILURE);
+        assertThat(new String(Files.readAllBytes(jobDir.resolve(Constants.LOG_ERR)), StandardCharsets.UTF_8))
+            .contains(IllegalArgumentException.class.getName());
+    }
+}
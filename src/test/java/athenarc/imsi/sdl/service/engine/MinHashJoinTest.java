@@ -0,0 +1,89 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the approximate {@link MinHashJoin}.
+ */
+public class MinHashJoinTest {
+
+    private SparseMatrix half;
+    private SparseMatrix commuting;
+    private PathSim pathSim;
+
+    @BeforeEach
+    public void setUp() {
+        // 400 authors in 40 groups, each group publishing mostly in its own 5 of 200 venues
+        int edges = 4000;
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        Random random = new Random(3);
+        for (int e = 0; e < edges; e++) {
+            src[e] = random.nextInt(400);
+            dst[e] = random.nextInt(10) < 9 ? (src[e] % 40) * 5 + random.nextInt(5) : random.nextInt(200);
+        }
+        half = SparseMatrix.fromEdges(400, 200, src, dst, edges);
+        commuting = half.multiply(half.transpose());
+        pathSim = new PathSim(half);
+    }
+
+    @Test
+    public void testScoresCollidingPairsExactly() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MinHashJoin join = new MinHashJoin(pathSim, 16, 2);
+            List<SimilarityPair> pairs = join.join(100, 0, null);
+            long candidates = join.getCandidates();
+
+            assertThat(pairs).hasSize(100);
+            for (SimilarityPair pair : pairs) {
+                int i = pair.getSource();
+                int j = pair.getTarget();
+                assertThat(i).isLessThan(j);
+                assertThat(pair.getScore())
+                    .isEqualTo(2.0 * commuting.get(i, j) / (commuting.get(i, i) + commuting.get(j, j)));
+            }
+            assertThat(candidates).isBetween(100L, 400L * 399 / 2);
+
+            assertThat(join.join(100, 0, pool)).usingRecursiveFieldByFieldElementComparator().isEqualTo(pairs);
+            assertThat(join.getCandidates()).isEqualTo(candidates);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMoreBandsRecallMorePairs() {
+        List<SimilarityPair> exact = pathSim.join(200, 0);
+
+        MinHashJoin narrow = new MinHashJoin(pathSim, 2, 4);
+        double narrowRecall = recall(narrow.join(200, 0, null), exact);
+        MinHashJoin wide = new MinHashJoin(pathSim, 32, 2);
+        double wideRecall = recall(wide.join(200, 0, null), exact);
+
+        assertThat(wide.getCandidates()).isGreaterThan(narrow.getCandidates());
+        assertThat(wideRecall).isGreaterThan(narrowRecall);
+        assertThat(wideRecall).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    public void testRejectsEmptyBands() {
+        assertThatThrownBy(() -> new MinHashJoin(pathSim, 0, 4)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static double recall(List<SimilarityPair> pairs, List<SimilarityPair> exact) {
+        double kth = exact.get(exact.size() - 1).getScore();
+        long found = pairs.stream().filter(pair -> pair.getScore() >= kth).count();
+        return Math.min(found, exact.size()) / (double) exact.size();
+    }
+}
@@ -0,0 +1,91 @@
+package athenarc.imsi.sdl.service.engine;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import athenarc.imsi.sdl.service.hin.SparseMatrix;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link PathSim} similarity join and search.
+ */
+public class PathSimTest {
+
+    private SparseMatrix half;
+    private SparseMatrix commuting;
+
+    @BeforeEach
+    public void setUp() {
+        // 600 authors x 80 venues, with the first authors left without papers and many tied scores
+        int edges = 3000;
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        Random random = new Random(5);
+        for (int e = 0; e < edges; e++) {
+            src[e] = 10 + random.nextInt(590);
+            dst[e] = random.nextInt(80);
+        }
+        half = SparseMatrix.fromEdges(600, 80, src, dst, edges);
+        commuting = half.multiply(half.transpose());
+    }
+
+    @Test
+    public void testJoinMatchesAllPairs() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PathSim pathSim = new PathSim(half);
+            for (int minValues : new int[] { 0, 6 }) {
+                for (int k : new int[] { 1, 10, 500, 1_000_000 }) {
+                    List<String> expected = format(allPairs(k, minValues));
+                    assertThat(format(pathSim.join(k, minValues))).isEqualTo(expected);
+                    assertThat(format(pathSim.join(k, minValues, pool))).isEqualTo(expected);
+                }
+            }
+            assertThat(pathSim.join(0, 0, pool)).isEmpty();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSearchSkipsTheTarget() {
+        List<SimilarityPair> pairs = new PathSim(half).search(42, 5, 0);
+
+        assertThat(pairs).hasSize(5);
+        assertThat(pairs).allSatisfy(pair -> {
+            assertThat(pair.getSource()).isEqualTo(42);
+            assertThat(pair.getTarget()).isNotEqualTo(42);
+        });
+        assertThat(new PathSim(half).search(0, 5, 0)).isEmpty();
+    }
+
+    private List<SimilarityPair> allPairs(int k, int minValues) {
+        List<SimilarityPair> pairs = new ArrayList<>();
+        for (int i = 0; i < commuting.rows(); i++) {
+            for (int j = i + 1; j < commuting.rows(); j++) {
+                double value = commuting.get(i, j);
+                if (value > 0.0 && half.rowNnz(i) >= minValues && half.rowNnz(j) >= minValues) {
+                    pairs.add(new SimilarityPair(i, j, 2.0 * value / (commuting.get(i, i) + commuting.get(j, j))));
+                }
+            }
+        }
+        pairs.sort(Comparator.comparingDouble(SimilarityPair::getScore).reversed()
+            .thenComparingInt(SimilarityPair::getSource)
+            .thenComparingInt(SimilarityPair::getTarget));
+        return pairs.subList(0, Math.min(k, pairs.size()));
+    }
+
+    private static List<String> format(List<SimilarityPair> pairs) {
+        return pairs.stream()
+            .map(pair -> pair.getSource() + "-" + pair.getTarget() + ":" + pair.getScore())
+            .collect(Collectors.toList());
+    }
+}
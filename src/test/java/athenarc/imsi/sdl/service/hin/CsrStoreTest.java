@@ -0,0 +1,118 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link CsrStore} and the {@link CsrRelation} files it writes.
+ */
+public class CsrStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HinDataset dataset;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        dataset = new HinDataset("test", tempDir + "/");
+        Files.createDirectories(tempDir.resolve("nodes"));
+        Files.createDirectories(tempDir.resolve("relations"));
+        write("nodes/A.csv", "id\tname\n0\tAnn\n1\tBob\n2\tEve\n");
+        write("nodes/P.csv", "id\ttitle\n0\tp0\n1\tp1\n2\tp2\n3\tp3\n");
+        // the last edge refers to an unknown author and is skipped
+        write("relations/AP.csv", "src\tdst\n0\t0\n0\t1\n1\t1\n2\t3\n5\t0\n");
+    }
+
+    private void write(String file, String content) throws IOException {
+        Files.write(tempDir.resolve(file), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int[] neighbours(CsrMatrix relation, int row) {
+        return IntStream.range(relation.rowStart(row), relation.rowEnd(row)).map(relation::colAt).toArray();
+    }
+
+    @Test
+    public void testBuildsRelationAndItsReverse() throws IOException {
+        CsrRelation forward = CsrStore.relation(dataset, "A", "P");
+
+        assertThat(forward.rows()).isEqualTo(3);
+        assertThat(forward.cols()).isEqualTo(4);
+        assertThat(forward.nnz()).isEqualTo(4);
+        assertThat(neighbours(forward, 0)).containsExactly(0, 1);
+        assertThat(neighbours(forward, 1)).containsExactly(1);
+        assertThat(neighbours(forward, 2)).containsExactly(3);
+        assertThat(tempDir.resolve("csr/PA.csr")).exists();
+
+        CsrRelation reverse = CsrStore.relation(dataset, "P", "A");
+        assertThat(reverse.rows()).isEqualTo(4);
+        assertThat(reverse.cols()).isEqualTo(3);
+        assertThat(reverse.nnz()).isEqualTo(4);
+        assertThat(neighbours(reverse, 0)).containsExactly(0);
+        assertThat(neighbours(reverse, 1)).containsExactly(0, 1);
+        assertThat(neighbours(reverse, 2)).isEmpty();
+        assertThat(neighbours(reverse, 3)).containsExactly(2);
+    }
+
+    @Test
+    public void testReusesMappedRelationUntilInvalidated() throws IOException {
+        CsrRelation relation = CsrStore.relation(dataset, "A", "P");
+        assertThat(CsrStore.relation(dataset, "A", "P")).isSameAs(relation);
+
+        CsrStore.invalidate(dataset);
+
+        CsrRelation reopened = CsrStore.relation(dataset, "A", "P");
+        assertThat(reopened).isNotSameAs(relation);
+        assertThat(reopened.nnz()).isEqualTo(4);
+        assertThat(neighbours(reopened, 0)).containsExactly(0, 1);
+    }
+
+    @Test
+    public void testRebuildsWhenRelationFileChanges() throws IOException {
+        CsrRelation relation = CsrStore.relation(dataset, "A", "P");
+
+        File tsv = tempDir.resolve("relations/AP.csv").toFile();
+        write("relations/AP.csv", "src\tdst\n0\t0\n1\t2\n1\t3\n");
+        tsv.setLastModified(tsv.lastModified() + 1000);
+        assertThat(relation.isBuiltFrom(tsv)).isFalse();
+
+        CsrRelation rebuilt = CsrStore.relation(dataset, "A", "P");
+        assertThat(rebuilt.isBuiltFrom(tsv)).isTrue();
+        assertThat(rebuilt.nnz()).isEqualTo(3);
+        assertThat(neighbours(rebuilt, 0)).containsExactly(0);
+        assertThat(neighbours(rebuilt, 1)).containsExactly(2, 3);
+        assertThat(neighbours(rebuilt, 2)).isEmpty();
+        assertThat(neighbours(CsrStore.relation(dataset, "P", "A"), 3)).containsExactly(1);
+    }
+
+    @Test
+    public void testOpensRelationWithoutEdges() throws IOException {
+        write("relations/AP.csv", "src\tdst\n");
+
+        CsrRelation relation = CsrStore.relation(dataset, "A", "P");
+
+        assertThat(relation.nnz()).isZero();
+        for (int row = 0; row < relation.rows(); row++) {
+            assertThat(neighbours(relation, row)).isEmpty();
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        write("relations/AP.csv", "src\tdst\n0\t0\n0\t1\n1\t1\n1\t2\n1\t3\n2\t0\n2\t1\n2\t2\n2\t3\n");
+        File file = tempDir.resolve("relations/AP.csv").toFile();
+
+        assertThatThrownBy(() -> CsrRelation.open(file)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,37 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link MatrixChain} ordering.
+ */
+public class MatrixChainTest {
+
+    @Test
+    public void testMultipliesSparseEndsFirst() {
+        // a handful of authors of interest, many papers and a few venues
+        MatrixChain chain = new MatrixChain(Arrays.asList(
+            new MatrixChain.Estimate(10, 100_000, 50),
+            new MatrixChain.Estimate(100_000, 100, 100_000),
+            new MatrixChain.Estimate(100, 100_000, 100_000),
+            new MatrixChain.Estimate(100_000, 10, 50)));
+
+        assertThat(chain.toString(Arrays.asList("AP", "PV", "VP", "PA"))).isEqualTo("((AP PV) (VP PA))");
+    }
+
+    @Test
+    public void testFollowsSelectiveOperand() {
+        // the last hop is heavily constrained, so the chain is evaluated right to left
+        MatrixChain chain = new MatrixChain(Arrays.asList(
+            new MatrixChain.Estimate(100_000, 100_000, 1_000_000),
+            new MatrixChain.Estimate(100_000, 100_000, 1_000_000),
+            new MatrixChain.Estimate(100_000, 5, 5)));
+
+        assertThat(chain.split(0, 2)).isEqualTo(0);
+        assertThat(chain.cost()).isPositive();
+    }
+}
@@ -0,0 +1,89 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link NodeSet} compressed bitmaps.
+ */
+public class NodeSetTest {
+
+    // mixes sparse partitions (array containers) and dense ones (bitmap containers)
+    private static BitSet randomBits(Random random) {
+        BitSet bits = new BitSet();
+        for (int i = 0; i < 3000; i++) {
+            bits.set(random.nextInt(1 << 20));
+        }
+        bits.set(3 << 16, (3 << 16) + 30_000);
+        for (int i = 0; i < 20_000; i++) {
+            bits.set((5 << 16) + random.nextInt(1 << 16));
+        }
+        return bits;
+    }
+
+    @Test
+    public void testOperationsMatchBitSet() {
+        Random random = new Random(11);
+        BitSet a = randomBits(random);
+        BitSet b = randomBits(random);
+        NodeSet setA = NodeSet.fromBitSet(a);
+        NodeSet setB = NodeSet.fromBitSet(b);
+
+        BitSet and = (BitSet) a.clone();
+        and.and(b);
+        BitSet or = (BitSet) a.clone();
+        or.or(b);
+        BitSet andNot = (BitSet) a.clone();
+        andNot.andNot(b);
+
+        assertThat(setA.cardinality()).isEqualTo(a.cardinality());
+        assertThat(setA.and(setB).toBitSet()).isEqualTo(and);
+        assertThat(setA.or(setB).toBitSet()).isEqualTo(or);
+        assertThat(setA.andNot(setB).toBitSet()).isEqualTo(andNot);
+        assertThat(setA.toBitSet()).isEqualTo(a);
+        for (int i = 0; i < 1000; i++) {
+            int id = random.nextInt(1 << 20);
+            assertThat(setA.contains(id)).isEqualTo(a.get(id));
+        }
+    }
+
+    @Test
+    public void testUnorderedAdds() {
+        NodeSet set = NodeSet.of(70_000, 5, 3, 70_000, 1 << 20, 4);
+
+        assertThat(set.toArray()).containsExactly(3, 4, 5, 70_000, 1 << 20);
+        assertThat(set.contains(70_000)).isTrue();
+        assertThat(set.contains(6)).isFalse();
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws IOException {
+        NodeSet set = NodeSet.fromBitSet(randomBits(new Random(3)));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        set.serialize(new DataOutputStream(bytes));
+        NodeSet copy = NodeSet.deserialize(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(copy).isEqualTo(set);
+        assertThat(copy.or(NodeSet.of(7)).contains(7)).isTrue();
+    }
+
+    @Test
+    public void testDenseSetsAreCompact() {
+        BitSet bits = new BitSet();
+        bits.set(0, 1_000_000);
+        NodeSet set = NodeSet.fromBitSet(bits);
+
+        assertThat(set.cardinality()).isEqualTo(1_000_000);
+        assertThat(set.sizeInBytes()).isLessThan(200_000);
+    }
+}
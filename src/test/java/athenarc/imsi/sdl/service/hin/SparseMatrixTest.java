@@ -0,0 +1,98 @@
+package athenarc.imsi.sdl.service.hin;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link SparseMatrix} operations.
+ */
+public class SparseMatrixTest {
+
+    // authors x papers: a0 -> p0, p1; a1 -> p1; a2 -> p2
+    private SparseMatrix authorPaper() {
+        int[] src = { 0, 0, 1, 2, 0 };
+        int[] dst = { 0, 1, 1, 2, 0 };
+        return SparseMatrix.fromEdges(3, 3, src, dst, 5);
+    }
+
+    @Test
+    public void testFromEdgesSumsDuplicates() {
+        SparseMatrix ap = authorPaper();
+
+        assertThat(ap.nnz()).isEqualTo(4);
+        assertThat(ap.get(0, 0)).isEqualTo(2.0);
+        assertThat(ap.get(0, 1)).isEqualTo(1.0);
+        assertThat(ap.get(1, 0)).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testCommutingMatrix() {
+        SparseMatrix ap = authorPaper();
+        SparseMatrix apa = ap.multiply(ap.transpose());
+
+        assertThat(apa.rows()).isEqualTo(3);
+        assertThat(apa.cols()).isEqualTo(3);
+        assertThat(apa.get(0, 0)).isEqualTo(5.0);
+        assertThat(apa.get(0, 1)).isEqualTo(1.0);
+        assertThat(apa.get(1, 0)).isEqualTo(1.0);
+        assertThat(apa.get(0, 2)).isEqualTo(0.0);
+        assertThat(apa.get(2, 2)).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testMaskAndThreshold() {
+        SparseMatrix ap = authorPaper();
+        BitSet papers = new BitSet();
+        papers.set(1);
+
+        SparseMatrix masked = ap.mask(null, papers);
+        assertThat(masked.nnz()).isEqualTo(2);
+        assertThat(masked.get(0, 0)).isEqualTo(0.0);
+        assertThat(masked.get(1, 1)).isEqualTo(1.0);
+
+        SparseMatrix strong = ap.threshold(2.0);
+        assertThat(strong.nnz()).isEqualTo(1);
+        assertThat(strong.get(0, 0)).isEqualTo(2.0);
+    }
+
+    @Test
+    public void testParallelProductMatchesSequential() {
+        int rows = 2000;
+        int cols = 300;
+        int edges = 20000;
+        int[] src = new int[edges];
+        int[] dst = new int[edges];
+        Random random = new Random(42);
+        for (int e = 0; e < edges; e++) {
+            src[e] = random.nextInt(rows);
+            dst[e] = random.nextInt(cols);
+        }
+        SparseMatrix m = SparseMatrix.fromEdges(rows, cols, src, dst, edges);
+        SparseMatrix mt = m.transpose();
+
+        BitSet selected = new BitSet();
+        selected.set(0, rows, true);
+        selected.clear(10, 500);
+
+        SparseMatrix sequential = SparseMatrix.multiply(m, selected, null, mt, selected, null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            SparseMatrix parallel = SparseMatrix.multiply(m, selected, null, mt, selected, pool);
+
+            assertThat(parallel.nnz()).isEqualTo(sequential.nnz());
+            for (int i = 0; i < rows; i += 7) {
+                for (int j = 0; j < rows; j += 13) {
+                    assertThat(parallel.get(i, j)).isEqualTo(sequential.get(i, j));
+                }
+            }
+            assertThat(parallel.get(20, 20)).isEqualTo(0.0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import athenarc.imsi.sdl.service.hin.ConstraintExpression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link AttributeIndex} of node files.
+ */
+public class AttributeIndexTest {
+
+    private static final String[] VENUES = { "KDD", "ICDE", "kdd", "VLDB", "SIGMOD", "ICDE" };
+    private static final String[] YEARS = { "2014", "2016", "2019", "", "2016", "n/a" };
+
+    @TempDir
+    Path tempDir;
+    private File nodes;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder("id\tname\tyear\n");
+        for (int i = 0; i < VENUES.length; i++) {
+            sb.append(i).append('\t').append(VENUES[i]).append('\t').append(YEARS[i]).append('\n');
+        }
+        nodes = tempDir.resolve("V.csv").toFile();
+        Files.write(nodes.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private AttributeIndex load() throws IOException {
+        return AttributeIndex.load(nodes, tempDir.resolve("index/V.attr").toFile(), VENUES.length);
+    }
+
+    @Test
+    public void testMatchesScanOfNodeFile() throws IOException {
+        AttributeIndex index = load();
+        String[] constraints = {
+            "name = 'KDD'", "name != 'icde'", "name > 'kdd'", "name <= 'ICDE'",
+            "year > 2015", "year = 2016", "year <> 2016", "year < 2016.5 and name = 'sigmod'",
+            "(year >= 2019 or name = 'VLDB') and id >= 1", "year = '2016'", "V.unknown = 1"
+        };
+
+        for (String constraint : constraints) {
+            ConstraintExpression expression = ConstraintExpression.parse(constraint);
+            assertThat(index.evaluate(expression)).as(constraint).isEqualTo(scan(expression));
+        }
+    }
+
+    @Test
+    public void testComparesStringsCaseSensitively() throws IOException {
+        AttributeIndex index = load();
+
+        assertThat(index.evaluate(ConstraintExpression.parse("name = 'KDD'"))).isEqualTo(bits(0));
+        assertThat(index.evaluate(ConstraintExpression.parse("name = 'kdd'"))).isEqualTo(bits(2));
+        assertThat(index.evaluate(ConstraintExpression.parse("name = 'Kdd'"))).isEqualTo(bits());
+        // upper-case letters sort before lower-case ones
+        assertThat(index.evaluate(ConstraintExpression.parse("name > 'VLDB'"))).isEqualTo(bits(2));
+    }
+
+    @Test
+    public void testReusesPersistedIndexUntilNodesChange() throws IOException {
+        load();
+        File indexFile = tempDir.resolve("index/V.attr").toFile();
+        assertThat(indexFile).exists();
+        long built = indexFile.lastModified();
+
+        assertThat(load().evaluate(ConstraintExpression.parse("year = 2016")).cardinality()).isEqualTo(2);
+        assertThat(indexFile.lastModified()).isEqualTo(built);
+
+        Files.write(nodes.toPath(), "id\tname\tyear\n0\tKDD\t2016\n".getBytes(StandardCharsets.UTF_8));
+        nodes.setLastModified(built + 10_000);
+        assertThat(load().evaluate(ConstraintExpression.parse("year = 2016")).cardinality()).isEqualTo(1);
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids) {
+            bits.set(id);
+        }
+        return bits;
+    }
+
+    private static BitSet scan(ConstraintExpression expression) {
+        BitSet matching = new BitSet();
+        for (int i = 0; i < VENUES.length; i++) {
+            final int id = i;
+            boolean matches = expression.matches(field -> {
+                switch (field) {
+                    case "id": return String.valueOf(id);
+                    case "name": return VENUES[id];
+                    case "year": return YEARS[id];
+                    default: return null;
+                }
+            });
+            if (matches) {
+                matching.set(i);
+            }
+        }
+        return matching;
+    }
+}
@@ -0,0 +1,82 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link AutocompleteIndex} of node files.
+ */
+public class AutocompleteIndexTest {
+
+    private static final String[] NAMES = {
+        "Data Mining", "data", "Big Data", "Database Systems", "Mining Data Streams", "Data", "Graph Mining"
+    };
+
+    @TempDir
+    Path tempDir;
+    private File nodes;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        StringBuilder sb = new StringBuilder("id\tname\n");
+        for (int i = 0; i < NAMES.length; i++) {
+            sb.append(i + 10).append('\t').append(NAMES[i]).append('\n');
+        }
+        nodes = tempDir.resolve("P.csv").toFile();
+        Files.write(nodes.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> values(AutocompleteIndex index, int[] rows) {
+        List<String> values = new ArrayList<>();
+        for (int row : rows) {
+            values.add(index.getValue(row));
+        }
+        return values;
+    }
+
+    @Test
+    public void testRanksExactThenPrefixThenSubstringMatches() throws IOException {
+        AutocompleteIndex index = AutocompleteIndex.build(nodes, "name");
+        assertThat(index.isBuiltFrom(nodes)).isTrue();
+
+        int[] rows = index.search("data", false, 0);
+        assertThat(values(index, rows)).containsExactly(
+            "data", "Data", "Data Mining", "Database Systems", "Big Data", "Mining Data Streams");
+        assertThat(index.getId(rows[0])).isEqualTo(11);
+
+        assertThat(values(index, index.search("data", true, 0))).containsExactly(
+            "data", "Data", "Data Mining", "Database Systems", "Big Data", "Mining Data Streams");
+        assertThat(values(index, index.search("data", false, 3))).containsExactly("data", "Data", "Data Mining");
+        assertThat(values(index, index.search("mining", false, 0))).containsExactly(
+            "Mining Data Streams", "Data Mining", "Graph Mining");
+        assertThat(index.search("mining systems", false, 0)).isEmpty();
+    }
+
+    @Test
+    public void testMatchesScanOfNodeFile() throws IOException {
+        AutocompleteIndex index = AutocompleteIndex.build(nodes, "name");
+        String[] terms = { "a", "da", "at", "ta ", "g m", "ing", "ase sys", "xyz", "" };
+
+        for (String term : terms) {
+            List<String> expected = new ArrayList<>();
+            for (String name : NAMES) {
+                if (name.toLowerCase().contains(term)) {
+                    expected.add(name);
+                }
+            }
+            assertThat(values(index, index.search(term, false, 0)))
+                .as(term).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link CommunityIndex} of community results.
+ */
+public class CommunityIndexTest {
+
+    @TempDir
+    Path tempDir;
+    private File results;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        results = tempDir.resolve("COMMUNITY_RANKING_RESULT.csv").toFile();
+        FileUtils.writeStringToFile(results, "id\tname\tCommunity\tRanking Score\r\n"
+            + "1\tA\t7\t0.1\r\n"
+            + "2\tB\t7\t0.4\r\n"
+            + "3\tΓ\t7\t0.3\r\n"
+            + "4\tD\t12\t0.2\r\n"
+            + "5\tE\t3\t0.2\r\n"
+            + "6\tF\t3\t0.2\r\n", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSummarizesCommunitiesInOrderOfAppearance() throws IOException {
+        CommunityIndex index = CommunityIndex.load(results.getPath(), 2);
+
+        assertThat(CommunityIndex.getIndexFile(results.getPath())).exists();
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.getId(0)).isEqualTo("7");
+        assertThat(index.getId(2)).isEqualTo("3");
+        assertThat(index.getFirstRow(1)).isEqualTo(3);
+        assertThat(index.getCount(0)).isEqualTo(3);
+        assertThat(index.getCount(2)).isEqualTo(2);
+        assertThat(index.getTopRows(0)).containsExactly(1, 2);
+        // equal scores keep the earlier members
+        assertThat(index.getTopRows(2)).containsExactly(4, 5);
+
+        assertThat(index.indexOf("12")).isEqualTo(1);
+        assertThat(index.indexOf("3")).isEqualTo(2);
+        assertThat(index.indexOf("4")).isEqualTo(-1);
+
+        try (RandomAccessFile raf = new RandomAccessFile(results, "r")) {
+            raf.seek(index.getOffset(1));
+            assertThat(raf.readLine()).isEqualTo("4\tD\t12\t0.2");
+        }
+    }
+
+    @Test
+    public void testRebuildsWhenResultFileChanges() throws IOException {
+        assertThat(CommunityIndex.load(results.getPath(), 2).size()).isEqualTo(3);
+
+        FileUtils.writeStringToFile(results, "id\tCommunity\n1\t5\n", StandardCharsets.UTF_8);
+        results.setLastModified(results.lastModified() + 2000);
+        CommunityIndex index = CommunityIndex.load(results.getPath(), 2);
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.getTopRows(0)).containsExactly(0);
+        assertThat(CommunityIndex.load(results.getPath(), 3).getTopK()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,80 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link CommunityTree} of hierarchical community results.
+ */
+public class CommunityTreeTest {
+
+    @TempDir
+    Path tempDir;
+    private File results;
+    private CommunityTree tree;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        results = tempDir.resolve("COMMUNITY_RESULT.csv").toFile();
+        // leaf communities 4 and 5 are in 1, leaf community 6 in 2, and both 1 and 2 in the top-level community 0
+        Files.write(results.toPath(), ("id\tname\tCommunity\n"
+            + "1\tA\t4-1-0\n"
+            + "2\tB\t6-2-0\n"
+            + "3\tC\t5-1-0\n"
+            + "4\tD\t4-1-0\n"
+            + "5\tE\t7-3-9\n"
+            + "6\tF\t6-2-0\n").getBytes(StandardCharsets.UTF_8));
+        tree = CommunityTree.load(results.getPath(), 2);
+    }
+
+    @Test
+    public void testLinksCommunitiesToTheirChildren() {
+        assertThat(CommunityTree.getIndexFile(results.getPath())).exists();
+        assertThat(tree.getRootCount()).isEqualTo(2);
+        int top = tree.getRoot(0);
+        assertThat(tree.getId(top)).isEqualTo("0");
+        assertThat(tree.getId(tree.getRoot(1))).isEqualTo("9");
+        assertThat(tree.getLevel(top)).isEqualTo(2);
+        assertThat(tree.getParent(top)).isEqualTo(-1);
+        assertThat(tree.getSubtreeSize(top)).isEqualTo(5);
+
+        assertThat(tree.getChildCount(top)).isEqualTo(2);
+        int first = tree.getChild(top, 0);
+        assertThat(tree.getId(first)).isEqualTo("1");
+        assertThat(tree.getParent(first)).isEqualTo(top);
+        assertThat(tree.getId(tree.getChild(first, 1))).isEqualTo("5");
+        assertThat(tree.getSubtreeSize(first)).isEqualTo(3);
+    }
+
+    @Test
+    public void testLocatesMembers() throws IOException {
+        int leaf = tree.find("4");
+        assertThat(tree.getChildCount(leaf)).isZero();
+        assertThat(tree.getDirectSize(leaf)).isEqualTo(2);
+        assertThat(tree.getRow(tree.getDirectMember(leaf, 0))).isEqualTo(0);
+        assertThat(tree.getRow(tree.getDirectMember(leaf, 1))).isEqualTo(3);
+
+        try (RandomAccessFile raf = new RandomAccessFile(results, "r")) {
+            raf.seek(tree.getOffset(tree.getDirectMember(leaf, 1)));
+            assertThat(raf.readLine()).isEqualTo("4\tD\t4-1-0");
+        }
+
+        // the first members of a subtree in file order
+        int[] sample = tree.getSample(tree.find("0"));
+        assertThat(sample).hasSize(2);
+        assertThat(tree.getRow(sample[0])).isEqualTo(0);
+        assertThat(tree.getRow(sample[1])).isEqualTo(1);
+
+        assertThat(tree.find("8")).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,79 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import athenarc.imsi.sdl.config.Constants;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link PageIndex} sidecar index.
+ */
+public class PageIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String writeResults(String name, int rows) throws IOException {
+        StringBuilder sb = new StringBuilder("id\tname\tRanking Score\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append(i).append("\tentity ").append(i).append("\t0.").append(i).append('\n');
+        }
+        Path file = tempDir.resolve(name);
+        Files.write(file, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    private String readLineAt(String file, long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            return raf.readLine();
+        }
+    }
+
+    @Test
+    public void testPagesPointToRecordStarts() throws IOException {
+        String file = writeResults("RANKING_RESULT.csv", 2 * Constants.PAGE_SIZE + 7);
+
+        PageIndex index = PageIndex.load(file);
+
+        assertThat(index.getHeaders()).containsExactly("id", "name", "Ranking Score");
+        assertThat(index.getTotalRecords()).isEqualTo(2 * Constants.PAGE_SIZE + 7);
+        assertThat(index.getTotalPages()).isEqualTo(3);
+        assertThat(readLineAt(file, index.getPageOffset(1))).startsWith("0\t");
+        assertThat(readLineAt(file, index.getPageOffset(3))).startsWith((2 * Constants.PAGE_SIZE) + "\t");
+        assertThat(index.getPageOffset(0)).isEqualTo(-1);
+        assertThat(index.getPageOffset(4)).isEqualTo(-1);
+        assertThat(PageIndex.getIndexFile(file)).exists();
+    }
+
+    @Test
+    public void testIndexIsRebuiltWhenResultsChange() throws IOException {
+        String file = writeResults("RANKING_RESULT.csv", 10);
+        assertThat(PageIndex.load(file).getTotalRecords()).isEqualTo(10);
+
+        writeResults("RANKING_RESULT.csv", Constants.PAGE_SIZE + 1);
+        new File(file).setLastModified(System.currentTimeMillis() + 1000);
+
+        PageIndex index = PageIndex.load(file);
+        assertThat(index.getTotalRecords()).isEqualTo(Constants.PAGE_SIZE + 1);
+        assertThat(index.getTotalPages()).isEqualTo(2);
+    }
+
+    @Test
+    public void testLastRecordWithoutNewline() throws IOException {
+        Path file = tempDir.resolve("SIM_JOIN_RESULT.csv");
+        Files.write(file, "Entity 1\tEntity 2\tSimilarity Score\na\tb\t1.0\nc\td\t0.5".getBytes(StandardCharsets.UTF_8));
+
+        PageIndex index = PageIndex.load(file.toString());
+        assertThat(index.getTotalRecords()).isEqualTo(2);
+    }
+}
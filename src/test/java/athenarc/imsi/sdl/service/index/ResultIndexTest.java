@@ -0,0 +1,87 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link ResultIndex} of result files.
+ */
+public class ResultIndexTest {
+
+    @TempDir
+    Path tempDir;
+    private File results;
+    private ResultIndex index;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        results = tempDir.resolve("RANKING_COMMUNITY_RESULT.csv").toFile();
+        Files.write(results.toPath(), ("id\tname\tCommunity\tRanking Score\n"
+            + "10\tJiawei Han\t1\t0.5\n"
+            + "11\tPhilip Yu\t1\t0.25\n"
+            + "12\tHan Wei\t2\t0.25\n"
+            + "13\tAnn Hanley\t2\t0.125\n"
+            + "14\tZoe Lee\t3\t0.0625\n").getBytes(StandardCharsets.UTF_8));
+        index = ResultIndex.load(results.getPath());
+    }
+
+    @Test
+    public void testFiltersRows() {
+        assertThat(index.matching(1, "HAN", false).stream()).containsExactly(0, 2, 3);
+        assertThat(index.matching(1, "han", true).stream()).containsExactly(2);
+        assertThat(index.matching(1, "jiawei han", true).stream()).containsExactly(0);
+        assertThat(index.range(3, 0.1, 0.25).stream()).containsExactly(1, 2, 3);
+        assertThat(index.range(3, null, 0.1).stream()).containsExactly(4);
+        assertThat(index.range(1, 0.0, 1.0).isEmpty()).isTrue();
+        assertThat(index.equalTo(2, "2").stream()).containsExactly(2, 3);
+        assertThat(index.equalTo(2, "x").isEmpty()).isTrue();
+    }
+
+    @Test
+    public void testSortsAndPagesRows() {
+        assertThat(index.select(null, -1, false, 1, 2)).containsExactly(1, 2);
+        assertThat(index.select(null, 3, false, 0, 5)).containsExactly(4, 3, 1, 2, 0);
+        // equal scores keep the file order in both directions
+        assertThat(index.select(null, 3, true, 0, 5)).containsExactly(0, 1, 2, 3, 4);
+        assertThat(index.select(null, 1, false, 0, 2)).containsExactly(3, 2);
+
+        BitSet rows = index.matching(1, "han", false);
+        assertThat(index.select(rows, 3, true, 1, 5)).containsExactly(2, 3);
+        assertThat(index.select(rows, -1, false, 3, 5)).isEmpty();
+    }
+
+    @Test
+    public void testSortsMissingValuesLast() throws IOException {
+        Files.write(results.toPath(), ("id\tname\tRanking Score\n"
+            + "10\tJiawei Han\t0.5\n"
+            + "11\tPhilip Yu\n"
+            + "12\tHan Wei\t0.25\n"
+            + "13\tAnn Hanley\n"
+            + "14\tZoe Lee\t0.0625\n").getBytes(StandardCharsets.UTF_8));
+        results.setLastModified(results.lastModified() + 2000);
+        index = ResultIndex.load(results.getPath());
+
+        assertThat(index.select(null, 2, false, 0, 5)).containsExactly(4, 2, 0, 1, 3);
+        assertThat(index.select(null, 2, true, 0, 5)).containsExactly(0, 2, 4, 1, 3);
+        assertThat(index.select(null, 2, true, 2, 2)).containsExactly(4, 1);
+        assertThat(index.select(index.matching(1, "han", false), 2, true, 0, 5)).containsExactly(0, 2, 3);
+    }
+
+    @Test
+    public void testDetectsRewrittenResults() throws IOException {
+        assertThat(index.isBuiltFrom(results)).isTrue();
+        Files.write(results.toPath(), "id\tname\n".getBytes(StandardCharsets.UTF_8));
+        results.setLastModified(results.lastModified() + 2000);
+        assertThat(index.isBuiltFrom(results)).isFalse();
+    }
+}
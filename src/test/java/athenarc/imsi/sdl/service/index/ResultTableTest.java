@@ -0,0 +1,88 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link ResultTable} of result files.
+ */
+public class ResultTableTest {
+
+    @TempDir
+    Path tempDir;
+    private File results;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        results = tempDir.resolve("COMMUNITY_RESULT.csv").toFile();
+        FileUtils.writeStringToFile(results, "id\tname\tCommunity\tScore\n"
+            + "130\tAuthor 130\t2\t0.010188202902424774\n"
+            + "7\tΑθηνά\t2\t1e-05\n"
+            + "42\tAuthor 130\t5\n", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStoresColumnsByType() throws IOException {
+        ResultTable table = ResultTable.load(results.getPath());
+
+        assertThat(ResultTable.getTableFile(results.getPath())).exists();
+        assertThat(table.getRowCount()).isEqualTo(3);
+        assertThat(table.getHeaders()).containsExactly("id", "name", "Community", "Score");
+        assertThat(table.getType(0)).isEqualTo(ResultTable.INT);
+        assertThat(table.getType(1)).isEqualTo(ResultTable.DICTIONARY);
+        assertThat(table.getType(2)).isEqualTo(ResultTable.INT);
+        // a missing score and one that does not print back the same way keep the column as text
+        assertThat(table.getType(3)).isEqualTo(ResultTable.DICTIONARY);
+
+        assertThat(table.getInt(0, 0)).isEqualTo(130);
+        assertThat(table.getDictionarySize(1)).isEqualTo(2);
+        assertThat(table.getCode(2, 1)).isEqualTo(table.getCode(0, 1));
+        assertThat(table.getKey(0, 2)).isEqualTo(table.getKey(1, 2)).isNotEqualTo(table.getKey(2, 2));
+        assertThat(table.getString(1, 1)).isEqualTo("Αθηνά");
+        assertThat(table.getString(0, 3)).isEqualTo("0.010188202902424774");
+        assertThat(table.getString(1, 3)).isEqualTo("1e-05");
+        assertThat(table.getString(2, 3)).isNull();
+    }
+
+    @Test
+    public void testStoresExactScoresAsDoubles() throws IOException {
+        FileUtils.writeStringToFile(results, "Entity 1\tEntity 2\tSimilarity Score\n"
+            + "Author 3\tAuthor 58\t0.8571428571428571\nAuthor 3\tAuthor 126\t1.0\n", StandardCharsets.UTF_8);
+        ResultTable table = ResultTable.load(results.getPath());
+
+        assertThat(table.getType(2)).isEqualTo(ResultTable.DOUBLE);
+        assertThat(table.getDouble(0, 2)).isEqualTo(0.8571428571428571);
+        assertThat(table.getString(1, 2)).isEqualTo("1.0");
+        assertThat(table.getColumn("Entity 2")).isEqualTo(1);
+        assertThat(table.getColumn("Community")).isEqualTo(-1);
+    }
+
+    @Test
+    public void testRebuildsWhenResultFileChanges() throws IOException {
+        ResultTable loaded = ResultTable.load(results.getPath());
+        assertThat(loaded.getRowCount()).isEqualTo(3);
+        // unchanged results are served from the loaded table
+        assertThat(ResultTable.load(results.getPath())).isSameAs(loaded);
+
+        FileUtils.writeStringToFile(results, "id\tname\n1\tA\n", StandardCharsets.UTF_8);
+        results.setLastModified(results.lastModified() + 2000);
+        ResultTable table = ResultTable.load(results.getPath());
+        assertThat(table.getRowCount()).isEqualTo(1);
+        assertThat(table.getString(0, 1)).isEqualTo("A");
+    }
+
+    @Test
+    public void testRejectsRowsWithoutHeaders() throws IOException {
+        FileUtils.writeStringToFile(results, "id\n1\tA\n", StandardCharsets.UTF_8);
+        assertThat(ResultTable.load(results.getPath())).isNull();
+    }
+}
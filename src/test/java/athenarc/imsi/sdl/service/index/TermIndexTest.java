@@ -0,0 +1,90 @@
+package athenarc.imsi.sdl.service.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link TermIndex} of node files.
+ */
+public class TermIndexTest {
+
+    @TempDir
+    Path tempDir;
+    private File nodes;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        nodes = tempDir.resolve("V.csv").toFile();
+        FileUtils.writeStringToFile(nodes, "id\tname\n0\tKDD\n1\tICDE\n2\tkdd\n3\n4\tSIGMOD\n", StandardCharsets.UTF_8);
+    }
+
+    private TermIndex load() throws IOException {
+        return TermIndex.load(nodes, tempDir.resolve("index").toFile(), "V", "name");
+    }
+
+    @Test
+    public void testContainsValuesIgnoringCase() throws IOException {
+        TermIndex index = load();
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.contains("kdd")).isTrue();
+        assertThat(index.contains("Icde")).isTrue();
+        assertThat(index.contains("sigmod")).isTrue();
+        assertThat(index.contains("vldb")).isFalse();
+        assertThat(index.contains("")).isFalse();
+        assertThat(index.contains("0")).isFalse();
+        assertThat(tempDir.resolve("index/V.1.terms")).exists();
+    }
+
+    @Test
+    public void testLowerCasesWholeValues() throws IOException {
+        FileUtils.writeStringToFile(nodes, "id\tname\n0\tΟΔΥΣΣΕΑΣ\n", StandardCharsets.UTF_8);
+        TermIndex index = load();
+
+        // the final capital sigma is lower-cased to a final sigma, as the terms are
+        assertThat(index.contains("ΟΔΥΣΣΕΑΣ".toLowerCase())).isTrue();
+        assertThat(index.contains("οδυσσεας")).isTrue();
+        assertThat(index.contains("οδυσσεασ")).isFalse();
+    }
+
+    @Test
+    public void testRejectsUnknownField() {
+        assertThatThrownBy(() -> TermIndex.load(nodes, tempDir.resolve("index").toFile(), "V", "venue"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(tempDir.resolve("index")).doesNotExist();
+    }
+
+    @Test
+    public void testWarmLookupDoesNotReadNodeFile() throws IOException {
+        TermIndex index = load();
+
+        // a header of the same length, with the same modification time, is only seen once the file is read again
+        long modified = nodes.lastModified();
+        FileUtils.writeStringToFile(nodes, "id\tnome\n0\tKDD\n1\tICDE\n2\tkdd\n3\n4\tSIGMOD\n", StandardCharsets.UTF_8);
+        nodes.setLastModified(modified);
+
+        assertThat(load()).isSameAs(index);
+    }
+
+    @Test
+    public void testRebuildsWhenNodeFileChanges() throws IOException {
+        assertThat(load().contains("vldb")).isFalse();
+
+        FileUtils.writeStringToFile(nodes, "id\tname\n0\tKDD\n1\tVLDB\n", StandardCharsets.UTF_8);
+        nodes.setLastModified(nodes.lastModified() + 1000);
+
+        TermIndex index = load();
+        assertThat(index.contains("vldb")).isTrue();
+        assertThat(index.contains("icde")).isFalse();
+    }
+}
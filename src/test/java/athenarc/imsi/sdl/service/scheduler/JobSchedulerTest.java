@@ -0,0 +1,124 @@
+package athenarc.imsi.sdl.service.scheduler;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import athenarc.imsi.sdl.service.JobQueueFullException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link JobScheduler}.
+ */
+public class JobSchedulerTest {
+
+    private JobScheduler scheduler;
+    private CountDownLatch release;
+    private List<String> started;
+
+    @BeforeEach
+    public void setUp() {
+        // two slots, one per dataset, two queued jobs and one unit of cost per second
+        scheduler = new JobScheduler(2, 1, 2, 1.0);
+        release = new CountDownLatch(1);
+        started = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    private Runnable task(String id) {
+        return () -> {
+            started.add(id);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((scheduler.getRunningJobs() > 0 || scheduler.getQueueSize() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testLimitsConcurrencyPerDatasetAndRejectsWhenFull() throws InterruptedException {
+        scheduler.submit("a1", "A", JobPriority.NORMAL, 10, task("a1"));
+        scheduler.submit("a2", "A", JobPriority.NORMAL, 10, task("a2"));
+        scheduler.submit("b1", "B", JobPriority.NORMAL, 10, task("b1"));
+
+        assertThat(scheduler.getRunningJobs()).isEqualTo(2);
+        assertThat(scheduler.getQueueSize()).isEqualTo(1);
+        assertThat(scheduler.getStatus("a1").isQueued()).isFalse();
+        assertThat(scheduler.getStatus("b1").isQueued()).isFalse();
+
+        JobScheduler.JobStatus status = scheduler.getStatus("a2");
+        assertThat(status.isQueued()).isTrue();
+        assertThat(status.getQueuePosition()).isEqualTo(0);
+        // both running jobs still have up to 10 seconds to go, shared by two slots, plus its own 10 seconds
+        assertThat(status.getEtaSeconds()).isBetween(18L, 20L);
+
+        scheduler.submit("c1", "C", JobPriority.LOW, 10, task("c1"));
+        assertThatThrownBy(() -> scheduler.submit("c2", "C", JobPriority.HIGH, 10, task("c2")))
+            .isInstanceOf(JobQueueFullException.class);
+        assertThat(scheduler.getStatus("c2")).isNull();
+
+        release.countDown();
+        awaitIdle();
+        assertThat(started).containsExactlyInAnyOrder("a1", "b1", "a2", "c1");
+        assertThat(scheduler.getStatus("a1")).isNull();
+    }
+
+    @Test
+    public void testStartsJobWithFreeSlotWhenQueueIsFull() throws InterruptedException {
+        scheduler.submit("a1", "A", JobPriority.NORMAL, 10, task("a1"));
+        scheduler.submit("a2", "A", JobPriority.NORMAL, 10, task("a2"));
+        scheduler.submit("a3", "A", JobPriority.NORMAL, 10, task("a3"));
+        assertThat(scheduler.getQueueSize()).isEqualTo(2);
+
+        scheduler.submit("b1", "B", JobPriority.NORMAL, 10, task("b1"));
+        assertThat(scheduler.getStatus("b1").isQueued()).isFalse();
+        assertThat(scheduler.getRunningJobs()).isEqualTo(2);
+        assertThat(scheduler.getQueueSize()).isEqualTo(2);
+
+        // both slots are taken now
+        assertThatThrownBy(() -> scheduler.submit("c1", "C", JobPriority.NORMAL, 10, task("c1")))
+            .isInstanceOf(JobQueueFullException.class);
+
+        release.countDown();
+        awaitIdle();
+        assertThat(started).containsExactlyInAnyOrder("a1", "b1", "a2", "a3");
+    }
+
+    @Test
+    public void testStartsQueuedJobsByPriority() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler = new JobScheduler(1, 1, 10, 1.0);
+        scheduler.submit("first", "A", JobPriority.LOW, 1, task("first"));
+        scheduler.submit("low", "A", JobPriority.LOW, 1, task("low"));
+        scheduler.submit("normal", "B", JobPriority.NORMAL, 1, task("normal"));
+        scheduler.submit("high", "A", JobPriority.HIGH, 1, task("high"));
+
+        assertThat(scheduler.getStatus("high").getQueuePosition()).isEqualTo(0);
+        assertThat(scheduler.getStatus("normal").getQueuePosition()).isEqualTo(1);
+        assertThat(scheduler.getStatus("low").getQueuePosition()).isEqualTo(2);
+
+        release.countDown();
+        awaitIdle();
+        assertThat(started).containsExactly("first", "high", "normal", "low");
+    }
+}
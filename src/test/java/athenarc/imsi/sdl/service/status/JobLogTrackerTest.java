@@ -0,0 +1,85 @@
+package athenarc.imsi.sdl.service.status;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link JobLogTracker}.
+ */
+public class JobLogTrackerTest {
+
+    @TempDir
+    Path tempDir;
+    private File logfile;
+    private JobLogTracker tracker;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        logfile = tempDir.resolve("job").resolve("log.out").toFile();
+        logfile.getParentFile().mkdirs();
+        logfile.createNewFile();
+        tracker = new JobLogTracker(tempDir.toFile(), 10);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        tracker.close();
+    }
+
+    private void append(String text) throws IOException {
+        Files.write(logfile.toPath(), text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Waits for the tracker to see the whole log, as modifications are reported asynchronously.
+     */
+    private Document awaitLogInfo() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        Document info = tracker.getLogInfo("job");
+        while (tracker.getOffset("job") != logfile.length() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            info = tracker.getLogInfo("job");
+        }
+        return info;
+    }
+
+    private static Document logInfo(String lastLine, int stageNum, String... completedStages) {
+        return new Document()
+            .append("lastLine", lastLine)
+            .append("stageNum", stageNum)
+            .append("completedStages", Arrays.asList(completedStages));
+    }
+
+    @Test
+    public void testReadsOnlyAppendedBytes() throws IOException, InterruptedException {
+        assertThat(tracker.getLogInfo("job")).isEqualTo(logInfo("", 0));
+        assertThat(tracker.getOffset("job")).isEqualTo(0);
+
+        append("HIN Transformation\t1\tLoading relations\nHIN Transformation\t3\tCompleted\n");
+        assertThat(awaitLogInfo()).isEqualTo(logInfo("HIN Transformation\t3\tCompleted", 1, "HIN Transformation"));
+        long offset = tracker.getOffset("job");
+        assertThat(offset).isEqualTo(logfile.length());
+
+        // a partial line is the last line until it is terminated
+        append("Ranking\t1\tComputing PageRank\nRanking\t3\tComp");
+        assertThat(awaitLogInfo().get("lastLine")).isEqualTo("Ranking\t3\tComp");
+        assertThat(tracker.getOffset("job")).isGreaterThan(offset);
+
+        append("leted\nExit Code\t0");
+        Document info = awaitLogInfo();
+        assertThat(info).isEqualTo(logInfo("Exit Code\t0", 2, "HIN Transformation", "Ranking"));
+    }
+}
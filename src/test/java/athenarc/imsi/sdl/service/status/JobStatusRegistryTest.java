@@ -0,0 +1,105 @@
+package athenarc.imsi.sdl.service.status;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the {@link JobStatusRegistry}.
+ */
+public class JobStatusRegistryTest {
+
+    private static final String[] LOG = {
+        "HIN Transformation\t1\tLoading relations and applying constraints",
+        "HIN Transformation\t3\tCompleted",
+        "Ranking\t1\tComputing PageRank",
+        "Ranking\t2\tIteration 1, error 0.25",
+        "Ranking\t3\tCompleted",
+        "Similarity Join\t1\tComputing top-100 similar pairs"
+    };
+
+    @Test
+    public void testStateFollowsTheLog() {
+        JobStatusRegistry registry = new JobStatusRegistry();
+        registry.register("job", Arrays.asList("Ranking", "Similarity Join"), "description");
+        int[] stages = { 1, 1, 2, 2, 2, 3 };
+        for (int i = 0; i < LOG.length; i++) {
+            registry.append("job", LOG[i]);
+            Document info = registry.get("job").getLogInfo();
+            assertThat(info.get("lastLine")).isEqualTo(LOG[i]);
+            assertThat(info.get("stageNum")).isEqualTo(stages[i]);
+        }
+        assertThat(registry.get("job").getLogInfo().get("completedStages")).asList()
+            .containsExactly("HIN Transformation", "Ranking");
+        assertThat(registry.get("job").isFinished()).isFalse();
+        assertThat(registry.get("unknown")).isNull();
+    }
+
+    @Test
+    public void testNotifiesSubscribersUntilTheJobExits() {
+        JobStatusRegistry registry = new JobStatusRegistry(Runnable::run);
+        registry.register("job", Arrays.asList("Ranking"), "description");
+        List<String> updates = new ArrayList<>();
+        Consumer<JobState> listener = state -> updates.add((String) state.getLogInfo().get("lastLine"));
+
+        assertThat(registry.subscribe("unknown", listener)).isFalse();
+        assertThat(registry.subscribe("job", listener)).isTrue();
+        registry.append("job", LOG[2]);
+        registry.append("job", "Exit Code\t0");
+        registry.append("job", LOG[3]);
+
+        assertThat(updates).containsExactly(LOG[2], "Exit Code\t0");
+        assertThat(registry.get("job").isFinished()).isTrue();
+        assertThat(registry.subscribe("job", listener)).isFalse();
+
+        registry.removeFinishedJobs();
+        assertThat(registry.get("job")).isNotNull();
+    }
+
+    @Test
+    public void testCoalescesUpdatesOfBusySubscribers() {
+        List<Runnable> notifications = new ArrayList<>();
+        JobStatusRegistry registry = new JobStatusRegistry(notifications::add);
+        registry.register("job", Arrays.asList("Ranking"), "description");
+        List<String> updates = new ArrayList<>();
+        registry.subscribe("job", state -> updates.add((String) state.getLogInfo().get("lastLine")));
+
+        // the subscriber is not called on the job's thread, and is called once for the updates before it runs
+        registry.append("job", LOG[2]);
+        registry.append("job", LOG[3]);
+        assertThat(updates).isEmpty();
+        assertThat(notifications).hasSize(1);
+        notifications.remove(0).run();
+        assertThat(updates).containsExactly(LOG[3]);
+
+        registry.append("job", "Exit Code\t0");
+        assertThat(notifications).hasSize(1);
+        notifications.remove(0).run();
+        assertThat(updates).containsExactly(LOG[3], "Exit Code\t0");
+    }
+
+    @Test
+    public void testDropsFailingSubscribers() {
+        List<Runnable> notifications = new ArrayList<>();
+        JobStatusRegistry registry = new JobStatusRegistry(notifications::add);
+        registry.register("job", Arrays.asList("Ranking"), "description");
+        int[] calls = { 0 };
+        registry.subscribe("job", state -> {
+            calls[0]++;
+            throw new IllegalStateException("client went away");
+        });
+
+        registry.append("job", LOG[2]);
+        notifications.remove(0).run();
+        registry.append("job", LOG[3]);
+        registry.append("job", "Exit Code\t0");
+        assertThat(notifications).isEmpty();
+        assertThat(calls[0]).isEqualTo(1);
+    }
+}
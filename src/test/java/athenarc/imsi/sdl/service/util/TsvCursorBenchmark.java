@@ -0,0 +1,113 @@
+package athenarc.imsi.sdl.service.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the {@link TsvCursor} against the line readers it replaced, on a generated result
+ * file with an id, a name, a community and a score per row. Every reader parses the id and the score
+ * and compares the community with the previous one, as the builders of the result indexes do.
+ * <p>
+ * Run with {@code ./mvnw -Pbenchmark test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class TsvCursorBenchmark {
+
+    @Param({"200000"})
+    public int rows;
+
+    private File file;
+
+    @Setup
+    public void generate() throws IOException {
+        file = File.createTempFile("tsv-cursor-benchmark", ".csv");
+        Random random = new Random(42);
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("id\tname\tCommunity\tRanking Score\n");
+            for (int row = 0; row < rows; row++) {
+                writer.write(row + "\tΑuthor " + Integer.toString(random.nextInt(), 36) + "\t" + row / 20 + "\t" + random.nextDouble() + "\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void delete() {
+        file.delete();
+    }
+
+    @Benchmark
+    public double bufferedReaderSplit() throws IOException {
+        double sum = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            String previous = "";
+            while ((line = reader.readLine()) != null) {
+                String[] attributes = line.split("\t");
+                if (!attributes[2].equals(previous)) {
+                    previous = attributes[2];
+                }
+                sum += Integer.parseInt(attributes[0]) + Double.parseDouble(attributes[3]);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double randomAccessFileReadLineSplit() throws IOException {
+        double sum = 0;
+        try (RandomAccessFile reader = new RandomAccessFile(file, "r")) {
+            String line = reader.readLine();
+            String previous = "";
+            while ((line = reader.readLine()) != null) {
+                // readLine decodes bytes as Latin-1, so lines are re-decoded as the callers did
+                String[] attributes = new String(line.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8).split("\t");
+                if (!attributes[2].equals(previous)) {
+                    previous = attributes[2];
+                }
+                sum += Integer.parseInt(attributes[0]) + Double.parseDouble(attributes[3]);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double tsvCursor() throws IOException {
+        double sum = 0;
+        try (TsvCursor cursor = TsvCursor.open(file)) {
+            cursor.next();
+            String previous = "";
+            while (cursor.next()) {
+                if (!cursor.fieldEquals(2, previous)) {
+                    previous = cursor.getString(2);
+                }
+                sum += cursor.getInt(0) + cursor.getDouble(3);
+            }
+        }
+        return sum;
+    }
+}
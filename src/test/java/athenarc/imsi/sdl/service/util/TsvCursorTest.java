@@ -0,0 +1,138 @@
+package athenarc.imsi.sdl.service.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the {@link TsvCursor} over tab-separated files.
+ */
+public class TsvCursorTest {
+
+    @TempDir
+    Path tempDir;
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = tempDir.resolve("nodes.csv").toFile();
+    }
+
+    @Test
+    public void readsFieldsAndOffsetsOfLines() throws IOException {
+        FileUtils.writeStringToFile(file, "id\tname\r\n1\tΓιώργος\r\n\n2\t😀 x\t\n3", StandardCharsets.UTF_8);
+
+        try (TsvCursor cursor = TsvCursor.open(file)) {
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getStrings()).containsExactly("id", "name");
+            assertThat(cursor.getLineOffset()).isEqualTo(0);
+
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getInt(0)).isEqualTo(1);
+            assertThat(cursor.field(1).toString()).isEqualTo("Γιώργος");
+            assertThat(cursor.fieldEquals(1, "Γιώργος")).isTrue();
+            assertThat(cursor.getLineOffset()).isEqualTo(9);
+
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getFieldCount()).isEqualTo(1);
+            assertThat(cursor.getLine()).isEmpty();
+
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getStrings()).containsExactly("2", "😀 x", "");
+
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getLine()).isEqualTo("3");
+            assertThat(cursor.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void readsLinesLongerThanTheBuffer() throws IOException {
+        StringBuilder content = new StringBuilder();
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 3_000_000; i++) {
+            longValue.append((char) ('a' + i % 26));
+        }
+        for (int row = 0; row < 50_000; row++) {
+            content.append(row).append("\tvalue ").append(row).append('\n');
+        }
+        content.append("50000\t").append(longValue).append("\n50001\tlast\n");
+        FileUtils.writeStringToFile(file, content.toString(), StandardCharsets.UTF_8);
+
+        try (TsvCursor cursor = TsvCursor.open(file)) {
+            for (int row = 0; row < 50_000; row++) {
+                assertThat(cursor.next()).isTrue();
+                assertThat(cursor.getInt(0)).isEqualTo(row);
+                assertThat(cursor.fieldEquals(1, "value " + row)).isTrue();
+            }
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getString(1)).isEqualTo(longValue.toString());
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getString(1)).isEqualTo("last");
+            assertThat(cursor.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void opensAndSeeksAtOffsets() throws IOException {
+        FileUtils.writeStringToFile(file, "a\t1\nbb\t2\nccc\t3\n", StandardCharsets.UTF_8);
+
+        try (TsvCursor cursor = TsvCursor.open(file, 4)) {
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getString(0)).isEqualTo("bb");
+            assertThat(cursor.getLineOffset()).isEqualTo(4);
+
+            cursor.seek(0);
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getString(0)).isEqualTo("a");
+
+            cursor.seek(9);
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getInt(1)).isEqualTo(3);
+            assertThat(cursor.next()).isFalse();
+        }
+    }
+
+    @Test
+    public void parsesNumbersLikeTheJdk() throws IOException {
+        String[] doubles = { "0", "-0.0", "0.1", "1.0E-4", "123456.789", "0.30000000000000004", "1234567890123456789",
+            "3.14159265358979323846", "-2.5", ".5", "7.", "1e308", "NaN", "Infinity" };
+        FileUtils.writeStringToFile(file, "2147483647\t-2147483648\t+42\t" + String.join("\t", doubles) + "\n", StandardCharsets.UTF_8);
+
+        try (TsvCursor cursor = TsvCursor.open(file)) {
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.getInt(0)).isEqualTo(Integer.MAX_VALUE);
+            assertThat(cursor.getInt(1)).isEqualTo(Integer.MIN_VALUE);
+            assertThat(cursor.getInt(2)).isEqualTo(42);
+            for (int i = 0; i < doubles.length; i++) {
+                assertThat(Double.doubleToLongBits(cursor.getDouble(3 + i)))
+                    .as(doubles[i])
+                    .isEqualTo(Double.doubleToLongBits(Double.parseDouble(doubles[i])));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsMalformedNumbers() throws IOException {
+        FileUtils.writeStringToFile(file, "2147483648\t12a\t\t-\tx.5\n", StandardCharsets.UTF_8);
+
+        try (TsvCursor cursor = TsvCursor.open(file)) {
+            assertThat(cursor.next()).isTrue();
+            assertThatThrownBy(() -> cursor.getInt(0)).isInstanceOf(NumberFormatException.class);
+            assertThatThrownBy(() -> cursor.getInt(1)).isInstanceOf(NumberFormatException.class);
+            assertThatThrownBy(() -> cursor.getInt(2)).isInstanceOf(NumberFormatException.class);
+            assertThatThrownBy(() -> cursor.getDouble(3)).isInstanceOf(NumberFormatException.class);
+            assertThatThrownBy(() -> cursor.getDouble(4)).isInstanceOf(NumberFormatException.class);
+            assertThatThrownBy(() -> cursor.getString(5)).isInstanceOf(IndexOutOfBoundsException.class);
+        }
+    }
+}
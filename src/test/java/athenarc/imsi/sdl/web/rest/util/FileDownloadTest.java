@@ -0,0 +1,89 @@
+package athenarc.imsi.sdl.web.rest.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for {@link FileDownload}.
+ */
+public class FileDownloadTest {
+
+    private static final String CONTENT = "Entity\tScore\nA\t0.5\nB\t0.25\n";
+
+    @TempDir
+    Path tempDir;
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = tempDir.resolve("RANKING_RESULT.csv").toFile();
+        Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private MockHttpServletResponse get(String... headers) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/datasets/download");
+        for (int i = 0; i < headers.length; i += 2) {
+            request.addHeader(headers[i], headers[i + 1]);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileDownload.serve(file, "application/octet-stream", request, response);
+        return response;
+    }
+
+    @Test
+    public void testServesRangesAndConditionalRequests() throws IOException {
+        MockHttpServletResponse full = get();
+        assertThat(full.getStatus()).isEqualTo(200);
+        assertThat(full.getContentAsString()).isEqualTo(CONTENT);
+        String etag = full.getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("\"");
+
+        assertThat(get(HttpHeaders.IF_NONE_MATCH, etag).getStatus()).isEqualTo(304);
+
+        MockHttpServletResponse partial = get(HttpHeaders.RANGE, "bytes=13-");
+        assertThat(partial.getStatus()).isEqualTo(206);
+        assertThat(partial.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 13-" + (CONTENT.length() - 1) + "/" + CONTENT.length());
+        assertThat(partial.getContentAsString()).isEqualTo(CONTENT.substring(13));
+
+        assertThat(get(HttpHeaders.RANGE, "bytes=-6").getContentAsString()).isEqualTo("\t0.25\n");
+        assertThat(get(HttpHeaders.RANGE, "bytes=1000-").getStatus()).isEqualTo(416);
+        assertThat(get(HttpHeaders.RANGE, "bytes=0-1", HttpHeaders.IF_RANGE, "\"stale\"").getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    public void testServesPrecompressedFileToGzipClients() throws IOException {
+        MockHttpServletResponse response = get(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+        assertThat(response.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).endsWith("-gz\"");
+        byte[] decompressed = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+        assertThat(new String(decompressed, StandardCharsets.UTF_8)).isEqualTo(CONTENT);
+        assertThat(new File(file.getPath() + ".gz")).exists();
+
+        assertThat(get(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0").getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+    }
+
+    @Test
+    public void testParsesSingleRanges() {
+        assertThat(FileDownload.parseRange("bytes=0-9", 100)).containsExactly(0, 9);
+        assertThat(FileDownload.parseRange("bytes=90-200", 100)).containsExactly(90, 99);
+        assertThat(FileDownload.parseRange("bytes=0-1,5-6", 100)).isNull();
+        assertThat(FileDownload.parseRange("items=0-1", 100)).isNull();
+        assertThat(FileDownload.parseRange("bytes=9-0", 100)).isNull();
+        assertThat(FileDownload.parseRange("bytes=x-1", 100)).isNull();
+    }
+}